@@ -337,6 +337,16 @@ public class Service {
      */
     public int XYZ_HUB_REDIS_PORT;
 
+    /**
+     * The amount of connections to redis, which are used round-robin.
+     */
+    public int XYZ_HUB_REDIS_POOL_SIZE;
+
+    /**
+     * The time in milliseconds after which a redis operation is handled as a cache miss.
+     */
+    public long XYZ_HUB_REDIS_TIMEOUT;
+
     /**
      * The authorization type.
      */
@@ -20,6 +20,7 @@
 package com.here.xyz.hub;
 
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_JSON;
+import static com.here.xyz.hub.rest.Api.HeaderValues.NEXT_HANDLE;
 import static com.here.xyz.hub.rest.Api.HeaderValues.STREAM_ID;
 import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
@@ -118,7 +119,7 @@ public class XYZHubRESTVerticle extends AbstractVerticle {
   /**
    * The headers, which can be exposed as part of the response.
    */
-  private final List<CharSequence> exposeHeaders = Arrays.asList(STREAM_ID, ETAG);
+  private final List<CharSequence> exposeHeaders = Arrays.asList(STREAM_ID, ETAG, NEXT_HANDLE);
 
   /**
    * The headers the client is allowed to send.
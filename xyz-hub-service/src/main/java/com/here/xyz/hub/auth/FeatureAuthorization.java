@@ -91,9 +91,31 @@ public class FeatureAuthorization extends Authorization {
 
     task.modifyOp.entries.forEach(entry -> addAttributeMapForEntry(task, requestRights, entry));
 
+    // An upsert may either create or update the feature, as the existing state is unknown, both rights are required (see canUpsert()).
+    if (task.upsert && task.modifyOp.entries.size() > 0) {
+      if (!requestRights.containsKey(XyzHubActionMatrix.CREATE_FEATURES)) {
+        requestRights.createFeatures(XyzHubAttributeMap.forValues(task.space.getOwner(), task.space.getId(), task.space.getPackages()));
+      }
+      if (!requestRights.containsKey(XyzHubActionMatrix.UPDATE_FEATURES)) {
+        requestRights.updateFeatures(XyzHubAttributeMap.forValues(task.space.getOwner(), task.space.getId(), task.space.getPackages()));
+      }
+    }
+
     evaluateRights(requestRights, tokenRights, task, callback);
   }
 
+  /**
+   * Checks, if the token may create and update features in the space of the operation. Only then the features may be sent as upserts,
+   * because without the existing states the rights can't be checked per feature.
+   */
+  public static boolean canUpsert(ConditionalOperation task) {
+    final ActionMatrix tokenRights = task.getJwt().getXyzHubMatrix();
+    final XyzHubActionMatrix requestRights = new XyzHubActionMatrix();
+    requestRights.createFeatures(XyzHubAttributeMap.forValues(task.space.getOwner(), task.space.getId(), task.space.getPackages()));
+    requestRights.updateFeatures(XyzHubAttributeMap.forValues(task.space.getOwner(), task.space.getId(), task.space.getPackages()));
+    return tokenRights != null && tokenRights.matches(requestRights);
+  }
+
   /**
    * Authorizes a delete operation.
    */
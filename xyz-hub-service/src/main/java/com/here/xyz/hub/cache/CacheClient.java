@@ -20,6 +20,7 @@
 package com.here.xyz.hub.cache;
 
 import io.vertx.core.Handler;
+import java.util.List;
 
 public interface CacheClient {
 
@@ -27,6 +28,22 @@ public interface CacheClient {
 
 	void getBinary(String key, Handler<byte[]> handler);
 
+	/**
+	 * Reads the values of several keys at once.
+	 *
+	 * @param keys
+	 * @param handler Receives the values in the order of the keys, null for the keys which are not cached
+	 */
+	void get(List<String> keys, Handler<List<String>> handler);
+
+	/**
+	 * Reads the binary values of several keys at once.
+	 *
+	 * @param keys
+	 * @param handler Receives the values in the order of the keys, null for the keys which are not cached
+	 */
+	void getBinary(List<String> keys, Handler<List<byte[]>> handler);
+
 	/**
 	 *
 	 * @param key
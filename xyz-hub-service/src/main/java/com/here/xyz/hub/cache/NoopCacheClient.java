@@ -20,6 +20,9 @@
 package com.here.xyz.hub.cache;
 
 import io.vertx.core.Handler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class NoopCacheClient implements CacheClient {
 
@@ -35,6 +38,16 @@ public class NoopCacheClient implements CacheClient {
 		return;
 	}
 
+	@Override
+	public void get(List<String> keys, Handler<List<String>> handler) {
+		handler.handle(new ArrayList<>(Collections.nCopies(keys.size(), null)));
+	}
+
+	@Override
+	public void getBinary(List<String> keys, Handler<List<byte[]>> handler) {
+		handler.handle(new ArrayList<>(Collections.nCopies(keys.size(), null)));
+	}
+
 	@Override
 	public void set(String key, String value, long ttl) {
 		return;
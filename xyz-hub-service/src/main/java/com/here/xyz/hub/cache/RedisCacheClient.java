@@ -20,28 +20,65 @@
 package com.here.xyz.hub.cache;
 
 import com.here.xyz.hub.Service;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.redis.RedisClient;
 import io.vertx.redis.RedisOptions;
 import io.vertx.redis.op.SetOptions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * A cache client, which distributes the commands round-robin over a fixed pool of redis connections. Each connection pipelines the
+ * commands, so that a command does not wait for the reply of the previous one. A read, which is not answered within the configured
+ * timeout, is handled as a cache miss.
+ */
 public class RedisCacheClient implements CacheClient {
 
   private static final Logger logger = LogManager.getLogger();
-  private ThreadLocal<RedisClient> redis;
+  private static final int DEFAULT_POOL_SIZE = 4;
+  private static final long DEFAULT_TIMEOUT = 250;
+
+  /**
+   * The statistics of the operations of all redis cache clients.
+   */
+  private static final Map<String, OperationStatistics> statistics = new ConcurrentHashMap<>();
+
+  private final RedisClient[] pool;
+  private final AtomicInteger next = new AtomicInteger();
+  private final long timeout;
 
   public RedisCacheClient() {
-    redis = ThreadLocal.withInitial(() -> {
-      RedisOptions config = new RedisOptions()
-          .setHost(Service.configuration.XYZ_HUB_REDIS_HOST)
-          .setPort(Service.configuration.XYZ_HUB_REDIS_PORT);
-      config.setTcpKeepAlive(true);
-      config.setConnectTimeout(2000);
-      return RedisClient.create(Service.vertx, config);
-    });
+    RedisOptions config = new RedisOptions()
+        .setHost(Service.configuration.XYZ_HUB_REDIS_HOST)
+        .setPort(Service.configuration.XYZ_HUB_REDIS_PORT);
+    config.setTcpKeepAlive(true);
+    config.setConnectTimeout(2000);
+
+    final int poolSize = Service.configuration.XYZ_HUB_REDIS_POOL_SIZE > 0 ? Service.configuration.XYZ_HUB_REDIS_POOL_SIZE
+        : DEFAULT_POOL_SIZE;
+    pool = new RedisClient[poolSize];
+    for (int i = 0; i < poolSize; i++) {
+      pool[i] = RedisClient.create(Service.vertx, config);
+    }
+    timeout = Service.configuration.XYZ_HUB_REDIS_TIMEOUT > 0 ? Service.configuration.XYZ_HUB_REDIS_TIMEOUT : DEFAULT_TIMEOUT;
   }
 
   public static CacheClient create() {
@@ -57,64 +94,160 @@ public class RedisCacheClient implements CacheClient {
   }
 
   protected RedisClient getClient() {
-    return redis.get();
+    return pool[Math.floorMod(next.getAndIncrement(), pool.length)];
+  }
+
+  /**
+   * Returns the amount of calls, errors and timeouts and the average latency in milliseconds per operation.
+   */
+  public static Map<String, Object> getStatistics() {
+    final Map<String, Object> result = new HashMap<>();
+    statistics.forEach((operation, s) -> result.put(operation, s.toMap()));
+    return result;
   }
 
   @Override
   public void get(String key, Handler<String> handler) {
-    getClient().get(key, asyncResult -> {
-      if (asyncResult.failed()) {
-//				logger.error("Error when trying to read key " + key + " from redis cache", asyncResult.cause());
-      }
-      handler.handle(asyncResult.result());
-    });
+    execute("get", (Handler<AsyncResult<String>> h) -> getClient().get(key, h), Function.identity(), handler);
   }
 
   @Override
   public void getBinary(String key, Handler<byte[]> handler) {
-    getClient().getBinary(key, asyncResult -> {
-      if (asyncResult.failed()) {
-//				logger.error("Error when trying to read key " + key + " from redis cache", asyncResult.cause());
+    execute("getBinary", (Handler<AsyncResult<Buffer>> h) -> getClient().getBinary(key, h), Buffer::getBytes, handler);
+  }
+
+  @Override
+  public void get(List<String> keys, Handler<List<String>> handler) {
+    if (keys.isEmpty()) {
+      handler.handle(Collections.emptyList());
+      return;
+    }
+    execute("mget", (Handler<AsyncResult<JsonArray>> h) -> getClient().mgetMany(keys, h), values -> {
+      final List<String> result = new ArrayList<>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        result.add(i < values.size() ? values.getString(i) : null);
       }
-      final Buffer result = asyncResult.result();
-      handler.handle(result == null ? null : result.getBytes());
-    });
+      return result;
+    }, result -> handler.handle(result != null ? result : new ArrayList<>(Collections.nCopies(keys.size(), null))));
   }
 
+  /**
+   * Reads the binary values through one connection. As redis has no binary multi-get, the reads are pipelined, so that they are sent
+   * at once.
+   */
   @Override
-  public void set(String key, String value, long ttl) {
-    getClient().setex(key, ttl, value, asyncResult -> {
-      //set command was executed. Nothing to do here.coo
-      if (asyncResult.failed()) {
-        //logger.error("Error when trying to put key " + key + " to redis cache", asyncResult.cause());
+  public void getBinary(List<String> keys, Handler<List<byte[]>> handler) {
+    if (keys.isEmpty()) {
+      handler.handle(Collections.emptyList());
+      return;
+    }
+    final RedisClient client = getClient();
+    execute("mgetBinary", (Handler<AsyncResult<List<byte[]>>> h) -> {
+      final byte[][] values = new byte[keys.size()][];
+      final AtomicInteger pending = new AtomicInteger(keys.size());
+      final AtomicBoolean failed = new AtomicBoolean();
+      for (int i = 0; i < keys.size(); i++) {
+        final int index = i;
+        client.getBinary(keys.get(i), ar -> {
+          if (ar.failed() && failed.compareAndSet(false, true)) {
+            h.handle(Future.failedFuture(ar.cause()));
+          }
+          if (ar.succeeded() && ar.result() != null) {
+            values[index] = ar.result().getBytes();
+          }
+          if (pending.decrementAndGet() == 0 && !failed.get()) {
+            h.handle(Future.succeededFuture(Arrays.asList(values)));
+          }
+        });
       }
-    });
+    }, Function.identity(), result -> handler.handle(result != null ? result : new ArrayList<>(Collections.nCopies(keys.size(), null))));
+  }
+
+  @Override
+  public void set(String key, String value, long ttl) {
+    execute("set", (Handler<AsyncResult<String>> h) -> getClient().setex(key, ttl, value, h), Function.identity(), null);
   }
 
   @Override
   public void setBinary(String key, byte[] value, long ttl) {
-    getClient().setBinaryWithOptions(key, Buffer.buffer(value), new SetOptions().setEX(ttl), asyncResult -> {
-      //set command was executed. Nothing to do here.
-      if (asyncResult.failed()) {
-        //logger.error("Error when trying to put key " + key + " to redis cache", asyncResult.cause());
-      }
-    });
+    execute("setBinary", (Handler<AsyncResult<Void>> h) -> getClient().setBinaryWithOptions(key, Buffer.buffer(value),
+        new SetOptions().setEX(ttl), h), Function.identity(), null);
   }
 
   @Override
   public void remove(String key) {
-    getClient().del(key, response -> {
-      //del command was executed. Nothing to do here.
-      logger.warn("Error removing cache entry for key {}.", key);
+    execute("remove", (Handler<AsyncResult<Long>> h) -> getClient().del(key, h), Function.identity(), null);
+  }
+
+  /**
+   * Executes a redis command and measures it. If the command fails or does not complete within the timeout, the handler receives
+   * null, which is handled like a cache miss. The handler is called on the context of the caller.
+   *
+   * @param operation the name of the operation for the statistics
+   * @param command sends the command to redis
+   * @param converter converts the redis result to the result of the operation
+   * @param handler receives the result or null, may be null for commands without result
+   */
+  private <R, T> void execute(String operation, Handler<Handler<AsyncResult<R>>> command, Function<R, T> converter, Handler<T> handler) {
+    final OperationStatistics stats = statistics.computeIfAbsent(operation, k -> new OperationStatistics());
+    final Context context = Vertx.currentContext();
+    final long start = System.nanoTime();
+    final AtomicBoolean completed = new AtomicBoolean();
+
+    final long timerId = Service.vertx.setTimer(timeout, t -> {
+      if (completed.compareAndSet(false, true)) {
+        stats.timeouts.increment();
+        logger.debug("Redis operation {} timed out after {} ms.", operation, timeout);
+        complete(context, handler, null);
+      }
     });
+
+    try {
+      command.handle(ar -> {
+        if (!completed.compareAndSet(false, true)) {
+          return;
+        }
+        Service.vertx.cancelTimer(timerId);
+        stats.record(System.nanoTime() - start, ar.failed());
+
+        T result = null;
+        if (ar.failed()) {
+          logger.debug("Redis operation {} failed: {}", operation, ar.cause() == null ? null : ar.cause().getMessage());
+        } else if (ar.result() != null) {
+          result = converter.apply(ar.result());
+        }
+        complete(context, handler, result);
+      });
+    } catch (Exception e) {
+      if (completed.compareAndSet(false, true)) {
+        Service.vertx.cancelTimer(timerId);
+        stats.record(System.nanoTime() - start, true);
+        logger.debug("Redis operation {} failed: {}", operation, e.getMessage());
+        complete(context, handler, null);
+      }
+    }
+  }
+
+  private <T> void complete(Context context, Handler<T> handler, T result) {
+    if (handler == null) {
+      return;
+    }
+    if (context == null || context == Vertx.currentContext()) {
+      handler.handle(result);
+    } else {
+      context.runOnContext(v -> handler.handle(result));
+    }
   }
 
   @Override
   public void shutdown() {
-    if (redis != null) {
-      getClient().close(r -> {
-        synchronized (this) {
-          this.notify();
+    final AtomicInteger open = new AtomicInteger(pool.length);
+    for (RedisClient client : pool) {
+      client.close(r -> {
+        if (open.decrementAndGet() == 0) {
+          synchronized (this) {
+            this.notify();
+          }
         }
       });
     }
@@ -127,4 +260,29 @@ public class RedisCacheClient implements CacheClient {
     }
   }
 
+  private static class OperationStatistics {
+
+    final LongAdder calls = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+
+    void record(long duration, boolean failed) {
+      calls.increment();
+      nanos.add(duration);
+      if (failed) {
+        errors.increment();
+      }
+    }
+
+    Map<String, Object> toMap() {
+      final Map<String, Object> map = new HashMap<>();
+      final long c = calls.sum();
+      map.put("calls", c);
+      map.put("errors", errors.sum());
+      map.put("timeouts", timeouts.sum());
+      map.put("avgLatency", c == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos.sum()) / (double) c);
+      return map;
+    }
+  }
 }
@@ -40,8 +40,6 @@ import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import net.jodah.expiringmap.ExpirationPolicy;
-import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -52,10 +50,10 @@ public abstract class ConnectorConfigClient implements Initializable {
 
   private static final Logger logger = LogManager.getLogger();
 
-  public static final ExpiringMap<String, Connector> cache = ExpiringMap.builder()
-      .expirationPolicy(ExpirationPolicy.CREATED)
-      .expiration(3, TimeUnit.MINUTES)
-      .build();
+  /**
+   * The used connectors are reloaded every minute in the background, unused ones are removed after 10 minutes.
+   */
+  public static final RefreshAheadCache<Connector> cache = new RefreshAheadCache<>(1, 10, TimeUnit.MINUTES);
 
   public static ConnectorConfigClient getInstance() {
     if (Service.configuration.CONNECTORS_DYNAMODB_TABLE_ARN != null) {
@@ -67,7 +65,7 @@ public abstract class ConnectorConfigClient implements Initializable {
 
 
   public void get(Marker marker, String connectorId, Handler<AsyncResult<Connector>> handler) {
-    final Connector connectorFromCache = cache.get(connectorId);
+    final Connector connectorFromCache = cache.get(connectorId, h -> getConnector(marker, connectorId, h));
 
     if (connectorFromCache != null) {
       logger.info(marker, "storageId: {} - The connector was loaded from cache", connectorId);
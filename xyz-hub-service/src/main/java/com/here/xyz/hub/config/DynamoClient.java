@@ -55,16 +55,27 @@ class DynamoClient {
   final ARN arn;
 
   DynamoClient(String tableArn) {
+    this(tableArn, null);
+  }
+
+  /**
+   * @param tableArn the ARN of the table
+   * @param client the client to be used or null, if a new client should be created for the ARN
+   */
+  DynamoClient(String tableArn, AmazonDynamoDBAsync client) {
     arn = new ARN(tableArn);
 
-    final AmazonDynamoDBAsyncClientBuilder builder = AmazonDynamoDBAsyncClientBuilder.standard();
-    if (isLocal()) {
-      builder.setCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("dummy", "dummy")));
-      final String endpoint = String.format("http://%s:%s", arn.getRegion(), Integer.parseInt(arn.getAccountId()));
-      builder.setEndpointConfiguration(new EndpointConfiguration(endpoint, "US-WEST-1"));
+    if (client == null) {
+      final AmazonDynamoDBAsyncClientBuilder builder = AmazonDynamoDBAsyncClientBuilder.standard();
+      if (isLocal()) {
+        builder.setCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("dummy", "dummy")));
+        final String endpoint = String.format("http://%s:%s", arn.getRegion(), Integer.parseInt(arn.getAccountId()));
+        builder.setEndpointConfiguration(new EndpointConfiguration(endpoint, "US-WEST-1"));
+      }
+      client = builder.build();
     }
 
-    client = builder.build();
+    this.client = client;
     db = new DynamoDB(client);
     tableName = new ARN(tableArn).getResourceWithoutType();
   }
@@ -23,12 +23,14 @@ import com.amazonaws.services.dynamodbv2.document.BatchGetItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.Table;
 import com.amazonaws.services.dynamodbv2.document.TableKeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.document.api.QueryApi;
 import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
 import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
 import com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException;
 import com.amazonaws.util.CollectionUtils;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.here.xyz.XyzSerializable;
 import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.models.Space;
@@ -39,6 +41,8 @@ import io.vertx.core.Handler;
 import io.vertx.core.json.Json;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -46,6 +50,13 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
@@ -54,16 +65,37 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
 
   private static final Logger logger = LogManager.getLogger();
 
+  /**
+   * The maximum number of concurrent requests to DynamoDB for the selection of spaces, which is also the number of segments of a full
+   * table scan.
+   */
+  private static final int MAX_CONCURRENCY = 8;
+  /**
+   * The maximum number of keys of one BatchGetItem request.
+   */
+  private static final int BATCH_GET_SIZE = 100;
+  private static final long MAX_RETRY_DELAY = 1000;
+  /**
+   * The maximum number of times the unprocessed keys of one BatchGetItem request are requested again, before the loading fails.
+   */
+  private static final int MAX_RETRIES = 10;
+  private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENCY,
+      new ThreadFactoryBuilder().setNameFormat("dynamo-spaces-%d").setDaemon(true).build());
+
   private final DynamoClient dynamoClient;
   private Table spaces;
   private Table packages;
 
   public DynamoSpaceConfigClient(final String tableArn) {
-    dynamoClient = new DynamoClient(tableArn);
+    this(new DynamoClient(tableArn), Service.configuration.PACKAGES_DYNAMODB_TABLE_ARN);
+  }
+
+  DynamoSpaceConfigClient(final DynamoClient dynamoClient, final String packagesTableArn) {
+    this.dynamoClient = dynamoClient;
 
     logger.info("Instantiating a reference to Dynamo Table {}", dynamoClient.tableName);
     spaces = dynamoClient.db.getTable(dynamoClient.tableName);
-    packages = dynamoClient.db.getTable(new ARN(Service.configuration.PACKAGES_DYNAMODB_TABLE_ARN).getResourceWithoutType());
+    packages = dynamoClient.db.getTable(new ARN(packagesTableArn).getResourceWithoutType());
   }
 
   @Override
@@ -228,7 +260,6 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
       throw new NullPointerException("authorizedCondition and selectedCondition are required");
     }
 
-    final List<Space> result = new ArrayList<>();
     logger.debug(marker, "authorizedCondition: spaceIds: {}, ownerIds {}, packages: {}", authorizedCondition.spaceIds, authorizedCondition.ownerIds, authorizedCondition.packages);
     logger.debug(marker, "selectedCondition: spaceIds: {}, ownerIds {}, packages: {}, shared: {}, negateOwnerIds: {}", selectedCondition.spaceIds, selectedCondition.ownerIds, selectedCondition.packages, selectedCondition.shared, selectedCondition.negateOwnerIds);
 
@@ -237,10 +268,7 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
 
       // get all shared spaces if the selection for shared spaces is enabled
       if (selectedCondition.shared) {
-        spaces.getIndex("shared-index").query(new QuerySpec().withHashKey("shared", 1).withProjectionExpression("id")).pages()
-            .forEach(p -> p.forEach(i -> {
-              authorizedSpaces.add(i.getString("id"));
-            }));
+        authorizedSpaces.addAll(queryIds(spaces.getIndex("shared-index"), new QuerySpec().withHashKey("shared", 1), "id"));
         logger.debug(marker, "Number of space IDs after addition of shared spaces: {}", authorizedSpaces.size());
       }
 
@@ -253,9 +281,10 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
       // now filter all spaceIds with the ones being selected in the selectedCondition (by checking the space's ownership) (
       if (!CollectionUtils.isNullOrEmpty(selectedCondition.ownerIds)) {
         final Set<String> ownersSpaces = new HashSet<>();
-        selectedCondition.ownerIds.forEach(o ->
-            spaces.getIndex("owner-index").query(new QuerySpec().withHashKey("owner", o).withProjectionExpression("id")).pages()
-                .forEach(p -> p.forEach(i -> ownersSpaces.add(i.getString("id")))));
+        inParallel(selectedCondition.ownerIds.stream()
+            .map(o -> (Supplier<List<String>>) () -> queryIds(spaces.getIndex("owner-index"), new QuerySpec().withHashKey("owner", o), "id"))
+            .collect(Collectors.toList()))
+            .forEach(ownersSpaces::addAll);
 
         // HINT: A ^ TRUE == !A (negateOwnerIds: keep or remove the spaces contained in the owner's spaces list)
         authorizedSpaces.removeIf(i -> !selectedCondition.negateOwnerIds ^ ownersSpaces.contains(i));
@@ -264,21 +293,23 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
 
       // TODO selection per packages is not yet supported: selectedCondition.packages
 
+      if (selectedCondition.isPaginated()) {
+        final List<String> page = authorizedSpaces.stream()
+            .filter(i -> selectedCondition.afterId == null || i.compareTo(selectedCondition.afterId) > 0)
+            .sorted()
+            .limit(selectedCondition.limit > 0 ? selectedCondition.limit : Long.MAX_VALUE)
+            .collect(Collectors.toList());
+        authorizedSpaces.clear();
+        authorizedSpaces.addAll(page);
+        logger.debug(marker, "Number of space IDs on the selected page: {}", authorizedSpaces.size());
+      }
+
       logger.info(marker, "Final number of space IDs to be retrieved from DynamoDB: {}", authorizedSpaces.size());
-      if (!authorizedSpaces.isEmpty()) {
-        int batches = (int) Math.ceil((double) authorizedSpaces.size()/100);
-        for (int i=0; i<batches; i++) {
-          final TableKeysAndAttributes keys = new TableKeysAndAttributes(dynamoClient.tableName);
-          authorizedSpaces.stream().skip(i*100).limit(100).forEach(id -> keys.addHashOnlyPrimaryKey("id", id));
-
-          BatchGetItemOutcome outcome = dynamoClient.db.batchGetItem(keys);
-          processOutcome(outcome, result);
-
-          while (!outcome.getUnprocessedKeys().isEmpty()) {
-            outcome = dynamoClient.db.batchGetItemUnprocessed(outcome.getUnprocessedKeys());
-            processOutcome(outcome, result);
-          }
-        }
+      final List<Space> result = authorizedSpaces.isEmpty() ? new ArrayList<>() : getSpaces(authorizedSpaces);
+
+      if (selectedCondition.isPaginated()) {
+        //BatchGetItem does not keep the order of the keys
+        result.sort(Comparator.comparing(Space::getId));
       }
 
       logger.info(marker, "Number of spaces retrieved from DynamoDB: {}", result.size());
@@ -303,21 +334,19 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
 
       // then get the owners which are authorized by the authorizedCondition
       if (authorizedCondition.ownerIds != null) {
-        authorizedCondition.ownerIds.forEach(owner ->
-            spaces.getIndex("owner-index").query("owner", owner).pages().forEach(p -> p.forEach(i -> {
-              authorizedSpaces.add(i.getString("id"));
-            }))
-        );
+        inParallel(authorizedCondition.ownerIds.stream()
+            .map(o -> (Supplier<List<String>>) () -> queryIds(spaces.getIndex("owner-index"), new QuerySpec().withHashKey("owner", o), "id"))
+            .collect(Collectors.toList()))
+            .forEach(authorizedSpaces::addAll);
         logger.debug(marker, "Number of space IDs after addition from owners: {}", authorizedSpaces.size());
       }
 
       // then get the packages which are authorized by the authorizedCondition
       if (authorizedCondition.packages != null) {
-        authorizedCondition.packages.forEach(packageName ->
-            packages.query("packageName", packageName).pages().forEach(p -> p.forEach(i -> {
-              authorizedSpaces.add(i.getString("spaceId"));
-            }))
-        );
+        inParallel(authorizedCondition.packages.stream()
+            .map(p -> (Supplier<List<String>>) () -> queryIds(packages, new QuerySpec().withHashKey("packageName", p), "spaceId"))
+            .collect(Collectors.toList()))
+            .forEach(authorizedSpaces::addAll);
         logger.debug(marker, "Number of space IDs after addition from packages: {}", authorizedSpaces.size());
       }
 
@@ -325,8 +354,10 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
       if (CollectionUtils.isNullOrEmpty(authorizedCondition.spaceIds)
           && CollectionUtils.isNullOrEmpty(authorizedCondition.ownerIds)
           && CollectionUtils.isNullOrEmpty(authorizedCondition.packages)) {
-        spaces.scan(new ScanSpec().withProjectionExpression("id")).pages()
-            .forEach(p -> p.forEach(i -> authorizedSpaces.add(i.getString("id"))));
+        inParallel(IntStream.range(0, MAX_CONCURRENCY)
+            .mapToObj(segment -> (Supplier<List<String>>) () -> scanIds(segment, MAX_CONCURRENCY))
+            .collect(Collectors.toList()))
+            .forEach(authorizedSpaces::addAll);
       }
     } catch (AmazonDynamoDBException e) {
       logger.error(marker, "Failure to get the authorized spaces", e);
@@ -337,6 +368,88 @@ public class DynamoSpaceConfigClient extends SpaceConfigClient {
     return authorizedSpaces;
   }
 
+  /**
+   * Returns the values of the given attribute of all items matching the query.
+   */
+  private static List<String> queryIds(QueryApi source, QuerySpec querySpec, String attribute) {
+    final List<String> ids = new ArrayList<>();
+    source.query(querySpec.withProjectionExpression(attribute)).pages().forEach(p -> p.forEach(i -> ids.add(i.getString(attribute))));
+    return ids;
+  }
+
+  /**
+   * Returns the IDs of all spaces in the given segment of the table.
+   */
+  private List<String> scanIds(int segment, int totalSegments) {
+    final List<String> ids = new ArrayList<>();
+    spaces.scan(new ScanSpec().withProjectionExpression("id").withSegment(segment).withTotalSegments(totalSegments)).pages()
+        .forEach(p -> p.forEach(i -> ids.add(i.getString("id"))));
+    return ids;
+  }
+
+  /**
+   * Loads the spaces with the given IDs using concurrent BatchGetItem requests.
+   */
+  private List<Space> getSpaces(Collection<String> spaceIds) {
+    final List<String> ids = new ArrayList<>(spaceIds);
+    final List<Supplier<List<Space>>> batches = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i += BATCH_GET_SIZE) {
+      final List<String> batch = ids.subList(i, Math.min(i + BATCH_GET_SIZE, ids.size()));
+      batches.add(() -> getSpacesBatch(batch));
+    }
+    return inParallel(batches).stream().flatMap(List::stream).collect(Collectors.toList());
+  }
+
+  /**
+   * Loads the spaces with the given IDs using one BatchGetItem request. Unprocessed keys are requested again with an exponential backoff,
+   * up to {@link #MAX_RETRIES} times.
+   */
+  private List<Space> getSpacesBatch(List<String> ids) {
+    final List<Space> result = new ArrayList<>();
+    final TableKeysAndAttributes keys = new TableKeysAndAttributes(dynamoClient.tableName);
+    ids.forEach(id -> keys.addHashOnlyPrimaryKey("id", id));
+
+    BatchGetItemOutcome outcome = dynamoClient.db.batchGetItem(keys);
+    processOutcome(outcome, result);
+
+    int retry = 0;
+    while (!outcome.getUnprocessedKeys().isEmpty()) {
+      if (retry >= MAX_RETRIES) {
+        throw new AmazonDynamoDBException("Unable to load all spaces after " + MAX_RETRIES + " retries, the table is throttled");
+      }
+      try {
+        Thread.sleep(Math.min(MAX_RETRY_DELAY, 25L << Math.min(retry++, 6)));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AmazonDynamoDBException("Interrupted while loading the spaces");
+      }
+      outcome = dynamoClient.db.batchGetItemUnprocessed(outcome.getUnprocessedKeys());
+      processOutcome(outcome, result);
+    }
+    return result;
+  }
+
+  /**
+   * Executes the tasks on the executor, which bounds the number of concurrent requests, and returns their results in the order of the
+   * tasks.
+   */
+  private static <T> List<T> inParallel(List<Supplier<T>> tasks) {
+    if (tasks.size() == 1) {
+      return Collections.singletonList(tasks.get(0).get());
+    }
+    final List<CompletableFuture<T>> futures = tasks.stream()
+        .map(t -> CompletableFuture.supplyAsync(t, executor))
+        .collect(Collectors.toList());
+    try {
+      return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
   /**
    * Fills the result list transforming the raw elements from the outcome into real Space objects
    *
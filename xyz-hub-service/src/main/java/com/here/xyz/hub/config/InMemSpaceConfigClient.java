@@ -23,11 +23,13 @@ import com.here.xyz.hub.connectors.models.Space;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.logging.log4j.Marker;
 
@@ -76,10 +78,15 @@ public class InMemSpaceConfigClient extends SpaceConfigClient {
         || selectedCondition.ownerIds != null && selectedCondition.ownerIds.contains(s.getOwner())
         || selectedCondition.shared && s.isShared();
 
-    List<Space> spaces = spaceMap.values().stream()
+    Stream<Space> spaces = spaceMap.values().stream()
         .filter(authorizationFilter)
-        .filter(selectionFilter)
-        .collect(Collectors.toList());
-    handler.handle(Future.succeededFuture(spaces));
+        .filter(selectionFilter);
+    if (selectedCondition.isPaginated()) {
+      spaces = spaces
+          .filter(s -> selectedCondition.afterId == null || s.getId().compareTo(selectedCondition.afterId) > 0)
+          .sorted(Comparator.comparing(Space::getId))
+          .limit(selectedCondition.limit > 0 ? selectedCondition.limit : Long.MAX_VALUE);
+    }
+    handler.handle(Future.succeededFuture(spaces.collect(Collectors.toList())));
   }
 }
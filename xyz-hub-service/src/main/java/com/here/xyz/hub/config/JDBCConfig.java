@@ -26,6 +26,7 @@ import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.SQLClient;
 import io.vertx.ext.sql.SQLConnection;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
@@ -63,6 +64,23 @@ public class JDBCConfig {
     }
   }
 
+  /**
+   * Adds the columns, which are used to select spaces, and their indexes to the space table. The columns are filled once from the space
+   * configurations, afterwards they are written together with the configuration.
+   */
+  private static List<String> spaceTableMigration() {
+    return Arrays.asList(
+        String.format("ALTER TABLE %s ADD COLUMN IF NOT EXISTS shared BOOLEAN NOT NULL DEFAULT false", SPACE_TABLE),
+        String.format("ALTER TABLE %s ADD COLUMN IF NOT EXISTS packages TEXT[]", SPACE_TABLE),
+        String.format("UPDATE %s SET shared = coalesce((config->>'shared')::boolean, false), packages = ARRAY(SELECT "
+            + "jsonb_array_elements_text(CASE WHEN jsonb_typeof(config->'packages') = 'array' THEN config->'packages' ELSE '[]' END)) "
+            + "WHERE packages IS NULL", SPACE_TABLE),
+        String.format("CREATE INDEX IF NOT EXISTS xyz_space_owner_idx ON %s (owner, id)", SPACE_TABLE),
+        String.format("CREATE INDEX IF NOT EXISTS xyz_space_shared_idx ON %s (id) WHERE shared", SPACE_TABLE),
+        String.format("CREATE INDEX IF NOT EXISTS xyz_space_packages_idx ON %s USING GIN (packages)", SPACE_TABLE)
+    );
+  }
+
   public static synchronized void init(Handler<AsyncResult<Void>> onReady) {
     if (initialized) {
       onReady.handle(Future.succeededFuture());
@@ -81,17 +99,17 @@ public class JDBCConfig {
 
       String query = "SELECT schema_name FROM information_schema.schemata WHERE schema_name='xyz_config'";
       connection.query(query, out -> {
+        final List<String> batchQueries = new ArrayList<>();
         if (out.succeeded() && out.result().getNumRows() > 0) {
           logger.info("schema already created");
-          onReady.handle(Future.succeededFuture());
-          connection.close();
-          return;
+        } else {
+          batchQueries.addAll(Arrays.asList(
+              String.format("CREATE SCHEMA %s", SCHEMA),
+              String.format("CREATE table  %s (id VARCHAR(50) primary key, config JSONB)", CONNECTOR_TABLE),
+              String.format("CREATE table  %s (id VARCHAR(50) primary key, owner VARCHAR (50), cid VARCHAR (50), config JSONB)", SPACE_TABLE)
+          ));
         }
-        List<String> batchQueries = Arrays.asList(
-            String.format("CREATE SCHEMA %s", SCHEMA),
-            String.format("CREATE table  %s (id VARCHAR(50) primary key, config JSONB)", CONNECTOR_TABLE),
-            String.format("CREATE table  %s (id VARCHAR(50) primary key, owner VARCHAR (50), cid VARCHAR (50), config JSONB)", SPACE_TABLE)
-        );
+        batchQueries.addAll(spaceTableMigration());
 
         Future<Void> onComplete = Future.future();
         Future<Void> step1Completer = Future.future();
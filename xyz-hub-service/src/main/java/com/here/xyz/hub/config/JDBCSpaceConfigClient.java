@@ -33,10 +33,11 @@ import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.ext.sql.SQLClient;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Marker;
 
 /**
@@ -97,8 +98,9 @@ public class JDBCSpaceConfigClient extends SpaceConfigClient {
     SQLQuery query = null;
     try {
       query = new SQLQuery(String.format(
-          "INSERT INTO %s(id, owner, cid, config) VALUES (?, ?, ?, cast(? as JSONB)) ON CONFLICT (id) DO UPDATE SET owner = excluded.owner, cid = excluded.cid, config = excluded.config",
-          SPACE_TABLE), space.getId(), space.getOwner(), space.getCid(),
+          "INSERT INTO %s(id, owner, cid, shared, packages, config) VALUES (?, ?, ?, ?, ARRAY(SELECT jsonb_array_elements_text(cast(? as JSONB))), cast(? as JSONB)) ON CONFLICT (id) DO UPDATE SET owner = excluded.owner, cid = excluded.cid, shared = excluded.shared, packages = excluded.packages, config = excluded.config",
+          SPACE_TABLE), space.getId(), space.getOwner(), space.getCid(), space.isShared(),
+          Json.encode(space.getPackages() == null ? Collections.emptyList() : space.getPackages()),
           XyzSerializable.STATIC_MAPPER.get().writeValueAsString(space));
       updateWithParams(space, query, handler);
     } catch (JsonProcessingException e) {
@@ -123,52 +125,69 @@ public class JDBCSpaceConfigClient extends SpaceConfigClient {
       SpaceSelectionCondition selectedCondition,
       Handler<AsyncResult<List<Space>>> handler) {
     //BUILD THE QUERY
-    List<String> whereConjunctions = new ArrayList<>();
-    String baseQuery = String.format("SELECT config FROM %s", SPACE_TABLE);
-    List<String> authorizationWhereClauses = generateWhereClausesFor(authorizedCondition);
+    List<SQLQuery> whereConjunctions = new ArrayList<>();
+    SQLQuery query = new SQLQuery(String.format("SELECT config FROM %s", SPACE_TABLE));
+    List<SQLQuery> authorizationWhereClauses = generateWhereClausesFor(authorizedCondition);
     if (!authorizationWhereClauses.isEmpty()) {
-      authorizationWhereClauses.add("config->'shared' = 'true'");
+      authorizationWhereClauses.add(new SQLQuery("shared"));
     }
 
-    List<String> selectionWhereClauses = generateWhereClausesFor(selectedCondition);
+    List<SQLQuery> selectionWhereClauses = generateWhereClausesFor(selectedCondition);
     if (!selectedCondition.shared && selectionWhereClauses.isEmpty()) {
-      selectionWhereClauses.add("config->'shared' != 'true'");
+      selectionWhereClauses.add(new SQLQuery("NOT shared"));
     }
 
     if (!authorizationWhereClauses.isEmpty()) {
-      whereConjunctions.add("(" + StringUtils.join(authorizationWhereClauses, " OR ") + ")");
+      whereConjunctions.add(SQLQuery.join(authorizationWhereClauses, " OR ", true));
     }
     if (!selectionWhereClauses.isEmpty()) {
-      whereConjunctions.add("(" + StringUtils.join(selectionWhereClauses, " OR ") + ")");
+      whereConjunctions.add(SQLQuery.join(selectionWhereClauses, " OR ", true));
+    }
+    if (selectedCondition.afterId != null) {
+      whereConjunctions.add(new SQLQuery("id > ?", selectedCondition.afterId));
     }
 
-    String query = baseQuery + (whereConjunctions.isEmpty() ? "" :
-        " WHERE " + StringUtils.join(whereConjunctions, " AND "));
+    if (!whereConjunctions.isEmpty()) {
+      query.append("WHERE");
+      query.append(SQLQuery.join(whereConjunctions, " AND ", false));
+    }
+    if (selectedCondition.isPaginated()) {
+      query.append("ORDER BY id");
+    }
+    if (selectedCondition.limit > 0) {
+      query.append("LIMIT ?", selectedCondition.limit);
+    }
 
     querySpaces(handler, query);
   }
 
-  private List<String> generateWhereClausesFor(SpaceAuthorizationCondition condition) {
-    List<String> whereClauses = new ArrayList<>();
+  private List<SQLQuery> generateWhereClausesFor(SpaceAuthorizationCondition condition) {
+    List<SQLQuery> whereClauses = new ArrayList<>();
     if (condition.spaceIds != null && !condition.spaceIds.isEmpty()) {
-      whereClauses.add("id IN ('" + StringUtils.join(condition.spaceIds, "','") + "')");
+      whereClauses.add(new SQLQuery("id = ANY(?)", textArray(condition.spaceIds)));
     }
     if (condition.ownerIds != null && !condition.ownerIds.isEmpty()) {
-      String negator = "";
+      String operator = "= ANY";
       if (condition instanceof SpaceSelectionCondition && ((SpaceSelectionCondition) condition).negateOwnerIds) {
-        negator = "NOT ";
+        operator = "<> ALL";
       }
-      whereClauses.add("owner " + negator + "IN ('" + StringUtils.join(condition.ownerIds, "','") + "')");
+      whereClauses.add(new SQLQuery("owner " + operator + "(?)", textArray(condition.ownerIds)));
     }
     if (condition.packages != null && !condition.packages.isEmpty()) {
-      whereClauses.add("config->'packages' ??| array['" + StringUtils.join(condition.packages, "','") + "']");
+      whereClauses.add(new SQLQuery("packages && cast(? as TEXT[])", textArray(condition.packages)));
     }
     return whereClauses;
   }
 
+  /**
+   * Binds the values as one array parameter, so that the statement is the same for any amount of values.
+   */
+  private static Object textArray(Collection<String> values) {
+    return values.toArray(new String[0]);
+  }
 
-  private void querySpaces(Handler<AsyncResult<List<Space>>> handler, String query) {
-    client.query(query, out -> {
+  private void querySpaces(Handler<AsyncResult<List<Space>>> handler, SQLQuery query) {
+    client.queryWithParams(query.text(), new JsonArray(query.parameters()), out -> {
       if (out.succeeded()) {
         List<Space> configs = out.result().getRows().stream()
             .map(r -> r.getString("config"))
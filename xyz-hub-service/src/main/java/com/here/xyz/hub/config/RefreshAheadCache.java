@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.config;
+
+import com.here.xyz.hub.Service;
+import com.here.xyz.hub.util.EventLoopLocalCache;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A cache for configurations, which are read on every request. An entry, which is used after the refresh interval, is reloaded in the
+ * background, while the cached value is still returned. If the reload fails, the cached value is kept. Entries, which were not used for
+ * the expiration time, are removed.
+ *
+ * @param <V> the type of the configurations
+ */
+public class RefreshAheadCache<V> {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private final ExpiringMap<String, Entry<V>> entries;
+  /**
+   * The values, which were read on an event-loop thread, are kept for a second per event-loop, so that hot values are read without
+   * contention with the other event-loops.
+   */
+  private final EventLoopLocalCache<V> localEntries = new EventLoopLocalCache<>(1024, 1, TimeUnit.SECONDS);
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+  private final long refreshInterval;
+
+  /**
+   * @param refreshInterval the time after which a used entry is reloaded
+   * @param expiration the time after which an entry is removed, if it was not used
+   * @param unit the time unit of refreshInterval and expiration
+   */
+  public RefreshAheadCache(long refreshInterval, long expiration, TimeUnit unit) {
+    this.refreshInterval = unit.toMillis(refreshInterval);
+    this.entries = ExpiringMap.builder()
+        .expirationPolicy(ExpirationPolicy.ACCESSED)
+        .expiration(expiration, unit)
+        .build();
+  }
+
+  /**
+   * Returns the cached value. If the value is due for a refresh, it is reloaded in the background using the loader.
+   *
+   * @param key the key
+   * @param loader loads the current value, only called if the value is due for a refresh
+   * @return the cached value or null, if there is none
+   */
+  public V get(String key, Handler<Handler<AsyncResult<V>>> loader) {
+    final V localValue = localEntries.get(key);
+    if (localValue != null) {
+      return localValue;
+    }
+
+    final Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+
+    //Kept locally before the refresh, so that a refresh, which completes immediately, invalidates it again
+    localEntries.put(key, entry.value);
+    if (Service.currentTimeMillis() - entry.loadedAt > refreshInterval && refreshing.add(key)) {
+      try {
+        loader.handle(ar -> {
+          refreshing.remove(key);
+          if (ar.succeeded() && ar.result() != null) {
+            //Only replace the entry, if it was not invalidated in the meantime
+            if (entries.replace(key, entry, new Entry<>(ar.result()))) {
+              localEntries.invalidate(key);
+            }
+          } else if (ar.failed()) {
+            logger.warn("Failed to refresh the cached configuration {}, the cached value is kept, reason: {}", key, ar.cause());
+          } else if (entries.remove(key, entry)) {
+            localEntries.invalidate(key);
+          }
+        });
+      } catch (Exception e) {
+        refreshing.remove(key);
+        logger.warn("Failed to refresh the cached configuration {}, the cached value is kept, reason: {}", key, e);
+      }
+    }
+    return entry.value;
+  }
+
+  public void put(String key, V value) {
+    if (value == null) {
+      remove(key);
+      return;
+    }
+    entries.put(key, new Entry<>(value));
+    localEntries.invalidate(key);
+  }
+
+  public void remove(String key) {
+    entries.remove(key);
+    localEntries.invalidate(key);
+  }
+
+  private static class Entry<V> {
+
+    final V value;
+    final long loadedAt;
+
+    Entry(V value) {
+      this.value = value;
+      this.loadedAt = Service.currentTimeMillis();
+    }
+  }
+}
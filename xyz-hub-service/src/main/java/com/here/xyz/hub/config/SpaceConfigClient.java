@@ -22,6 +22,7 @@ package com.here.xyz.hub.config;
 import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.models.Space;
 import com.here.xyz.hub.rest.admin.AdminMessage;
+import com.here.xyz.hub.util.NegativeCache;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -32,8 +33,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import net.jodah.expiringmap.ExpirationPolicy;
-import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -43,10 +42,14 @@ public abstract class SpaceConfigClient implements Initializable {
 
   private static final Logger logger = LogManager.getLogger();
 
-  public static final ExpiringMap<String, Space> cache = ExpiringMap.builder()
-      .expirationPolicy(ExpirationPolicy.CREATED)
-      .expiration(3, TimeUnit.MINUTES)
-      .build();
+  /**
+   * The used spaces are reloaded every minute in the background, unused ones are removed after 10 minutes.
+   */
+  public static final RefreshAheadCache<Space> cache = new RefreshAheadCache<>(1, 10, TimeUnit.MINUTES);
+  /**
+   * Space IDs, which were not found, are remembered for a few seconds, as some clients retry them aggressively.
+   */
+  private static final NegativeCache missingSpaces = new NegativeCache(16 * 1024, 10, TimeUnit.SECONDS);
 
   private static final Map<String, ConcurrentLinkedQueue<Handler<AsyncResult<Space>>>> pendingHandlers = new ConcurrentHashMap<>();
   private SpaceSelectionCondition emptySpaceCondition = new SpaceSelectionCondition();
@@ -60,12 +63,17 @@ public abstract class SpaceConfigClient implements Initializable {
   }
 
   public void get(Marker marker, String spaceId, Handler<AsyncResult<Space>> handler) {
-    Space cached = cache.get(spaceId);
+    Space cached = cache.get(spaceId, h -> getSpace(marker, spaceId, h));
     if (cached != null) {
       logger.info(marker, "space[{}]: Loaded space with title \"{}\" from cache", spaceId, cached.getTitle());
       handler.handle(Future.succeededFuture(cached));
       return;
     }
+    if (missingSpaces.contains(spaceId, spaceId)) {
+      logger.info(marker, "space[{}]: Space with this ID was not found (cached)", spaceId);
+      handler.handle(Future.succeededFuture(null));
+      return;
+    }
 
     /*
     In case we get the query for a space of which a previous request is already in flight we wait for its response and call the callback
@@ -77,6 +85,7 @@ public abstract class SpaceConfigClient implements Initializable {
       return;
     }
 
+    final long lookupTime = Service.currentTimeMillis();
     getSpace(marker, spaceId, ar -> {
       ConcurrentLinkedQueue<Handler<AsyncResult<Space>>> handlersToCall = pendingHandlers.remove(spaceId);
       if (ar.succeeded()) {
@@ -86,6 +95,7 @@ public abstract class SpaceConfigClient implements Initializable {
           logger.info(marker, "space[{}]: Loaded space with title: \"{}\"", spaceId, space.getTitle());
         } else {
           logger.info(marker, "space[{}]: Space with this ID was not found", spaceId);
+          missingSpaces.put(spaceId, spaceId, lookupTime);
         }
         cache.put(spaceId, space);
         handlersToCall.forEach(h -> h.handle(Future.succeededFuture(ar.result())));
@@ -159,6 +169,7 @@ public abstract class SpaceConfigClient implements Initializable {
 
   public void invalidateCache(String spaceId) {
     cache.remove(spaceId);
+    missingSpaces.invalidate(spaceId);
     new InvalidateSpaceCacheMessage().withId(spaceId).broadcast();
   }
 
@@ -173,6 +184,19 @@ public abstract class SpaceConfigClient implements Initializable {
 
     public boolean shared = true;
     public boolean negateOwnerIds = false;
+    /**
+     * If set, only the spaces with an ID greater than this one are selected. Together with the limit the spaces are selected in the order
+     * of their IDs, so that the ID of the last space of a page is the start of the next page.
+     */
+    public String afterId;
+    /**
+     * The maximum number of spaces to be selected, a value smaller than 1 selects all spaces.
+     */
+    public int limit;
+
+    public boolean isPaginated() {
+      return afterId != null || limit > 0;
+    }
   }
 
   public static class InvalidateSpaceCacheMessage extends AdminMessage {
@@ -195,6 +219,7 @@ public abstract class SpaceConfigClient implements Initializable {
     @Override
     protected void handle() {
       cache.remove(id);
+      missingSpaces.invalidate(id);
     }
   }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.connectors.models;
+
+import com.here.xyz.responses.XyzResponse;
+
+/**
+ * A response, which is already serialized in the format of the HTTP response body and compressed using gzip. It is created from a
+ * cache entry and sent as it is to clients, which accept the gzip encoding.
+ */
+public class CompressedResponse extends XyzResponse<CompressedResponse> {
+
+  private byte[] bytes;
+  private int length;
+
+  /**
+   * @return the gzip compressed body.
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  public void setBytes(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  public CompressedResponse withBytes(byte[] bytes) {
+    setBytes(bytes);
+    return this;
+  }
+
+  /**
+   * @return the length of the uncompressed body.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  public void setLength(int length) {
+    this.length = length;
+  }
+
+  public CompressedResponse withLength(int length) {
+    setLength(length);
+    return this;
+  }
+}
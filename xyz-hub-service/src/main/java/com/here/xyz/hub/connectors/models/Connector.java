@@ -155,6 +155,12 @@ public class Connector {
      */
     public List<String> clusteringTypes;
 
+    /**
+     * Whether the storage connector is able to decide itself if a feature is inserted or replaced. (Only applicable for storage
+     * connectors) If supported, unconditional replace / create operations are sent as upserts without loading the existing states first.
+     */
+    public boolean upsertSupport;
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
@@ -167,6 +173,7 @@ public class Connector {
           propertySearch == that.propertySearch &&
           searchablePropertiesConfiguration == that.searchablePropertiesConfiguration &&
           enableAutoCache == that.enableAutoCache &&
+          upsertSupport == that.upsertSupport &&
           Objects.equals(clusteringTypes, that.clusteringTypes);
     }
 
@@ -22,8 +22,11 @@ package com.here.xyz.hub.rest;
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_GEO_JSON;
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_JSON;
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_VND_MAPBOX_VECTOR_TILE;
+import static com.here.xyz.hub.rest.Api.HeaderValues.NEXT_HANDLE;
 import static com.here.xyz.hub.rest.Api.HeaderValues.STREAM_ID;
+import static io.netty.handler.codec.http.HttpHeaderValues.GZIP;
 import static io.netty.handler.codec.http.HttpHeaderValues.TEXT_PLAIN;
+import static io.netty.handler.codec.http.HttpResponseStatus.ACCEPTED;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_GATEWAY;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpResponseStatus.GATEWAY_TIMEOUT;
@@ -33,16 +36,22 @@ import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
 import static io.netty.handler.codec.http.HttpResponseStatus.NO_CONTENT;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.vertx.core.http.HttpHeaders.ACCEPT_ENCODING;
+import static io.vertx.core.http.HttpHeaders.CONTENT_ENCODING;
 import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.here.xyz.hub.XYZHubRESTVerticle;
 import com.here.xyz.hub.auth.JWTPayload;
 import com.here.xyz.hub.connectors.models.BinaryResponse;
+import com.here.xyz.hub.connectors.models.CompressedResponse;
 import com.here.xyz.hub.connectors.models.Space.CacheProfile;
 import com.here.xyz.hub.task.FeatureTask;
+import com.here.xyz.hub.task.FeatureTask.DeleteOperation;
 import com.here.xyz.hub.task.SpaceTask;
+import com.here.xyz.hub.task.SpaceTask.ReadQuery;
 import com.here.xyz.hub.task.Task;
+import com.here.xyz.hub.util.Compression;
 import com.here.xyz.hub.util.logging.AccessLog;
 import com.here.xyz.models.geojson.implementation.FeatureCollection;
 import com.here.xyz.models.hub.Space.Internal;
@@ -53,6 +62,9 @@ import com.here.xyz.responses.ErrorResponse;
 import com.here.xyz.responses.StatisticsResponse;
 import com.here.xyz.responses.XyzError;
 import com.here.xyz.responses.XyzResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -63,11 +75,14 @@ import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.Json;
 import io.vertx.ext.web.RoutingContext;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
@@ -147,7 +162,7 @@ public abstract class Api {
 
       //If the ETag didn't change, return "Not Modified"
       if (task.etagMatches()) {
-        sendResponse(task, NOT_MODIFIED, null, null);
+        sendResponse(task, NOT_MODIFIED, null, (Buffer) null);
         return true;
       }
     }
@@ -155,17 +170,37 @@ public abstract class Api {
     return false;
   }
 
+  /**
+   * A deletion by tags, which could not be finished by the storage connector within one invocation, is answered with "Accepted" and the
+   * amount of features deleted so far, independent of the requested response type, so that the client knows it has to repeat the request.
+   *
+   * @return true if a response was sent; false otherwise.
+   */
+  private boolean sendPartialDeletionResponse(final FeatureTask task) {
+    if (task instanceof DeleteOperation && task.getResponse() instanceof FeatureCollection
+        && Boolean.TRUE.equals(((FeatureCollection) task.getResponse()).isPartial())) {
+      sendResponse(task, ACCEPTED, APPLICATION_GEO_JSON, task.getResponse().serialize().getBytes());
+      return true;
+    }
+    return false;
+  }
+
   /**
    * Creates a response from the processed feature task and send it to the client.
    *
    * @param task the feature task that is finished processing and for which a response should be returned.
    */
   void sendResponse(final FeatureTask task) {
-    if (sendEmptyResponse(task) || sendNotModifiedResponseIfNoneMatch(task)) {
+    if (sendPartialDeletionResponse(task) || sendEmptyResponse(task) || sendNotModifiedResponseIfNoneMatch(task)) {
       return;
     }
 
     final XyzResponse response = task.getResponse();
+    if (response instanceof CompressedResponse) {
+      sendCompressedResponse(task, (CompressedResponse) response);
+      return;
+    }
+
     if (response instanceof ErrorResponse) {
       final ErrorResponse errorResponse = (ErrorResponse) response;
       // Note: This is only a warning as it is generally not our fault, so its no real error in the service.
@@ -274,9 +309,9 @@ public abstract class Api {
    * Creates a response from the processed space task and send it to the client.
    *
    * @param task the space task that is finished processing and for which a response should be returned.
-   * @throws JsonProcessingException if serializing the content failed.
+   * @throws IOException if serializing the content failed.
    */
-  void sendResponse(final SpaceTask<?> task) throws JsonProcessingException {
+  void sendResponse(final SpaceTask<?> task) throws IOException {
     if (sendEmptyResponse(task) || sendNotModifiedResponseIfNoneMatch(task)) {
       return;
     }
@@ -300,8 +335,12 @@ public abstract class Api {
           return;
         }
 
-        final String geoJson = Json.mapper.writerWithView(view).writeValueAsString(task.responseSpaces);
-        sendJsonResponse(task, geoJson);
+        if (task instanceof ReadQuery && ((ReadQuery<?>) task).selectedCondition != null
+            && ((ReadQuery<?>) task).selectedCondition.limit == task.responseSpaces.size()) {
+          //The page is full, the ID of its last space is the handle of the next page
+          task.context.response().putHeader(NEXT_HANDLE, task.responseSpaces.get(task.responseSpaces.size() - 1).getId());
+        }
+        sendJsonResponse(task, Json.mapper.writerWithView(view), task.responseSpaces);
         return;
       }
 
@@ -409,6 +448,22 @@ public abstract class Api {
     sendResponse(task, OK, APPLICATION_JSON, json.getBytes());
   }
 
+  /**
+   * Returns a response to the client with JSON content and status 200. The value is serialized directly into the response buffer, without
+   * an intermediate string.
+   *
+   * @param task the task for which to return the JSON response.
+   * @param writer the writer to serialize the value.
+   * @param value the value to be serialized.
+   */
+  private void sendJsonResponse(final Task<?, ?> task, final ObjectWriter writer, final Object value) throws IOException {
+    final ByteBuf byteBuf = Unpooled.buffer();
+    try (final OutputStream os = new ByteBufOutputStream(byteBuf)) {
+      writer.writeValue(os, value);
+    }
+    sendResponse(task, OK, APPLICATION_JSON, Buffer.buffer(byteBuf));
+  }
+
   /**
    * Returns a response to the client with GeoJSON content and status 200.
    *
@@ -427,12 +482,53 @@ public abstract class Api {
     sendResponse(task, OK, APPLICATION_VND_MAPBOX_VECTOR_TILE, mvt);
   }
 
+  /**
+   * Returns a response, which was read compressed from the cache, to the client with status 200. The compressed body is sent as it is,
+   * if the client accepts the gzip encoding, otherwise it is decompressed.
+   *
+   * @param task the task for which to return the response.
+   * @param response the compressed response.
+   */
+  private void sendCompressedResponse(final FeatureTask task, final CompressedResponse response) {
+    final String contentType = task.responseType == ApiResponseType.FEATURE_COLLECTION ? APPLICATION_GEO_JSON
+        : APPLICATION_VND_MAPBOX_VECTOR_TILE;
+
+    if (!XYZHttpContentCompressor.isGzipAccepted(task.context.request().getHeader(ACCEPT_ENCODING))) {
+      try {
+        sendResponse(task, OK, contentType, Compression.decompressUsingGzip(response.getBytes()));
+      } catch (DataFormatException e) {
+        logger.error(task.getMarker(), "Unable to decompress the cached response.", e);
+        sendErrorResponse(task.context, INTERNAL_SERVER_ERROR, XyzError.EXCEPTION, "Unable to decompress the cached response.");
+      }
+      return;
+    }
+
+    final HttpServerResponse httpResponse = task.context.response().setStatusCode(OK.code());
+    final CacheProfile cacheProfile = task.getCacheProfile();
+    if (cacheProfile.browserTTL > 0) {
+      httpResponse.putHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + (cacheProfile.browserTTL / 1000));
+    }
+
+    if (response.getLength() > MAX_RESPONSE_LENGTH) {
+      sendErrorResponse(task.context, new HttpException(RESPONSE_PAYLOAD_TOO_LARGE, RESPONSE_PAYLOAD_TOO_LARGE_MESSAGE));
+      return;
+    }
+    //Setting the Content-Encoding prevents the compression by the HTTP server
+    httpResponse.putHeader(CONTENT_TYPE, contentType);
+    httpResponse.putHeader(CONTENT_ENCODING, GZIP);
+    httpResponse.end(Buffer.buffer(response.getBytes()));
+  }
+
   private long getMaxResponseLength(final RoutingContext context) {
     return XYZHttpContentCompressor.isCompressionEnabled(context.request().getHeader(ACCEPT_ENCODING)) ?
         MAX_RESPONSE_LENGTH : MAX_COMPRESSED_RESPONSE_LENGTH;
   }
 
   private void sendResponse(final Task task, HttpResponseStatus status, String contentType, final byte[] response) {
+    sendResponse(task, status, contentType, response == null ? null : Buffer.buffer(response));
+  }
+
+  private void sendResponse(final Task task, HttpResponseStatus status, String contentType, final Buffer response) {
 
     HttpServerResponse httpResponse = task.context.response().setStatusCode(status.code());
 
@@ -441,19 +537,20 @@ public abstract class Api {
       httpResponse.putHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + (cacheProfile.browserTTL / 1000));
     }
 
-    if (response == null || response.length == 0) {
+    if (response == null || response.length() == 0) {
       httpResponse.end();
-    } else if (response.length > getMaxResponseLength(task.context)) {
+    } else if (response.length() > getMaxResponseLength(task.context)) {
       sendErrorResponse(task.context, new HttpException(RESPONSE_PAYLOAD_TOO_LARGE, RESPONSE_PAYLOAD_TOO_LARGE_MESSAGE));
     } else {
       httpResponse.putHeader(CONTENT_TYPE, contentType);
-      httpResponse.end(Buffer.buffer(response));
+      httpResponse.end(response);
     }
   }
 
   public static class HeaderValues {
 
     public static final String STREAM_ID = "Stream-Id";
+    public static final String NEXT_HANDLE = "Next-Handle";
     public static final String APPLICATION_GEO_JSON = "application/geo+json";
     public static final String APPLICATION_JSON = "application/json";
     static final String APPLICATION_VND_MAPBOX_VECTOR_TILE = "application/vnd.mapbox-vector-tile";
@@ -469,6 +566,13 @@ public abstract class Api {
       }
       return instance.determineWrapper(acceptEncoding) != ZlibWrapper.NONE;
     }
+
+    static boolean isGzipAccepted(String acceptEncoding) {
+      if (acceptEncoding == null) {
+        return false;
+      }
+      return instance.determineWrapper(acceptEncoding) == ZlibWrapper.GZIP;
+    }
   }
 
   public static final class Context {
@@ -67,15 +67,24 @@ public class SpaceApi extends Api {
   }
 
   /**
-   * List all spaces accessible for the provided credentials.
+   * List all spaces accessible for the provided credentials. If a limit is given, the spaces are listed in pages in the order of their
+   * IDs. The ID of the last space of a page is the handle of the next one.
    */
   public void getSpaces(final RoutingContext context) {
+    final int limit = ApiParam.Query.getInteger(context, Query.LIMIT, 0);
+    if (limit < 0) {
+      context.fail(new HttpException(BAD_REQUEST, "The parameter limit must not be negative."));
+      return;
+    }
+
     new MatrixReadQuery(
         context,
         ApiResponseType.SPACE_LIST,
         ApiParam.Query.getBoolean(context, ApiParam.Query.INCLUDE_RIGHTS, false),
         ApiParam.Query.getBoolean(context, Query.INCLUDE_CONNECTORS, false),
-        ApiParam.Query.getString(context, ApiParam.Query.OWNER, MatrixReadQuery.ME)
+        ApiParam.Query.getString(context, ApiParam.Query.OWNER, MatrixReadQuery.ME),
+        ApiParam.Query.getString(context, Query.HANDLE, null),
+        limit
     ).execute(this::sendResponse, this::sendErrorResponse);
   }
 
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.task;
+
+import com.here.xyz.hub.Service;
+import com.here.xyz.hub.rest.admin.AdminMessage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Approximate feature counts of the spaces, which are used to enforce the usage quotas. The counts are maintained from the responses
+ * of the write requests and are reconciled with the storage connector in the background from time to time. The changes and the
+ * reconciled counts are shared with the other nodes.
+ */
+public class FeatureCounters {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  /**
+   * The interval in which the changes of the counts are sent to the other nodes.
+   */
+  private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+  /**
+   * If the space can store more than this amount of features until the quota is reached, the count is reconciled less often.
+   */
+  private static final long LARGE_HEADROOM = 100_000;
+
+  private static final ExpiringMap<String, Counter> counters = ExpiringMap.builder()
+      .maxSize(16 * 1024)
+      .expirationPolicy(ExpirationPolicy.ACCESSED)
+      .expiration(10, TimeUnit.MINUTES)
+      .build();
+  private static final Map<String, Long> pendingDeltas = new ConcurrentHashMap<>();
+  private static final Map<String, Long> pendingCounts = new ConcurrentHashMap<>();
+  private static final AtomicBoolean flushStarted = new AtomicBoolean();
+
+  /**
+   * Returns the feature count of the space and reconciles it in the background, if it is due.
+   *
+   * @param spaceId the space ID
+   * @param maxFeatures the maximum number of features of the space
+   * @param loader counts the features of the space at the storage connector, only called if a reconciliation is due
+   * @return the approximate feature count or null, if the space was not counted yet
+   */
+  static Long get(String spaceId, long maxFeatures, Handler<Handler<AsyncResult<Long>>> loader) {
+    final Counter counter = counters.get(spaceId);
+    if (counter == null) {
+      return null;
+    }
+
+    final long count = counter.count.get();
+    if (counter.isReconciliationDue(maxFeatures - count) && counter.reconciling.compareAndSet(false, true)) {
+      try {
+        loader.handle(ar -> {
+          counter.reconciling.set(false);
+          if (ar.succeeded()) {
+            reconciled(spaceId, ar.result());
+          } else {
+            logger.warn("Failed to reconcile the feature count of space {}, reason: {}", spaceId, ar.cause());
+          }
+        });
+      } catch (Exception e) {
+        counter.reconciling.set(false);
+        logger.warn("Failed to reconcile the feature count of space {}, reason: {}", spaceId, e);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Sets the feature count of the space, which was counted by the storage connector.
+   */
+  static void reconciled(String spaceId, long count) {
+    set(spaceId, count);
+    pendingCounts.put(spaceId, count);
+    startFlush();
+  }
+
+  /**
+   * Applies a change of the feature count of the space, which was caused by a write request.
+   */
+  static void add(String spaceId, long delta) {
+    final Counter counter = counters.get(spaceId);
+    if (counter == null || delta == 0) {
+      return;
+    }
+    counter.count.addAndGet(delta);
+    pendingDeltas.merge(spaceId, delta, Long::sum);
+    startFlush();
+  }
+
+  /**
+   * Marks the feature count of the space to be reconciled with the next quota check, e.g. after a change of an unknown amount of
+   * features.
+   */
+  static void invalidate(String spaceId) {
+    final Counter counter = counters.get(spaceId);
+    if (counter != null) {
+      counter.reconciledAt = 0;
+    }
+  }
+
+  private static void set(String spaceId, long count) {
+    final Counter counter = counters.get(spaceId);
+    if (counter == null) {
+      counters.put(spaceId, new Counter(count));
+      return;
+    }
+    counter.count.set(count);
+    counter.reconciledAt = Service.currentTimeMillis();
+  }
+
+  private static void startFlush() {
+    if (Service.vertx != null && flushStarted.compareAndSet(false, true)) {
+      Service.vertx.setPeriodic(FLUSH_INTERVAL, timerId -> flush());
+    }
+  }
+
+  private static void flush() {
+    final Map<String, Long> deltas = drain(pendingDeltas);
+    final Map<String, Long> counts = drain(pendingCounts);
+    if (deltas.isEmpty() && counts.isEmpty()) {
+      return;
+    }
+    new FeatureCountMessage().withDeltas(deltas).withCounts(counts).broadcast();
+  }
+
+  private static Map<String, Long> drain(Map<String, Long> pending) {
+    final Map<String, Long> drained = new HashMap<>();
+    for (String spaceId : pending.keySet()) {
+      final Long value = pending.remove(spaceId);
+      if (value != null) {
+        drained.put(spaceId, value);
+      }
+    }
+    return drained;
+  }
+
+  private static class Counter {
+
+    final AtomicLong count;
+    final AtomicBoolean reconciling = new AtomicBoolean();
+    volatile long reconciledAt = Service.currentTimeMillis();
+
+    Counter(long count) {
+      this.count = new AtomicLong(count);
+    }
+
+    boolean isReconciliationDue(long headroom) {
+      final long interval = TimeUnit.SECONDS.toMillis(headroom > LARGE_HEADROOM ? 60 : 10);
+      return Service.currentTimeMillis() - reconciledAt > interval;
+    }
+  }
+
+  public static class FeatureCountMessage extends AdminMessage {
+
+    private Map<String, Long> deltas;
+    private Map<String, Long> counts;
+
+    public Map<String, Long> getDeltas() {
+      return deltas;
+    }
+
+    public void setDeltas(Map<String, Long> deltas) {
+      this.deltas = deltas;
+    }
+
+    public FeatureCountMessage withDeltas(Map<String, Long> deltas) {
+      this.deltas = deltas;
+      return this;
+    }
+
+    public Map<String, Long> getCounts() {
+      return counts;
+    }
+
+    public void setCounts(Map<String, Long> counts) {
+      this.counts = counts;
+    }
+
+    public FeatureCountMessage withCounts(Map<String, Long> counts) {
+      this.counts = counts;
+      return this;
+    }
+
+    @Override
+    protected void handle() {
+      if (counts != null) {
+        counts.forEach(FeatureCounters::set);
+      }
+      if (deltas != null) {
+        deltas.forEach((spaceId, delta) -> {
+          final Counter counter = counters.get(spaceId);
+          if (counter != null) {
+            counter.count.addAndGet(delta);
+          }
+        });
+      }
+    }
+  }
+}
@@ -52,9 +52,13 @@ import com.here.xyz.hub.rest.ApiResponseType;
 import com.here.xyz.hub.rest.HttpException;
 import com.here.xyz.hub.task.FeatureTaskHandler.InvalidStorageException;
 import com.here.xyz.hub.task.ModifyOp.Entry;
+import com.here.xyz.hub.task.ModifyOp.IfExists;
+import com.here.xyz.hub.task.ModifyOp.IfNotExists;
 import com.here.xyz.hub.task.TaskPipeline.Callback;
 import com.here.xyz.models.geojson.implementation.Feature;
 import com.here.xyz.models.geojson.implementation.FeatureCollection;
+import com.here.xyz.responses.ErrorResponse;
+import com.here.xyz.responses.NotModifiedResponse;
 import com.here.xyz.responses.XyzResponse;
 import io.vertx.core.AsyncResult;
 import io.vertx.ext.web.RoutingContext;
@@ -86,6 +90,12 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
    */
   private String cacheKey;
 
+  /**
+   * An e-tag, which is derived from the version of the space content and the request. It is known before the response was produced and
+   * only set for read requests on spaces, which content is currently cacheable.
+   */
+  private String versionEtag;
+
   public static final class FeatureKey {
 
     public static final String ID = "id";
@@ -147,9 +157,25 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
     if (response == null) {
       return null;
     }
+    if (versionEtag != null && !(response instanceof ErrorResponse) && !(response instanceof NotModifiedResponse)) {
+      return versionEtag;
+    }
     return response.getEtag();
   }
 
+  /**
+   * Returns the e-tag, which is derived from the version of the space content and the request.
+   *
+   * @return the e-tag or null, if the content of the space is currently not cacheable.
+   */
+  public String getVersionEtag() {
+    return versionEtag;
+  }
+
+  public void setVersionEtag(String versionEtag) {
+    this.versionEtag = versionEtag;
+  }
+
   /**
    * Returns the current response.
    *
@@ -347,6 +373,7 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
           .then(FeatureTaskHandler::resolveSpace)
           .then(FeatureAuthorization::authorize)
           .then(FeatureTaskHandler::validate)
+          .then(FeatureTaskHandler::checkIfNoneMatch)
           .then(FeatureTaskHandler::readCache)
           .then(FeatureTaskHandler::invoke)
           .then(FeatureTaskHandler::writeCache);
@@ -374,6 +401,7 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
           .then(FeatureTaskHandler::resolveSpace)
           .then(FeatureAuthorization::authorize)
           .then(FeatureTaskHandler::validate)
+          .then(FeatureTaskHandler::checkIfNoneMatch)
           .then(FeatureTaskHandler::readCache)
           .then(FeatureTaskHandler::invoke)
           .then(FeatureTaskHandler::transformResponse)
@@ -405,9 +433,12 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
       return TaskPipeline.create(this)
           .then(FeatureTaskHandler::resolveSpace)
           .then(FeatureAuthorization::authorize)
+          .then(FeatureTaskHandler::checkIfNoneMatch)
+          .then(FeatureTaskHandler::readMissingFeatures)
           .then(FeatureTaskHandler::readCache)
           .then(FeatureTaskHandler::invoke)
           .then(FeatureTaskHandler::convertResponse)
+          .then(FeatureTaskHandler::writeMissingFeatures)
           .then(FeatureTaskHandler::writeCache);
     }
   }
@@ -447,6 +478,7 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
           .then(FeatureTaskHandler::resolveSpace)
           .then(FeatureAuthorization::authorize)
           .then(FeatureTaskHandler::validate)
+          .then(FeatureTaskHandler::checkIfNoneMatch)
           .then(FeatureTaskHandler::readCache)
           .then(FeatureTaskHandler::invoke)
           .then(FeatureTaskHandler::writeCache);
@@ -465,6 +497,7 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
           .then(FeatureTaskHandler::resolveSpace)
           .then(FeatureAuthorization::authorize)
           .then(FeatureTaskHandler::validate)
+          .then(FeatureTaskHandler::checkIfNoneMatch)
           .then(FeatureTaskHandler::readCache)
           .then(FeatureTaskHandler::invoke)
           .then(FeatureTaskHandler::writeCache);
@@ -499,6 +532,7 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
       return TaskPipeline.create(this)
           .then(FeatureTaskHandler::resolveSpace)
           .then(FeatureAuthorization::authorize)
+          .then(FeatureTaskHandler::checkIfNoneMatch)
           .then(FeatureTaskHandler::readCache)
           .then(FeatureTaskHandler::invoke)
           .then(FeatureTaskHandler::convertResponse)
@@ -518,7 +552,8 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
           .then(FeatureTaskHandler::resolveSpace)
           .then(FeatureTaskHandler::checkPreconditions)
           .then(FeatureAuthorization::authorize)
-          .then(FeatureTaskHandler::invoke);
+          .then(FeatureTaskHandler::invoke)
+          .then(FeatureTaskHandler::updateFeatureCount);
     }
   }
 
@@ -557,6 +592,10 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
     private Map<Object, Integer> positionById;
     private LoadFeaturesEvent loadFeaturesEvent;
     public boolean hasNonModified;
+    /**
+     * Whether the features are sent as upserts to the storage connector, without loading their existing states before.
+     */
+    public boolean upsert;
 
     public ConditionalOperation(ModifyFeaturesEvent event, RoutingContext context, ApiResponseType apiResponseTypeType,
         ModifyFeatureOp modifyOp,
@@ -578,7 +617,9 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
           .then(FeatureTaskHandler::processConditionalOp)
           .then(FeatureAuthorization::authorize)
           .then(FeatureTaskHandler::enforceUsageQuotas)
-          .then(FeatureTaskHandler::invoke);
+          .then(FeatureTaskHandler::invoke)
+          .then(FeatureTaskHandler::updateFeatureCount)
+          .then(FeatureTaskHandler::invalidateMissingFeatures);
     }
 
     private void verifyResourceExists(ConditionalOperation task, Callback<ConditionalOperation> callback) {
@@ -590,6 +631,12 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
     }
 
     private void loadObjects(final ConditionalOperation s, final Callback<ConditionalOperation> c) {
+      if (canUpsert()) {
+        upsert = true;
+        c.call(this);
+        return;
+      }
+
       final LoadFeaturesEvent event = toLoadFeaturesEvent();
       if (event == null) {
         c.call(this);
@@ -603,6 +650,24 @@ public abstract class FeatureTask<T extends Event<?>, X extends FeatureTask<T, ?
       }
     }
 
+    /**
+     * Checks, if the existing states are not needed to process this operation, because the storage connector is able to decide itself
+     * whether a feature gets inserted or replaced. That is only the case for plain replace / create operations, where neither tags nor
+     * quotas need to be calculated from the existing states and no processor expects separate insert and update lists. Additionally the
+     * token has to allow creating and updating features, otherwise the rights are checked per feature against its existing state.
+     */
+    boolean canUpsert() {
+      return storage.capabilities.upsertSupport
+          && modifyOp.ifExists == IfExists.REPLACE
+          && modifyOp.ifNotExists == IfNotExists.CREATE
+          && !requireResourceExists
+          && (addTags == null || addTags.isEmpty())
+          && (removeTags == null || removeTags.isEmpty())
+          && (space.getProcessors() == null || space.getProcessors().isEmpty())
+          && (getJwt().limits == null || getJwt().limits.maxFeaturesPerSpace <= 0)
+          && FeatureAuthorization.canUpsert(this);
+    }
+
     LoadFeaturesEvent toLoadFeaturesEvent() {
       if (loadFeaturesEvent != null) {
         return loadFeaturesEvent;
@@ -42,6 +42,7 @@ import com.here.xyz.events.ModifySpaceEvent;
 import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.RpcClient;
 import com.here.xyz.hub.connectors.models.BinaryResponse;
+import com.here.xyz.hub.connectors.models.CompressedResponse;
 import com.here.xyz.hub.connectors.models.Connector;
 import com.here.xyz.hub.connectors.models.Space;
 import com.here.xyz.hub.connectors.models.Space.CacheProfile;
@@ -50,6 +51,7 @@ import com.here.xyz.hub.connectors.models.Space.ResolvableListenerConnectorRef;
 import com.here.xyz.hub.rest.Api;
 import com.here.xyz.hub.rest.ApiResponseType;
 import com.here.xyz.hub.rest.HttpException;
+import com.here.xyz.hub.rest.admin.AdminMessage;
 import com.here.xyz.hub.task.FeatureTask.ConditionalOperation;
 import com.here.xyz.hub.task.FeatureTask.DeleteOperation;
 import com.here.xyz.hub.task.FeatureTask.ReadQuery;
@@ -57,7 +59,9 @@ import com.here.xyz.hub.task.FeatureTask.TileQuery;
 import com.here.xyz.hub.task.FeatureTask.TileQuery.TransformationContext;
 import com.here.xyz.hub.task.ModifyOp.Entry;
 import com.here.xyz.hub.task.ModifyOp.ModifyOpError;
+import com.here.xyz.hub.util.NegativeCache;
 import com.here.xyz.hub.task.TaskPipeline.Callback;
+import com.here.xyz.hub.util.Compression;
 import com.here.xyz.hub.util.geo.MapBoxVectorTileBuilder;
 import com.here.xyz.hub.util.geo.MapBoxVectorTileFlattenedBuilder;
 import com.here.xyz.models.geojson.WebMercatorTile;
@@ -81,14 +85,19 @@ import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
 import net.jodah.expiringmap.ExpirationPolicy;
 import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -100,13 +109,43 @@ public class FeatureTaskHandler {
 
   private static final Logger logger = LogManager.getLogger();
 
-  private static final ExpiringMap<String, Long> countCache = ExpiringMap.builder()
-      .maxSize(1024)
-      .variableExpiration()
-      .expirationPolicy(ExpirationPolicy.CREATED)
-      .build();
   private static final byte JSON_VALUE = 1;
   private static final byte BINARY_VALUE = 2;
+  private static final byte GZIP_JSON_VALUE = 3;
+  private static final byte GZIP_BINARY_VALUE = 4;
+  /**
+   * The length of the header of the gzip entries ( type, creation time, computation time, length, e-tag length ).
+   */
+  private static final int GZIP_HEADER_LENGTH = 1 + 8 + 4 + 4 + 2;
+  private static final String VERSION_ETAG_PREFIX = "v";
+  /**
+   * Lookups of feature IDs, which did not find any feature, are remembered for a few seconds, as some clients retry them aggressively.
+   */
+  private static final NegativeCache missingFeatures = new NegativeCache(16 * 1024, 10, TimeUnit.SECONDS);
+  /**
+   * The spaces, for which the other nodes will be notified about created features.
+   */
+  private static final Set<String> pendingFeatureCreations = ConcurrentHashMap.newKeySet();
+  private static final long FEATURE_CREATIONS_BROADCAST_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+  /**
+   * Cache entries are kept for this multiple of the service TTL. Once the service TTL passed, the entry is stale, but still returned
+   * while one request refreshes it.
+   */
+  private static final int STALE_TTL_FACTOR = 2;
+  /**
+   * Scales how early before the end of the service TTL a refresh may be started, relative to the time the computation of the
+   * response took.
+   */
+  private static final double REFRESH_BETA = 1.0;
+  /**
+   * The cache keys, which are currently refreshed by a request of this instance. A key expires, if the refreshing request failed.
+   */
+  private static final ExpiringMap<String, Boolean> cacheRefreshes = ExpiringMap.builder()
+      .maxSize(16 * 1024)
+      .expiration(30, TimeUnit.SECONDS)
+      .expirationPolicy(ExpirationPolicy.CREATED)
+      .build();
 
   /**
    * Sends the event to the connector client and write the response as the responseCollection of the task.
@@ -223,53 +262,131 @@ public class FeatureTaskHandler {
     });
   }
 
-  private static XyzResponse transform(byte[] value) throws JsonProcessingException {
-    byte type = value[0];
-    byte[] byteValue = Buffer.buffer(value).getBytes(1, value.length);
+  static XyzResponse transform(ApiResponseType responseType, byte[] value) throws JsonProcessingException, DataFormatException {
+    final Buffer buffer = Buffer.buffer(value);
+    final byte type = buffer.getByte(0);
     switch (type) {
       case JSON_VALUE: {
-        return XyzSerializable.deserialize(new String(byteValue));
+        return XyzSerializable.deserialize(new String(buffer.getBytes(1, value.length)));
       }
       case BINARY_VALUE: {
-        return new BinaryResponse().withBytes(byteValue);
+        return new BinaryResponse().withBytes(buffer.getBytes(1, value.length));
+      }
+      case GZIP_JSON_VALUE:
+      case GZIP_BINARY_VALUE: {
+        final boolean binary = type == GZIP_BINARY_VALUE;
+        final int length = buffer.getInt(GZIP_HEADER_LENGTH - 6);
+        final int etagLength = buffer.getUnsignedShort(GZIP_HEADER_LENGTH - 2);
+        final String etag = etagLength == 0 ? null : buffer.getString(GZIP_HEADER_LENGTH, GZIP_HEADER_LENGTH + etagLength, "UTF-8");
+        final byte[] compressed = buffer.getBytes(GZIP_HEADER_LENGTH + etagLength, value.length);
+
+        //The value is the body of the HTTP response, no need to decompress and parse it
+        if (!binary && responseType == ApiResponseType.FEATURE_COLLECTION
+            || binary && (responseType == ApiResponseType.MVT || responseType == ApiResponseType.MVT_FLATTENED)) {
+          return new CompressedResponse().withBytes(compressed).withLength(length).withEtag(etag);
+        }
+
+        final byte[] byteValue = Compression.decompressUsingGzip(compressed);
+        if (binary) {
+          return new BinaryResponse().withBytes(byteValue).withEtag(etag);
+        }
+        return XyzSerializable.deserialize(new String(byteValue));
       }
+      default:
+        throw new IllegalArgumentException("Unknown type of cache entry: " + type);
     }
-    return null;
   }
 
-  private static byte[] transform(XyzResponse value) {
-    byte[] byteValue;
-    byte[] type = new byte[1];
+  /**
+   * Decides whether the cache entry should be refreshed. The refresh is started probabilistically before the entry gets stale, the
+   * earlier, the longer the computation of the response took, so that the refreshes of entries, which were written at the same time, are
+   * spread. Uncompressed entries are never refreshed.
+   *
+   * @param value the cache entry
+   * @param ttl the service TTL in milliseconds
+   */
+  static boolean isRefreshDue(byte[] value, long ttl) {
+    if (value.length < GZIP_HEADER_LENGTH || value[0] != GZIP_JSON_VALUE && value[0] != GZIP_BINARY_VALUE) {
+      return false;
+    }
+    final Buffer buffer = Buffer.buffer(value);
+    final long createdAt = buffer.getLong(1);
+    final int computationTime = buffer.getInt(9);
+    final double random = ThreadLocalRandom.current().nextDouble();
+    return Service.currentTimeMillis() - computationTime * REFRESH_BETA * Math.log(random) >= createdAt + ttl;
+  }
+
+  /**
+   * Creates the cache entry for the response. The entry consists of the type, the creation time, the time it took to compute the response,
+   * the length of the uncompressed value, the e-tag and the gzip compressed value.
+   */
+  static byte[] transform(XyzResponse value, long computationTime) {
+    final byte type;
+    final byte[] byteValue;
     if (value instanceof BinaryResponse) {
       byteValue = ((BinaryResponse) value).getBytes();
-      type[0] = BINARY_VALUE;
+      type = GZIP_BINARY_VALUE;
     } else {
       byteValue = value.serialize().getBytes();
-      type[0] = JSON_VALUE;
+      type = GZIP_JSON_VALUE;
     }
-    Buffer b = Buffer.buffer(type).appendBytes(byteValue);
-    return b.getBytes();
+    final byte[] etag = value.getEtag() == null ? new byte[0] : value.getEtag().getBytes(StandardCharsets.UTF_8);
+    return Buffer.buffer()
+        .appendByte(type)
+        .appendLong(Service.currentTimeMillis())
+        .appendInt((int) Math.min(computationTime, Integer.MAX_VALUE))
+        .appendInt(byteValue.length)
+        .appendUnsignedShort(etag.length)
+        .appendBytes(etag)
+        .appendBytes(Compression.compressUsingGzip(byteValue))
+        .getBytes();
   }
 
-  public static <T extends FeatureTask> void readCache(T task, Callback<T> callback) {
+  /**
+   * Answers a conditional read request with "Not Modified" without reading the cache or invoking the connector, if the space content
+   * did not change since the e-tag was sent. The e-tag is derived from the cache key, which includes the time of the last content update
+   * of the space. Therefore it is only used while the space content is cacheable, as the content updates are recorded with a delay.
+   */
+  public static <T extends FeatureTask> void checkIfNoneMatch(T task, Callback<T> callback) {
     if (task.getCacheProfile().serviceTTL > 0) {
+      final String cacheKey = task.getCacheKey();
+      if (cacheKey != null) {
+        task.setVersionEtag(VERSION_ETAG_PREFIX + cacheKey);
+        if (task.getVersionEtag().equals(task.getEvent().getIfNoneMatch())) {
+          logger.info(task.getMarker(), "Not modified for e-tag {}", task.getVersionEtag());
+          task.setResponse(new NotModifiedResponse().withEtag(task.getVersionEtag()));
+        }
+      }
+    }
+    callback.call(task);
+  }
+
+  public static <T extends FeatureTask> void readCache(T task, Callback<T> callback) {
+    final long serviceTTL = task.getCacheProfile().serviceTTL;
+    if (serviceTTL > 0 && task.getResponse() == null) {
       String cacheKey = task.getCacheKey();
 
       //Check the cache
+      if (task.getCacheLookupTime() == 0) {
+        task.setCacheLookupTime(Service.currentTimeMillis());
+      }
       Service.cacheClient.getBinary(cacheKey, cacheResult -> {
         if (cacheResult == null) {
           //Cache MISS: Just go on in the task pipeline
           logger.info(task.getMarker(), "Cache MISS for cache key {}", cacheKey);
+        } else if (isRefreshDue(cacheResult, serviceTTL) && cacheRefreshes.putIfAbsent(cacheKey, Boolean.TRUE) == null) {
+          //Cache REFRESH: This request computes the response and refreshes the entry, concurrent requests still get the stale entry
+          logger.info(task.getMarker(), "Cache REFRESH for cache key {}", cacheKey);
         } else {
           //Cache HIT: Set the response for the task to the result from the cache so invoke (in the task pipeline) won't have anything to do
           try {
-            task.setResponse(transform(cacheResult));
+            task.setResponse(transform(task.responseType, cacheResult));
             task.setCacheHit(true);
             logger.info(task.getMarker(), "Cache HIT for cache key {}", cacheKey);
-          } catch (JsonProcessingException e) {
+          } catch (JsonProcessingException | DataFormatException | RuntimeException e) {
             //Actually, this should never happen as we're controlling how the data is written to the cache, but you never know ;-)
-            //Treating an error as a Cache MISS
-            logger.info(task.getMarker(), "Cache MISS (as of JSON parse exception) for cache key {} {}", cacheKey, e);
+            //Treating an error ( e.g. a truncated entry or an entry of an unknown format ) as a Cache MISS
+            logger.info(task.getMarker(), "Cache MISS (as of an undecodable cache entry) for cache key {} {}", cacheKey, e);
           }
         }
         callback.call(task);
@@ -286,7 +403,8 @@ public class FeatureTaskHandler {
     //noinspection rawtypes
     XyzResponse response = task.getResponse();
     if (cacheProfile.serviceTTL > 0 && response != null && !task.isCacheHit()
-        && !(response instanceof NotModifiedResponse) && !(response instanceof ErrorResponse)) {
+        && !(response instanceof NotModifiedResponse) && !(response instanceof ErrorResponse)
+        && !(response instanceof BinaryResponse && ((BinaryResponse) response).getBytes() == null)) {
       String cacheKey = task.getCacheKey();
       if (cacheKey == null) {
         String npe = "cacheKey is null. Couldn't write cache.";
@@ -294,8 +412,58 @@ public class FeatureTaskHandler {
         throw new NullPointerException(npe);
       }
       logger.debug(task.getMarker(), "Writing entry with cache key {} to cache", cacheKey);
-      Service.cacheClient.setBinary(cacheKey, transform(response), cacheProfile.serviceTTL);
+      final long computationTime = Service.currentTimeMillis() - task.getCacheLookupTime();
+      Service.cacheClient.setBinary(cacheKey, transform(response, computationTime),
+          Math.max(1, TimeUnit.MILLISECONDS.toSeconds(cacheProfile.serviceTTL * STALE_TTL_FACTOR)));
+      cacheRefreshes.remove(cacheKey);
+    }
+  }
+
+  /**
+   * Answers a lookup of feature IDs with an empty collection, if the same lookup did not find any feature a few seconds ago.
+   */
+  static <T extends FeatureTask> void readMissingFeatures(T task, Callback<T> callback) {
+    task.setCacheLookupTime(Service.currentTimeMillis());
+    if (!task.skipCache && task.getResponse() == null) {
+      final String cacheKey = task.getCacheKey();
+      if (cacheKey != null && missingFeatures.contains(task.space.getId(), cacheKey)) {
+        logger.info(task.getMarker(), "Cache HIT (not found) for cache key {}", cacheKey);
+        task.setResponse(new FeatureCollection());
+        task.setCacheHit(true);
+      }
+    }
+    callback.call(task);
+  }
+
+  static <T extends FeatureTask> void writeMissingFeatures(T task, Callback<T> callback) throws JsonProcessingException {
+    final XyzResponse response = task.getResponse();
+    if (!task.skipCache && !task.isCacheHit() && response instanceof FeatureCollection) {
+      final List<Feature> features = ((FeatureCollection) response).getFeatures();
+      final String cacheKey = task.getCacheKey();
+      if ((features == null || features.isEmpty()) && cacheKey != null) {
+        missingFeatures.put(task.space.getId(), cacheKey, task.getCacheLookupTime());
+      }
+    }
+    callback.call(task);
+  }
+
+  /**
+   * Invalidates the remembered lookups of feature IDs of the space, which did not find any feature, if features were created. The other
+   * nodes are notified with a short delay, so that all creations within it are sent with one message.
+   */
+  static <X extends FeatureTask> void invalidateMissingFeatures(X task, Callback<X> callback) {
+    if (!(task.getResponse() instanceof FeatureCollection) || ((FeatureCollection) task.getResponse()).getInserted() == null
+        || !((FeatureCollection) task.getResponse()).getInserted().isEmpty()) {
+      final String spaceId = task.space.getId();
+      missingFeatures.invalidate(spaceId);
+      if (Service.vertx != null && pendingFeatureCreations.add(spaceId)) {
+        Service.vertx.setTimer(FEATURE_CREATIONS_BROADCAST_DELAY, timerId -> {
+          pendingFeatureCreations.remove(spaceId);
+          new InvalidateMissingFeaturesMessage().withSpaceId(spaceId).broadcast();
+        });
+      }
     }
+    callback.call(task);
   }
 
   /**
@@ -684,6 +852,7 @@ public class FeatureTaskHandler {
       task.modifyOp.process();
       final List<Feature> insert = new ArrayList<>();
       final List<Feature> update = new ArrayList<>();
+      final List<Feature> upsert = new ArrayList<>();
       final Map<String, String> delete = new HashMap<>();
       List<FeatureCollection.ModificationFailure> fails = new ArrayList<>();
 
@@ -744,7 +913,17 @@ public class FeatureTaskHandler {
             if (task.space.isEnableUUID()) {
               nsXyz.setUuid(java.util.UUID.randomUUID().toString());
             }
-            insert.add(result);
+
+            // The head state is unknown, the storage keeps the createdAt of an existing feature and checks the provided UUID (sent as puuid)
+            if (task.upsert) {
+              if (task.space.isEnableUUID()) {
+                nsXyz.setPuuid(entry.inputUUID);
+              }
+              upsert.add(result);
+            }
+            else {
+              insert.add(result);
+            }
           }
           // UPDATE
           else {
@@ -776,9 +955,12 @@ public class FeatureTaskHandler {
       task.getEvent().setUpdateFeatures(update);
       task.getEvent().setDeleteFeatures(delete);
       task.getEvent().setFailed(fails);
+      if (task.upsert) {
+        task.getEvent().setUpsertFeatures(upsert);
+      }
 
       // In case nothing was changed, set the response directly to skip calling the storage connector.
-      if (insert.size() == 0 && update.size() == 0 && delete.size() == 0) {
+      if (insert.size() == 0 && update.size() == 0 && upsert.size() == 0 && delete.size() == 0) {
         FeatureCollection fc = new FeatureCollection();
         if( task.hasNonModified ){
           task.modifyOp.entries.stream().filter(e -> !e.isModified).forEach(e -> {
@@ -840,9 +1022,10 @@ public class FeatureTaskHandler {
       return;
     }
 
-    Long cachedCount = countCache.get(task.space.getId());
-    if (cachedCount != null) {
-      checkFeaturesPerSpaceQuota(task, callback, maxFeaturesPerSpace, cachedCount);
+    //The approximate count is reconciled in the background, so that only the first write to a space needs to wait for the count
+    Long count = FeatureCounters.get(task.space.getId(), maxFeaturesPerSpace, handler -> getCountForSpace(task, handler));
+    if (count != null) {
+      checkFeaturesPerSpaceQuota(task, callback, maxFeaturesPerSpace, count);
       return;
     }
 
@@ -852,13 +1035,27 @@ public class FeatureTaskHandler {
         return;
       }
       // Check the quota
-      Long count = countResult.result();
-      long ttl = (maxFeaturesPerSpace - count > 100_000) ? 60 : 10;
-      countCache.put(task.space.getId(), count, ttl, TimeUnit.SECONDS);
-      checkFeaturesPerSpaceQuota(task, callback, maxFeaturesPerSpace, count);
+      FeatureCounters.reconciled(task.space.getId(), countResult.result());
+      checkFeaturesPerSpaceQuota(task, callback, maxFeaturesPerSpace, countResult.result());
     });
   }
 
+  /**
+   * Applies the amount of inserted and deleted features to the feature count of the space, which is used to enforce the usage quotas.
+   */
+  static <X extends FeatureTask> void updateFeatureCount(X task, Callback<X> callback) {
+    if (task instanceof ConditionalOperation && task.getResponse() instanceof FeatureCollection) {
+      final FeatureCollection response = (FeatureCollection) task.getResponse();
+      final int inserted = response.getInserted() == null ? 0 : response.getInserted().size();
+      final int deleted = response.getDeleted() == null ? 0 : response.getDeleted().size();
+      FeatureCounters.add(task.space.getId(), inserted - deleted);
+    } else {
+      //The amount of changed features is unknown, e.g. for a deletion by tags
+      FeatureCounters.invalidate(task.space.getId());
+    }
+    callback.call(task);
+  }
+
   private static void checkFeaturesPerSpaceQuota(ConditionalOperation task, Callback<ConditionalOperation> callback,
       long maxFeaturesPerSpace, Long count) {
     try {
@@ -1047,4 +1244,27 @@ public class FeatureTaskHandler {
       }
     }
   }
+
+  public static class InvalidateMissingFeaturesMessage extends AdminMessage {
+
+    private String spaceId;
+
+    public String getSpaceId() {
+      return spaceId;
+    }
+
+    public void setSpaceId(String spaceId) {
+      this.spaceId = spaceId;
+    }
+
+    public InvalidateMissingFeaturesMessage withSpaceId(String spaceId) {
+      this.spaceId = spaceId;
+      return this;
+    }
+
+    @Override
+    protected void handle() {
+      missingFeatures.invalidate(spaceId);
+    }
+  }
 }
@@ -99,10 +99,13 @@ public abstract class SpaceTask<X extends SpaceTask<?>> extends Task<Event, X> {
     public static final String OTHERS = "others";
     public static final String ALL = "*";
 
-    public MatrixReadQuery(RoutingContext context, ApiResponseType returnType, boolean includeRights, boolean includeConnectors, String owner) {
+    public MatrixReadQuery(RoutingContext context, ApiResponseType returnType, boolean includeRights, boolean includeConnectors, String owner,
+        String afterId, int limit) {
       super(context, returnType, null, null);
+      selectedCondition = new SpaceSelectionCondition();
+      selectedCondition.afterId = afterId;
+      selectedCondition.limit = limit;
       if (!Strings.isNullOrEmpty(owner)) {
-        selectedCondition = new SpaceSelectionCondition();
         String ownOwnerId = Api.Context.getJWT(context).aid;
         switch (owner) {
           case ME:
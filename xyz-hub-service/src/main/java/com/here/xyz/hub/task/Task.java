@@ -53,6 +53,11 @@ public abstract class Task<T extends Event, X extends Task<T, ?>> {
    */
   private boolean cacheHit;
 
+  /**
+   * The time in milliseconds, when the response was looked up in the cache.
+   */
+  private long cacheLookupTime;
+
   /**
    * The event to process.
    */
@@ -181,4 +186,12 @@ public abstract class Task<T extends Event, X extends Task<T, ?>> {
   public void setCacheHit(boolean cacheHit) {
     this.cacheHit = cacheHit;
   }
+
+  public long getCacheLookupTime() {
+    return cacheLookupTime;
+  }
+
+  public void setCacheLookupTime(long cacheLookupTime) {
+    this.cacheLookupTime = cacheLookupTime;
+  }
 }
@@ -19,10 +19,13 @@
 
 package com.here.xyz.hub.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.Inflater;
 
 public class Compression {
@@ -82,4 +85,45 @@ public class Compression {
       throw new DataFormatException(e.getMessage());
     }
   }
+
+  /**
+   * Compress a byte array using gzip, so that it can be sent with the Content-Encoding "gzip".
+   * @param bytearray the byte array to be compressed
+   * @return the compressed payload or an empty array in case of bytearray is null
+   */
+  public static byte[] compressUsingGzip(byte[] bytearray) {
+    if (bytearray == null) return new byte[0];
+
+    try (final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytearray.length / 4 + 64)) {
+      try (final GZIPOutputStream gos = new GZIPOutputStream(bos, 8192)) {
+        gos.write(bytearray);
+      }
+      return bos.toByteArray();
+    } catch (IOException e) {
+      //Can not happen, as the stream is in memory
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Decompress a byte array which was compressed using gzip.
+   * @param bytearray non-null byte array to be decompressed
+   * @return the decompressed payload or an empty array in case of bytearray is null
+   * @throws DataFormatException in case the payload cannot be decompressed
+   */
+  public static byte[] decompressUsingGzip(byte[] bytearray) throws DataFormatException {
+    if (bytearray == null) return new byte[0];
+
+    try (final GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(bytearray), 8192);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytearray.length * 4)) {
+      final byte[] buff = new byte[8192];
+      int count;
+      while ((count = gis.read(buff)) != -1) {
+        bos.write(buff, 0, count);
+      }
+      return bos.toByteArray();
+    } catch (IOException e) {
+      throw new DataFormatException(e.getMessage());
+    }
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.util;
+
+import com.here.xyz.hub.Service;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A cache for hot read-mostly values, which keeps one shard per event-loop thread. A shard is only read and written on its own thread,
+ * so that no locks or shared memory writes are needed. It is meant to be used in front of a shared cache, which stays the source of
+ * truth: A value is taken over from the shared cache and kept for a short time only, so that the shared cache still sees the usage
+ * regularly. Calls from other threads than event-loop threads are ignored.
+ *
+ * <p>An invalidation removes the value from all shards. The shards of other threads are invalidated asynchronously on their own thread,
+ * so the shared cache should be invalidated first.
+ *
+ * @param <V> the type of the values
+ */
+public class EventLoopLocalCache<V> {
+
+  private final List<Shard<V>> shards = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<Shard<V>> localShard = new ThreadLocal<>();
+  private final int maxSize;
+  private final long maxAge;
+
+  /**
+   * @param maxSize the maximum number of values per shard
+   * @param maxAge the time after which a value has to be taken over from the shared cache again
+   * @param unit the time unit of maxAge
+   */
+  public EventLoopLocalCache(int maxSize, long maxAge, TimeUnit unit) {
+    this.maxSize = maxSize;
+    this.maxAge = unit.toMillis(maxAge);
+  }
+
+  /**
+   * @return the value of the shard of the current event-loop thread or null, if there is none or it is outdated
+   */
+  public V get(String key) {
+    final Shard<V> shard = shard(false);
+    if (shard == null) {
+      return null;
+    }
+
+    final Entry<V> entry = shard.entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (Service.currentTimeMillis() - entry.createdAt > maxAge) {
+      shard.entries.remove(key);
+      return null;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Puts the value into the shard of the current event-loop thread.
+   */
+  public void put(String key, V value) {
+    final Shard<V> shard = shard(true);
+    if (shard != null && value != null) {
+      shard.entries.put(key, new Entry<>(value));
+    }
+  }
+
+  /**
+   * Removes the value from all shards.
+   */
+  public void invalidate(String key) {
+    for (Shard<V> shard : shards) {
+      if (shard.thread == Thread.currentThread()) {
+        shard.entries.remove(key);
+      } else {
+        shard.invalidations.add(key);
+        //The invalidations, which arrive until the shard's thread processes them, are removed together
+        if (shard.invalidationScheduled.compareAndSet(false, true)) {
+          shard.context.runOnContext(v -> shard.processInvalidations());
+        }
+      }
+    }
+  }
+
+  private Shard<V> shard(boolean create) {
+    if (!Context.isOnEventLoopThread()) {
+      return null;
+    }
+
+    Shard<V> shard = localShard.get();
+    if (shard == null && create && Vertx.currentContext() != null) {
+      shard = new Shard<>(Vertx.currentContext(), maxSize);
+      localShard.set(shard);
+      shards.add(shard);
+    }
+    return shard;
+  }
+
+  private static class Shard<V> {
+
+    final Context context;
+    final Thread thread = Thread.currentThread();
+    final Map<String, Entry<V>> entries;
+    final Queue<String> invalidations = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean invalidationScheduled = new AtomicBoolean();
+
+    Shard(Context context, int maxSize) {
+      this.context = context;
+      this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+          return size() > maxSize;
+        }
+      };
+    }
+
+    void processInvalidations() {
+      invalidationScheduled.set(false);
+      String key;
+      while ((key = invalidations.poll()) != null) {
+        entries.remove(key);
+      }
+    }
+  }
+
+  private static class Entry<V> {
+
+    final V value;
+    final long createdAt;
+
+    Entry(V value) {
+      this.value = value;
+      this.createdAt = Service.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.util;
+
+import com.here.xyz.hub.Service;
+import java.util.concurrent.TimeUnit;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+
+/**
+ * A short-lived cache for lookups, which did not find anything. The entries are kept separately from the cached values, so that they
+ * cannot evict them. The entries belong to a group, e.g. a space, and all entries of a group are invalidated at once, when something was
+ * created in it. An entry is only valid, if its lookup was started after the last invalidation of its group, so that a lookup, which
+ * was running during the creation, does not record a stale entry.
+ */
+public class NegativeCache {
+
+  private final ExpiringMap<String, Long> entries;
+  private final ExpiringMap<String, Long> invalidations;
+
+  /**
+   * @param maxSize the maximum number of entries
+   * @param expiration the time after which an entry is removed
+   * @param unit the time unit of the expiration
+   */
+  public NegativeCache(int maxSize, long expiration, TimeUnit unit) {
+    this.entries = ExpiringMap.builder()
+        .maxSize(maxSize)
+        .expirationPolicy(ExpirationPolicy.CREATED)
+        .expiration(expiration, unit)
+        .build();
+    //An invalidation is only relevant as long as entries recorded before it may exist
+    this.invalidations = ExpiringMap.builder()
+        .maxSize(maxSize)
+        .expirationPolicy(ExpirationPolicy.CREATED)
+        .expiration(expiration, unit)
+        .build();
+  }
+
+  /**
+   * @param group the group of the entry
+   * @param key the key of the entry
+   * @return whether a lookup for the key is known to find nothing
+   */
+  public boolean contains(String group, String key) {
+    final Long lookupTime = entries.get(group + ":" + key);
+    if (lookupTime == null) {
+      return false;
+    }
+    final Long invalidatedAt = invalidations.get(group);
+    return invalidatedAt == null || lookupTime > invalidatedAt;
+  }
+
+  /**
+   * Records that a lookup for the key found nothing.
+   *
+   * @param group the group of the entry
+   * @param key the key of the entry
+   * @param lookupTime the time the lookup was started
+   */
+  public void put(String group, String key, long lookupTime) {
+    final Long invalidatedAt = invalidations.get(group);
+    if (invalidatedAt == null || lookupTime > invalidatedAt) {
+      entries.put(group + ":" + key, lookupTime);
+    }
+  }
+
+  /**
+   * Invalidates all entries of the group.
+   */
+  public void invalidate(String group) {
+    invalidations.put(group, Service.currentTimeMillis());
+  }
+}
@@ -50,6 +50,7 @@ public class RedisHealthCheck extends ExecutableCheck {
 		Status s = new Status();
 		Response r = new Response();
 		r.setNode(host + ":" + port);
+		r.withAdditionalProperty("statistics", RedisCacheClient.getStatistics());
 		if (host == null) {
 			setResponse(r.withMessage("No Redis host given."));
 			return s.withResult(UNKNOWN);
@@ -99,7 +100,7 @@ public class RedisHealthCheck extends ExecutableCheck {
 			return s.withResult(UNKNOWN);
 		}
 		if (HC_CACHE_VALUE.equals(lastReceivedValue)) {
-			setResponse(null);
+			setResponse(r);
 			return s.withResult(OK);
 		}
 		setResponse(r.withMessage("Wasn't able to retrieve the sample health check record back correctly."));
@@ -33,6 +33,7 @@ import com.here.xyz.hub.connectors.models.Connector.RemoteFunctionConfig.Embedde
 import com.here.xyz.hub.connectors.models.Connector.RemoteFunctionConfig.Http;
 import com.here.xyz.hub.util.health.schema.Response;
 import com.here.xyz.hub.util.health.schema.Status;
+import com.here.xyz.responses.HealthStatus;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -70,6 +71,9 @@ public class RemoteFunctionHealthCheck extends ExecutableCheck {
           s.setResult(ERROR);
         }
         else {
+          if (ar.result() instanceof HealthStatus && ((HealthStatus) ar.result()).getStatistics() != null) {
+            rfcData.put("connectorStatistics", ((HealthStatus) ar.result()).getStatistics());
+          }
           setResponse(generateResponse());
           s.setResult(OK);
         }
@@ -47,6 +47,8 @@ public class TestAuthenticator {
     ACCESS_OWNER_1_NO_ADMIN,
     ACCESS_OWNER_1_WITH_LIMITS,
     ACCESS_OWNER_1_WITH_FEATURES_ONLY,
+    ACCESS_OWNER_1_CREATE_FEATURES_ONLY,
+    ACCESS_OWNER_1_UPDATE_FEATURES_ONLY,
     ACCESS_OWNER_2,
     STORAGE_AUTH_TEST_C1_ONLY,
     STORAGE_AUTH_TEST_PSQL_ONLY,
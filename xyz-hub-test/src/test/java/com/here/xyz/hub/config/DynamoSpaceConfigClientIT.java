@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.document.BatchGetItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.TableKeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.util.CollectionUtils;
+import com.here.xyz.hub.config.SpaceConfigClient.SpaceAuthorizationCondition;
+import com.here.xyz.hub.config.SpaceConfigClient.SpaceSelectionCondition;
+import com.here.xyz.hub.connectors.models.Space;
+import com.here.xyz.hub.util.ARN;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the concurrent selection of spaces with the former sequential one against DynamoDB Local, which is expected at localhost:8000
+ * (see docker-compose-dynamodb.yml).
+ */
+public class DynamoSpaceConfigClientIT {
+
+  private static final String SPACES_TABLE_ARN = "arn:aws:dynamodb:localhost:000000008000:table/xyz-hub-test-spaces";
+  private static final String PACKAGES_TABLE_ARN = "arn:aws:dynamodb:localhost:000000008000:table/xyz-hub-test-packages";
+  private static final int SPACES = 350;
+
+  private static DynamoClient dynamoClient;
+  private static DynamoSpaceConfigClient client;
+
+  private final AtomicInteger unprocessedResponses = new AtomicInteger();
+  private final AtomicInteger batchGetRequests = new AtomicInteger();
+
+  @BeforeClass
+  public static void setupClass() {
+    dynamoClient = new DynamoClient(SPACES_TABLE_ARN);
+    for (String tableArn : Arrays.asList(SPACES_TABLE_ARN, PACKAGES_TABLE_ARN)) {
+      try {
+        dynamoClient.db.getTable(new ARN(tableArn).getResourceWithoutType()).delete();
+      } catch (ResourceNotFoundException ignored) {
+      }
+    }
+
+    client = new DynamoSpaceConfigClient(dynamoClient, PACKAGES_TABLE_ARN);
+    client.init(ar -> assertTrue("The tables should be created", ar.succeeded()));
+
+    for (int i = 0; i < SPACES; i++) {
+      final Space space = new Space();
+      space.setId(String.format("space-%03d", i));
+      space.setTitle("Space " + i);
+      space.setOwner("owner-" + i % 5);
+      space.setShared(i % 7 == 0);
+      if (i % 2 == 0) {
+        space.setPackages(Collections.singletonList("package-" + i % 3));
+      }
+      client.storeSpace(null, space, ar -> assertTrue("The space should be stored", ar.succeeded()));
+    }
+  }
+
+  @Test
+  public void selectAllSpaces() {
+    compare(condition(null, null, null), selection(false));
+  }
+
+  @Test
+  public void selectSpacesOfOwners() {
+    compare(condition(null, set("owner-1", "owner-3"), null), selection(true));
+  }
+
+  @Test
+  public void selectSpacesOfPackages() {
+    compare(condition(set("space-001"), null, set("package-0", "package-2")), selection(false));
+  }
+
+  @Test
+  public void selectSpacesOfOtherOwners() {
+    final SpaceSelectionCondition selection = selection(true);
+    selection.ownerIds = set("owner-0", "owner-4");
+    selection.negateOwnerIds = true;
+    compare(condition(null, null, null), selection);
+  }
+
+  @Test
+  public void selectPages() {
+    final SpaceSelectionCondition selection = selection(true);
+    selection.limit = 40;
+    List<String> page;
+    int pages = 0;
+    do {
+      page = compare(condition(null, null, null), selection);
+      if (!page.isEmpty()) {
+        selection.afterId = page.get(page.size() - 1);
+      }
+      pages++;
+    } while (page.size() == selection.limit);
+    assertEquals("All spaces should be listed in pages", SPACES / selection.limit + 1, pages);
+  }
+
+  @Test
+  public void retryUnprocessedKeys() {
+    final DynamoSpaceConfigClient unprocessingClient = new DynamoSpaceConfigClient(
+        new DynamoClient(SPACES_TABLE_ARN, unprocessing(dynamoClient.client)), PACKAGES_TABLE_ARN);
+
+    //Let every BatchGetItem response of the first round leave parts of the keys unprocessed
+    unprocessedResponses.set(6);
+    final List<String> expected = selectSequentially(condition(null, null, null), selection(false));
+    final List<String> actual = select(unprocessingClient, condition(null, null, null), selection(false));
+
+    assertEquals("All spaces should be loaded", SPACES, actual.size());
+    assertEquals(sorted(expected), sorted(actual));
+    assertTrue("The unprocessed keys should be requested again", batchGetRequests.get() > (SPACES + 99) / 100);
+  }
+
+  /**
+   * Compares the result of the concurrent selection with the one of the sequential selection.
+   *
+   * @return the IDs of the selected spaces
+   */
+  private List<String> compare(SpaceAuthorizationCondition authorizedCondition, SpaceSelectionCondition selectedCondition) {
+    final List<String> expected = selectSequentially(authorizedCondition, selectedCondition);
+    final List<String> actual = select(client, authorizedCondition, selectedCondition);
+
+    if (selectedCondition.isPaginated()) {
+      assertEquals(expected, actual);
+    } else {
+      //BatchGetItem does not keep the order of the keys
+      assertEquals(sorted(expected), sorted(actual));
+    }
+    return actual;
+  }
+
+  private static List<String> select(DynamoSpaceConfigClient client, SpaceAuthorizationCondition authorizedCondition,
+      SpaceSelectionCondition selectedCondition) {
+    final List<String> ids = new ArrayList<>();
+    client.getSelectedSpaces(null, authorizedCondition, selectedCondition, ar -> {
+      assertTrue("The selection should succeed", ar.succeeded());
+      ar.result().forEach(s -> ids.add(s.getId()));
+    });
+    return ids;
+  }
+
+  /**
+   * The former selection, which runs all requests one after the other.
+   */
+  private static List<String> selectSequentially(SpaceAuthorizationCondition authorizedCondition,
+      SpaceSelectionCondition selectedCondition) {
+    final Table spaces = dynamoClient.db.getTable(dynamoClient.tableName);
+    final Table packages = dynamoClient.db.getTable(new ARN(PACKAGES_TABLE_ARN).getResourceWithoutType());
+    final Set<String> authorizedSpaces = new LinkedHashSet<>();
+
+    if (authorizedCondition.spaceIds != null) {
+      authorizedSpaces.addAll(authorizedCondition.spaceIds);
+    }
+    if (authorizedCondition.ownerIds != null) {
+      authorizedCondition.ownerIds.forEach(o -> spaces.getIndex("owner-index").query("owner", o).pages()
+          .forEach(p -> p.forEach(i -> authorizedSpaces.add(i.getString("id")))));
+    }
+    if (authorizedCondition.packages != null) {
+      authorizedCondition.packages.forEach(p -> packages.query("packageName", p).pages()
+          .forEach(page -> page.forEach(i -> authorizedSpaces.add(i.getString("spaceId")))));
+    }
+    if (CollectionUtils.isNullOrEmpty(authorizedCondition.spaceIds)
+        && CollectionUtils.isNullOrEmpty(authorizedCondition.ownerIds)
+        && CollectionUtils.isNullOrEmpty(authorizedCondition.packages)) {
+      spaces.scan(new ScanSpec().withProjectionExpression("id")).pages()
+          .forEach(p -> p.forEach(i -> authorizedSpaces.add(i.getString("id"))));
+    }
+
+    if (selectedCondition.shared) {
+      spaces.getIndex("shared-index").query(new QuerySpec().withHashKey("shared", 1).withProjectionExpression("id")).pages()
+          .forEach(p -> p.forEach(i -> authorizedSpaces.add(i.getString("id"))));
+    }
+    if (!CollectionUtils.isNullOrEmpty(selectedCondition.spaceIds)) {
+      authorizedSpaces.removeIf(i -> !selectedCondition.spaceIds.contains(i));
+    }
+    if (!CollectionUtils.isNullOrEmpty(selectedCondition.ownerIds)) {
+      final Set<String> ownersSpaces = new HashSet<>();
+      selectedCondition.ownerIds.forEach(o -> spaces.getIndex("owner-index").query("owner", o).pages()
+          .forEach(p -> p.forEach(i -> ownersSpaces.add(i.getString("id")))));
+      authorizedSpaces.removeIf(i -> !selectedCondition.negateOwnerIds ^ ownersSpaces.contains(i));
+    }
+    if (selectedCondition.isPaginated()) {
+      final List<String> page = authorizedSpaces.stream()
+          .filter(i -> selectedCondition.afterId == null || i.compareTo(selectedCondition.afterId) > 0)
+          .sorted()
+          .limit(selectedCondition.limit > 0 ? selectedCondition.limit : Long.MAX_VALUE)
+          .collect(Collectors.toList());
+      authorizedSpaces.clear();
+      authorizedSpaces.addAll(page);
+    }
+
+    final List<String> result = new ArrayList<>();
+    final List<String> ids = new ArrayList<>(authorizedSpaces);
+    for (int i = 0; i < ids.size(); i += 100) {
+      final TableKeysAndAttributes keys = new TableKeysAndAttributes(dynamoClient.tableName);
+      ids.subList(i, Math.min(i + 100, ids.size())).forEach(id -> keys.addHashOnlyPrimaryKey("id", id));
+
+      BatchGetItemOutcome outcome = dynamoClient.db.batchGetItem(keys);
+      outcome.getTableItems().get(dynamoClient.tableName).forEach(item -> result.add(item.getString("id")));
+      while (!outcome.getUnprocessedKeys().isEmpty()) {
+        outcome = dynamoClient.db.batchGetItemUnprocessed(outcome.getUnprocessedKeys());
+        outcome.getTableItems().get(dynamoClient.tableName).forEach(item -> result.add(item.getString("id")));
+      }
+    }
+    if (selectedCondition.isPaginated()) {
+      Collections.sort(result);
+    }
+    return result;
+  }
+
+  /**
+   * Wraps the client, so that the second half of the items of a BatchGetItem response is returned as unprocessed keys instead, as long
+   * as there are unprocessed responses left.
+   */
+  private AmazonDynamoDBAsync unprocessing(AmazonDynamoDBAsync client) {
+    return (AmazonDynamoDBAsync) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{AmazonDynamoDBAsync.class},
+        (proxy, method, args) -> {
+          final Object result;
+          try {
+            result = method.invoke(client, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+          if (!(result instanceof BatchGetItemResult)) {
+            return result;
+          }
+          batchGetRequests.incrementAndGet();
+          if (unprocessedResponses.getAndDecrement() <= 0) {
+            return result;
+          }
+          return withUnprocessedKeys((BatchGetItemRequest) args[0], (BatchGetItemResult) result);
+        });
+  }
+
+  private BatchGetItemResult withUnprocessedKeys(BatchGetItemRequest request, BatchGetItemResult result) {
+    final List<Map<String, AttributeValue>> items = result.getResponses().get(dynamoClient.tableName);
+    if (items == null || items.size() < 2 || (result.getUnprocessedKeys() != null && !result.getUnprocessedKeys().isEmpty())) {
+      return result;
+    }
+
+    final List<Map<String, AttributeValue>> processed = new ArrayList<>(items.subList(0, items.size() / 2));
+    final List<Map<String, AttributeValue>> unprocessed = items.subList(items.size() / 2, items.size()).stream()
+        .map(i -> Collections.singletonMap("id", i.get("id")))
+        .collect(Collectors.toList());
+
+    result.getResponses().put(dynamoClient.tableName, processed);
+    result.setUnprocessedKeys(Collections.singletonMap(dynamoClient.tableName,
+        request.getRequestItems().get(dynamoClient.tableName).clone().withKeys(unprocessed)));
+    return result;
+  }
+
+  private static SpaceAuthorizationCondition condition(Set<String> spaceIds, Set<String> ownerIds, Set<String> packages) {
+    final SpaceAuthorizationCondition condition = new SpaceAuthorizationCondition();
+    condition.spaceIds = spaceIds;
+    condition.ownerIds = ownerIds;
+    condition.packages = packages;
+    return condition;
+  }
+
+  private static SpaceSelectionCondition selection(boolean shared) {
+    final SpaceSelectionCondition selection = new SpaceSelectionCondition();
+    selection.shared = shared;
+    return selection;
+  }
+
+  private static Set<String> set(String... values) {
+    return new HashSet<>(Arrays.asList(values));
+  }
+
+  private static List<String> sorted(List<String> ids) {
+    final List<String> sorted = new ArrayList<>(ids);
+    Collections.sort(sorted);
+    return sorted;
+  }
+}
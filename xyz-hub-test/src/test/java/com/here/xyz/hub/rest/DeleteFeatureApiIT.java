@@ -26,6 +26,7 @@ import static io.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
 import static io.netty.handler.codec.http.HttpResponseStatus.NO_CONTENT;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.not;
@@ -131,7 +132,9 @@ public class DeleteFeatureApiIT extends TestSpaceWithFeature {
         .when()
         .delete("/spaces/x-psql-test/features?tags=soccer")
         .then()
-        .statusCode(OK.code());
+        .statusCode(OK.code())
+        .body("count", equalTo(169))
+        .body("$", not(hasKey("partial")));
     //TODO: check the body once CMEKB-2627 is done
 
     countFeatures(83);
@@ -209,7 +212,8 @@ public class DeleteFeatureApiIT extends TestSpaceWithFeature {
         .delete("/spaces/x-psql-test/features?tags=*")
         .prettyPeek()
         .then()
-        .statusCode(OK.code());
+        .statusCode(OK.code())
+        .body("$", not(hasKey("partial")));
     //TODO: check the body once CMEKB-2627 is done
 
     countFeatures(0);
@@ -21,14 +21,19 @@ package com.here.xyz.hub.rest;
 
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_GEO_JSON;
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_JSON;
+import static com.here.xyz.hub.rest.Api.HeaderValues.NEXT_HANDLE;
 import static com.jayway.restassured.RestAssured.given;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static org.hamcrest.Matchers.*;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -343,6 +348,45 @@ public class ReadSpaceApiIT extends TestSpaceWithFeature {
         .body("$", not(hasKey("listeners")));
   }
 
+  @Test
+  public void readSpacesInPages() {
+    final List<String> ids = Stream.of("page1", "page2", "page3")
+        .map(title -> createSpace(AuthProfile.ACCESS_OWNER_2, title, false))
+        .sorted()
+        .collect(Collectors.toList());
+    cleanUpIds.addAll(ids);
+
+    final String handle = given()
+        .accept(APPLICATION_JSON)
+        .headers(getAuthHeaders(AuthProfile.ACCESS_OWNER_2))
+        .when()
+        .get("/spaces?limit=2")
+        .then()
+        .statusCode(OK.code())
+        .body("id", contains(ids.get(0), ids.get(1)))
+        .header(NEXT_HANDLE, ids.get(1))
+        .extract()
+        .header(NEXT_HANDLE);
+
+    given()
+        .accept(APPLICATION_JSON)
+        .headers(getAuthHeaders(AuthProfile.ACCESS_OWNER_2))
+        .when()
+        .get("/spaces?limit=2&handle=" + handle)
+        .then()
+        .statusCode(OK.code())
+        .body("id", contains(ids.get(2)))
+        .header(NEXT_HANDLE, nullValue());
+
+    given()
+        .accept(APPLICATION_JSON)
+        .headers(getAuthHeaders(AuthProfile.ACCESS_OWNER_2))
+        .when()
+        .get("/spaces?limit=-1")
+        .then()
+        .statusCode(BAD_REQUEST.code());
+  }
+
   @Test
   public void readSpacesWithOwnerStar() {
     cleanUpIds.add(createSpace(AuthProfile.ACCESS_OWNER_2, SHARED, true));
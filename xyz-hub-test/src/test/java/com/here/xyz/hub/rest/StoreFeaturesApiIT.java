@@ -21,8 +21,13 @@ package com.here.xyz.hub.rest;
 
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_GEO_JSON;
 import static com.jayway.restassured.RestAssured.given;
+import static io.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
 import static io.netty.handler.codec.http.HttpResponseStatus.NO_CONTENT;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
 
 import org.junit.After;
 import org.junit.Before;
@@ -73,4 +78,72 @@ public class StoreFeaturesApiIT extends TestSpaceWithFeature {
         then().
         statusCode(OK.code());
   }
+
+  private static void putFeature(AuthProfile authProfile, String properties, int expectedStatus) {
+    given().
+        contentType(APPLICATION_GEO_JSON).
+        headers(getAuthHeaders(authProfile)).
+        body("{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\",\"id\":\"F1\",\"properties\":" + properties
+            + ",\"geometry\":{\"type\":\"Point\",\"coordinates\":[-2.960777,53.430777]}}]}").
+        when().
+        put("/spaces/x-psql-test/features").
+        then().
+        statusCode(expectedStatus);
+  }
+
+  @Test
+  public void putFeaturesReplaceExisting() {
+    putFeature(AuthProfile.ACCESS_OWNER_1_ADMIN, "{\"a\":1}", OK.code());
+    putFeature(AuthProfile.ACCESS_OWNER_1_ADMIN, "{\"b\":2}", OK.code());
+
+    given().
+        accept(APPLICATION_GEO_JSON).
+        headers(getAuthHeaders(AuthProfile.ACCESS_OWNER_1_ADMIN)).
+        when().
+        get("/spaces/x-psql-test/features/F1").
+        then().
+        statusCode(OK.code()).
+        body("properties.b", equalTo(2)).
+        body("properties", not(hasKey("a")));
+    countFeatures(1);
+  }
+
+  @Test
+  public void putFeaturesWithCreateRightsOnly() {
+    //Without the right to update, the existing states are loaded to check whether the features exist
+    putFeature(AuthProfile.ACCESS_OWNER_1_CREATE_FEATURES_ONLY, "{\"a\":1}", OK.code());
+    putFeature(AuthProfile.ACCESS_OWNER_1_CREATE_FEATURES_ONLY, "{\"b\":2}", FORBIDDEN.code());
+    countFeatures(1);
+  }
+
+  @Test
+  public void putFeaturesWithUpdateRightsOnly() {
+    putFeature(AuthProfile.ACCESS_OWNER_1_UPDATE_FEATURES_ONLY, "{\"a\":1}", FORBIDDEN.code());
+    putFeature(AuthProfile.ACCESS_OWNER_1_ADMIN, "{\"a\":1}", OK.code());
+    putFeature(AuthProfile.ACCESS_OWNER_1_UPDATE_FEATURES_ONLY, "{\"b\":2}", OK.code());
+    countFeatures(1);
+  }
+
+  @Test
+  public void readMissingFeatureAfterCreation() {
+    given().
+        accept(APPLICATION_GEO_JSON).
+        headers(getAuthHeaders(AuthProfile.ACCESS_OWNER_1_ADMIN)).
+        when().
+        get("/spaces/x-psql-test/features/F1").
+        then().
+        statusCode(NOT_FOUND.code());
+
+    //The remembered lookup, which found nothing, is invalidated by the creation
+    putFeature(AuthProfile.ACCESS_OWNER_1_ADMIN, "{\"a\":1}", OK.code());
+
+    given().
+        accept(APPLICATION_GEO_JSON).
+        headers(getAuthHeaders(AuthProfile.ACCESS_OWNER_1_ADMIN)).
+        when().
+        get("/spaces/x-psql-test/features/F1").
+        then().
+        statusCode(OK.code()).
+        body("id", equalTo("F1"));
+  }
 }
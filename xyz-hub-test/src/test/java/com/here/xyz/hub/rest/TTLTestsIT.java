@@ -24,8 +24,12 @@ import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_JSON;
 import static com.jayway.restassured.RestAssured.given;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertTrue;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpHeaders.IF_NONE_MATCH;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
 
 import io.vertx.core.json.JsonObject;
 import org.junit.BeforeClass;
@@ -149,6 +153,45 @@ public class TTLTestsIT extends TestWithSpaceCleanup {
     assertNotSame(id_skip1, id_skip2);
   }
 
+  @Test
+  public void testNotModifiedWithVersionEtag() {
+    createRandomFeatureSpace();
+
+    String etag = given()
+        .headers(getAuthHeaders(AuthProfile.ACCESS_ALL))
+        .contentType(APPLICATION_JSON)
+        .when()
+        .get("/spaces/" + RANDOM_FEATURE_SPACE + "/tile/web/0_0_0")
+        .then()
+        .statusCode(200)
+        .extract().header(ETAG);
+
+    // The e-tag of a cacheable space is derived from the version of its content, it matches before the connector is invoked
+    assertTrue(etag.startsWith("v"));
+
+    given()
+        .headers(getAuthHeaders(AuthProfile.ACCESS_ALL))
+        .header(IF_NONE_MATCH, etag)
+        .contentType(APPLICATION_JSON)
+        .when()
+        .get("/spaces/" + RANDOM_FEATURE_SPACE + "/tile/web/0_0_0")
+        .then()
+        .statusCode(304)
+        .header(ETAG, etag);
+
+    String otherEtag = given()
+        .headers(getAuthHeaders(AuthProfile.ACCESS_ALL))
+        .header(IF_NONE_MATCH, etag)
+        .contentType(APPLICATION_JSON)
+        .when()
+        .get("/spaces/" + RANDOM_FEATURE_SPACE + "/tile/web/1_0_0")
+        .then()
+        .statusCode(200)
+        .extract().header(ETAG);
+
+    assertNotEquals(etag, otherEtag);
+  }
+
   private void createRandomFeatureSpace() {
     cleanUpId = RANDOM_FEATURE_SPACE;
 
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+package com.here.xyz.hub.task;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.here.xyz.hub.connectors.models.BinaryResponse;
+import com.here.xyz.hub.connectors.models.CompressedResponse;
+import com.here.xyz.hub.rest.ApiResponseType;
+import com.here.xyz.hub.util.Compression;
+import com.here.xyz.models.geojson.implementation.Feature;
+import com.here.xyz.models.geojson.implementation.FeatureCollection;
+import com.here.xyz.responses.XyzResponse;
+import io.vertx.core.buffer.Buffer;
+import java.util.Collections;
+import org.junit.Test;
+
+public class FeatureTaskHandlerTest {
+
+  private static final long TTL = 60_000;
+
+  private static FeatureCollection featureCollection() throws Exception {
+    return new FeatureCollection()
+        .withFeatures(Collections.singletonList(new Feature().withId("F1")))
+        .withEtag("\"etag1\"");
+  }
+
+  /**
+   * Creates a gzip entry with the given creation and computation time.
+   */
+  private static byte[] gzipEntry(long createdAt, int computationTime) {
+    return Buffer.buffer()
+        .appendByte((byte) 3)
+        .appendLong(createdAt)
+        .appendInt(computationTime)
+        .appendInt(2)
+        .appendUnsignedShort(0)
+        .appendBytes(Compression.compressUsingGzip("{}".getBytes()))
+        .getBytes();
+  }
+
+  @Test
+  public void featureCollectionRoundTrip() throws Exception {
+    final FeatureCollection fc = featureCollection();
+    final byte[] entry = FeatureTaskHandler.transform(fc, 10);
+
+    final XyzResponse compressed = FeatureTaskHandler.transform(ApiResponseType.FEATURE_COLLECTION, entry);
+    assertTrue(compressed instanceof CompressedResponse);
+    assertEquals("\"etag1\"", compressed.getEtag());
+    assertEquals(fc.serialize().getBytes().length, ((CompressedResponse) compressed).getLength());
+    assertEquals(fc.serialize(), new String(Compression.decompressUsingGzip(((CompressedResponse) compressed).getBytes())));
+
+    final XyzResponse parsed = FeatureTaskHandler.transform(ApiResponseType.FEATURE, entry);
+    assertTrue(parsed instanceof FeatureCollection);
+    assertEquals("F1", ((FeatureCollection) parsed).getFeatures().get(0).getId());
+  }
+
+  @Test
+  public void binaryRoundTrip() throws Exception {
+    final byte[] bytes = {1, 2, 3, 4, 5};
+    final byte[] entry = FeatureTaskHandler.transform(new BinaryResponse().withBytes(bytes).withEtag("\"etag2\""), 10);
+
+    final XyzResponse compressed = FeatureTaskHandler.transform(ApiResponseType.MVT, entry);
+    assertTrue(compressed instanceof CompressedResponse);
+    assertEquals("\"etag2\"", compressed.getEtag());
+    assertEquals(bytes.length, ((CompressedResponse) compressed).getLength());
+    assertArrayEquals(bytes, Compression.decompressUsingGzip(((CompressedResponse) compressed).getBytes()));
+
+    final XyzResponse binary = FeatureTaskHandler.transform(ApiResponseType.FEATURE_COLLECTION, entry);
+    assertTrue(binary instanceof BinaryResponse);
+    assertEquals("\"etag2\"", binary.getEtag());
+    assertArrayEquals(bytes, ((BinaryResponse) binary).getBytes());
+  }
+
+  @Test
+  public void readUncompressedEntries() throws Exception {
+    final FeatureCollection fc = featureCollection();
+    final byte[] json = fc.serialize().getBytes();
+
+    final XyzResponse plain = FeatureTaskHandler.transform(ApiResponseType.FEATURE, Buffer.buffer().appendByte((byte) 1).appendBytes(json)
+        .getBytes());
+    assertEquals("F1", ((FeatureCollection) plain).getFeatures().get(0).getId());
+
+    final byte[] bytes = {1, 2, 3};
+    final XyzResponse binary = FeatureTaskHandler.transform(ApiResponseType.MVT, Buffer.buffer().appendByte((byte) 2).appendBytes(bytes)
+        .getBytes());
+    assertArrayEquals(bytes, ((BinaryResponse) binary).getBytes());
+  }
+
+  @Test
+  public void undecodableEntries() throws Exception {
+    final byte[] entry = FeatureTaskHandler.transform(featureCollection(), 10);
+    final byte[] truncated = new byte[5];
+    System.arraycopy(entry, 0, truncated, 0, truncated.length);
+
+    //readCache treats runtime exceptions during the decoding as a cache miss
+    try {
+      FeatureTaskHandler.transform(ApiResponseType.FEATURE_COLLECTION, truncated);
+      fail("A truncated entry must not be decoded.");
+    } catch (RuntimeException expected) {
+    }
+    try {
+      FeatureTaskHandler.transform(ApiResponseType.FEATURE_COLLECTION, new byte[]{42, 0, 0, 0});
+      fail("An entry of an unknown type must not be decoded.");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void refreshDue() throws Exception {
+    final long now = System.currentTimeMillis();
+    assertFalse("A fresh entry must not be refreshed.", FeatureTaskHandler.isRefreshDue(gzipEntry(now, 10), TTL));
+    assertTrue("A stale entry must be refreshed.", FeatureTaskHandler.isRefreshDue(gzipEntry(now - 2 * TTL, 10), TTL));
+    assertFalse("Uncompressed entries must never be refreshed.",
+        FeatureTaskHandler.isRefreshDue(Buffer.buffer().appendByte((byte) 1).appendBytes(new byte[32]).getBytes(), 0));
+    assertFalse("Truncated entries must never be refreshed.", FeatureTaskHandler.isRefreshDue(new byte[]{3, 0, 0}, 0));
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.here.xyz.hub.config.RefreshAheadCache;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of concurrent reads of hot values from all event-loops, once from a shared map and once through the
+ * event-loop local shards. The difference grows with the number of cores.
+ */
+@SuppressWarnings("unused")
+public class EventLoopLocalCacheMeasurement {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final int EVENT_LOOPS = 2 * Runtime.getRuntime().availableProcessors();
+  private static final int READS_PER_EVENT_LOOP = 1_000_000;
+  private static final String[] KEYS = {"space-a", "space-b", "space-c", "space-d"};
+
+  private Vertx vertx;
+
+  @Before
+  public void setup() {
+    vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(EVENT_LOOPS));
+  }
+
+  @After
+  public void tearDown() {
+    vertx.close();
+    vertx = null;
+  }
+
+  private long measure(String name, Function<String, String> read) throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(EVENT_LOOPS);
+    final LongAdder misses = new LongAdder();
+
+    final long start = System.nanoTime();
+    for (int i = 0; i < EVENT_LOOPS; i++) {
+      vertx.getOrCreateContext().runOnContext(v -> {
+        for (int j = 0; j < READS_PER_EVENT_LOOP; j++) {
+          if (read.apply(KEYS[j % KEYS.length]) == null) {
+            misses.increment();
+          }
+        }
+        done.countDown();
+      });
+    }
+    assertTrue("The reads should be finished in time", done.await(5, TimeUnit.MINUTES));
+    final long nanos = System.nanoTime() - start;
+
+    final long readsPerSecond = (long) EVENT_LOOPS * READS_PER_EVENT_LOOP * TimeUnit.SECONDS.toNanos(1) / nanos;
+    logger.info("{}: {} event-loops, {} reads/s", name, EVENT_LOOPS, readsPerSecond);
+    assertEquals("All keys should be found", 0, misses.sum());
+    return readsPerSecond;
+  }
+
+  @Test
+  public void compareSharedAndEventLoopLocalReads() throws InterruptedException {
+    final ExpiringMap<String, String> shared = ExpiringMap.builder()
+        .expirationPolicy(ExpirationPolicy.ACCESSED)
+        .expiration(10, TimeUnit.MINUTES)
+        .build();
+    final RefreshAheadCache<String> sharded = new RefreshAheadCache<>(1, 10, TimeUnit.MINUTES);
+    for (String key : KEYS) {
+      shared.put(key, key);
+      sharded.put(key, key);
+    }
+
+    //Warm up both variants before measuring
+    measure("warm-up shared", shared::get);
+    measure("warm-up event-loop local", key -> sharded.get(key, loader -> {}));
+
+    final long sharedReads = measure("shared", shared::get);
+    final long localReads = measure("event-loop local", key -> sharded.get(key, loader -> {}));
+    logger.info("Speedup: {}", String.format("%.1f", (double) localReads / sharedReads));
+  }
+}
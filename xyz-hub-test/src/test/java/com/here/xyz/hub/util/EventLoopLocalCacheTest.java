@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.here.xyz.hub.config.RefreshAheadCache;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventLoopLocalCacheTest {
+
+  private Vertx vertx;
+  private Context first;
+  private Context second;
+
+  @Before
+  public void setup() throws Exception {
+    vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(2));
+    //The contexts are assigned to the event-loops round-robin
+    first = vertx.getOrCreateContext();
+    second = vertx.getOrCreateContext();
+    assertNotEquals("The contexts should run on different event-loops", on(first, Thread::currentThread),
+        on(second, Thread::currentThread));
+  }
+
+  @After
+  public void tearDown() {
+    vertx.close();
+    vertx = null;
+  }
+
+  /**
+   * Runs the action on the event-loop of the context and waits for its result. As the tasks of a context are executed in order, all
+   * invalidations, which were scheduled on the context before, are processed already.
+   */
+  private <T> T on(Context context, Supplier<T> action) throws Exception {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    context.runOnContext(v -> {
+      try {
+        result.complete(action.get());
+      } catch (Throwable t) {
+        result.completeExceptionally(t);
+      }
+    });
+    return result.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void invalidateAllShards() throws Exception {
+    final EventLoopLocalCache<String> cache = new EventLoopLocalCache<>(16, 1, TimeUnit.MINUTES);
+    on(first, () -> {
+      cache.put("a", "first");
+      return null;
+    });
+    on(second, () -> {
+      cache.put("a", "second");
+      return null;
+    });
+    assertEquals("first", on(first, () -> cache.get("a")));
+    assertEquals("second", on(second, () -> cache.get("a")));
+
+    on(first, () -> {
+      cache.invalidate("a");
+      return null;
+    });
+    assertNull("The own shard should be invalidated", on(first, () -> cache.get("a")));
+    assertNull("The shard of the other event-loop should be invalidated", on(second, () -> cache.get("a")));
+  }
+
+  @Test
+  public void sharedPutInvalidatesAllShards() throws Exception {
+    final RefreshAheadCache<String> cache = new RefreshAheadCache<>(10, 10, TimeUnit.MINUTES);
+    cache.put("a", "1");
+    assertEquals("1", on(first, () -> cache.get("a", loader -> {})));
+    assertEquals("1", on(second, () -> cache.get("a", loader -> {})));
+
+    on(first, () -> {
+      cache.put("a", "2");
+      return null;
+    });
+    assertEquals("2", on(first, () -> cache.get("a", loader -> {})));
+    assertEquals("2", on(second, () -> cache.get("a", loader -> {})));
+  }
+
+  @Test
+  public void sharedRemoveInvalidatesAllShards() throws Exception {
+    final RefreshAheadCache<String> cache = new RefreshAheadCache<>(10, 10, TimeUnit.MINUTES);
+    cache.put("a", "1");
+    assertEquals("1", on(first, () -> cache.get("a", loader -> {})));
+    assertEquals("1", on(second, () -> cache.get("a", loader -> {})));
+
+    //Invalidations from other threads than event-loop threads reach all shards as well
+    cache.remove("a");
+    assertNull(on(first, () -> cache.get("a", loader -> {})));
+    assertNull(on(second, () -> cache.get("a", loader -> {})));
+  }
+
+  @Test
+  public void sharedRefreshInvalidatesAllShards() throws Exception {
+    final RefreshAheadCache<String> cache = new RefreshAheadCache<>(50, 10_000, TimeUnit.MILLISECONDS);
+    cache.put("a", "1");
+    assertEquals("1", on(second, () -> cache.get("a", loader -> {})));
+
+    Thread.sleep(100);
+    //The refresh is due, the stale value is returned while the refreshed one replaces it
+    assertEquals("1", on(first, () -> cache.get("a", loader -> loader.handle(Future.succeededFuture("2")))));
+    assertEquals("2", on(first, () -> cache.get("a", loader -> {})));
+    assertEquals("2", on(second, () -> cache.get("a", loader -> {})));
+  }
+
+  @Test
+  public void valuesExpireAfterMaxAge() throws Exception {
+    final EventLoopLocalCache<String> cache = new EventLoopLocalCache<>(16, 1, TimeUnit.SECONDS);
+    on(first, () -> {
+      cache.put("a", "1");
+      return null;
+    });
+    assertEquals("1", on(first, () -> cache.get("a")));
+
+    Thread.sleep(1_100);
+    assertNull("The value should be taken over from the shared cache again", on(first, () -> cache.get("a")));
+  }
+
+  @Test
+  public void ignoreOtherThreads() throws Exception {
+    final EventLoopLocalCache<String> cache = new EventLoopLocalCache<>(16, 1, TimeUnit.MINUTES);
+    cache.put("a", "1");
+    assertNull(cache.get("a"));
+    assertNull("Nothing should be put from another thread", on(first, () -> cache.get("a")));
+
+    final CompletableFuture<String> worker = new CompletableFuture<>();
+    vertx.<String>executeBlocking(f -> {
+      cache.put("b", "1");
+      f.complete(cache.get("b"));
+    }, ar -> worker.complete(ar.result()));
+    assertNull("Worker threads should not have a shard", worker.get(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+package com.here.xyz.hub.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class NegativeCacheTest {
+
+  @Test
+  public void putAndContains() {
+    final NegativeCache cache = new NegativeCache(100, 10, TimeUnit.SECONDS);
+    cache.put("space1", "key1", System.currentTimeMillis());
+
+    assertTrue(cache.contains("space1", "key1"));
+    assertFalse(cache.contains("space1", "key2"));
+    assertFalse("The entries of other groups must not match.", cache.contains("space2", "key1"));
+  }
+
+  @Test
+  public void invalidateGroup() {
+    final NegativeCache cache = new NegativeCache(100, 10, TimeUnit.SECONDS);
+    final long lookupTime = System.currentTimeMillis() - 1000;
+    cache.put("space1", "key1", lookupTime);
+    cache.put("space2", "key1", lookupTime);
+
+    cache.invalidate("space1");
+    assertFalse(cache.contains("space1", "key1"));
+    assertTrue("Other groups must not be invalidated.", cache.contains("space2", "key1"));
+  }
+
+  @Test
+  public void ignoreLookupsStartedBeforeInvalidation() {
+    final NegativeCache cache = new NegativeCache(100, 10, TimeUnit.SECONDS);
+    final long lookupTime = System.currentTimeMillis() - 1000;
+
+    //The lookup was running while the group was invalidated, it may have missed the created features
+    cache.invalidate("space1");
+    cache.put("space1", "key1", lookupTime);
+    assertFalse(cache.contains("space1", "key1"));
+
+    //Lookups started after the invalidation are recorded
+    cache.put("space1", "key1", System.currentTimeMillis() + 1000);
+    assertTrue(cache.contains("space1", "key1"));
+  }
+
+  @Test
+  public void expiry() throws InterruptedException {
+    final NegativeCache cache = new NegativeCache(100, 200, TimeUnit.MILLISECONDS);
+    cache.put("space1", "key1", System.currentTimeMillis());
+    assertTrue(cache.contains("space1", "key1"));
+
+    Thread.sleep(500);
+    assertFalse(cache.contains("space1", "key1"));
+  }
+
+  @Test
+  public void maxSize() {
+    final NegativeCache cache = new NegativeCache(2, 10, TimeUnit.SECONDS);
+    final long lookupTime = System.currentTimeMillis();
+    cache.put("space1", "key1", lookupTime);
+    cache.put("space1", "key2", lookupTime);
+    cache.put("space1", "key3", lookupTime);
+
+    assertFalse("The oldest entry must be evicted.", cache.contains("space1", "key1"));
+    assertTrue(cache.contains("space1", "key3"));
+  }
+}
@@ -100,9 +100,10 @@ public final class ModifyFeaturesEvent extends Event<ModifyFeaturesEvent> {
   }
 
   /**
-   * Returns the list of all features to be updated.
+   * Returns the list of all features to be inserted or replaced, without the existing states being known. The storage must keep the
+   * createdAt of an existing feature and, if a puuid is provided, only replace it, when its current uuid matches the puuid.
    *
-   * @return the list of all features to be updated.
+   * @return the list of all features to be inserted or replaced.
    */
   @SuppressWarnings("unused")
   public List<Feature> getUpsertFeatures() {
@@ -20,8 +20,11 @@
 package com.here.xyz.responses;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.here.xyz.events.HealthCheckEvent;
+import java.util.Map;
 
 /**
  * The response being sent in response to an {@link HealthCheckEvent} when the service is healthy. If the service is not healthy it should
@@ -32,6 +35,11 @@ import com.here.xyz.events.HealthCheckEvent;
 public class HealthStatus extends XyzResponse<HealthStatus> {
 
   private String status;
+  /**
+   * The runtime statistics of the connector, which are reported by the health check of the service.
+   */
+  @JsonInclude(Include.NON_NULL)
+  private Map<String, Object> statistics;
 
   public HealthStatus() {
     super();
@@ -51,4 +59,19 @@ public class HealthStatus extends XyzResponse<HealthStatus> {
     setStatus(status);
     return this;
   }
+
+  public Map<String, Object> getStatistics() {
+    return this.statistics;
+  }
+
+  @SuppressWarnings("WeakerAccess")
+  public void setStatistics(Map<String, Object> statistics) {
+    this.statistics = statistics;
+  }
+
+  @SuppressWarnings("unused")
+  public HealthStatus withStatistics(Map<String, Object> statistics) {
+    setStatistics(statistics);
+    return this;
+  }
 }
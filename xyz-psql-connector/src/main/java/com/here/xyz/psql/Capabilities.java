@@ -21,12 +21,12 @@ package com.here.xyz.psql;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.here.xyz.XyzSerializable;
+import com.here.xyz.events.Event;
 import com.here.xyz.events.PropertiesQuery;
 import com.here.xyz.events.PropertyQuery;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -34,6 +34,37 @@ import java.util.stream.Collectors;
 
 public class Capabilities {
 
+  /**
+   * The storage parameter, which enables the GIN (jsonb_path_ops) index on the properties of the features. If it's enabled, equality
+   * filters on any property are executed as containment predicates, which are backed by this index.
+   */
+  public static final String CONTAINMENT_INDEX = "containmentIndex";
+
+  static boolean hasContainmentIndex(Event event) {
+    return event.getParams() != null && event.getParams().get(CONTAINMENT_INDEX) == Boolean.TRUE;
+  }
+
+  /**
+   * Determines if the PropertiesQuery consists of equality filters only, which can be executed by using the containment index. As the
+   * index is built asynchronously, it's only used once it exists.
+   */
+  public static boolean canSearchWithContainment(Event event, PropertiesQuery query, PSQLXyzConnector connector) {
+    if (query == null || !hasContainmentIndex(event)) {
+      return false;
+    }
+    if (!query.stream().flatMap(List::stream).allMatch(
+        q -> q.getKey() != null && (q.getKey().equals("id") || q.getValues().stream().allMatch(v -> SQLQueryBuilder.isContainmentSearch(q, v))))) {
+      return false;
+    }
+
+    try {
+      return connector.containmentIndexExists();
+    } catch (Exception e) {
+      // The search is checked against the other indices
+      return false;
+    }
+  }
+
   /**
    * Determines if PropertiesQuery can be executed. Check if required Indices are created.
    */
@@ -86,32 +117,23 @@ public class Capabilities {
   }
 
   public static class IndexList {
-    /** Cache indexList for 3 Minutes  */
+    /** Cache indexList for 3 Minutes, it gets refreshed within the last 30 seconds */
     static long CACHE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(3);
+    static long REFRESH_AHEAD_MS = TimeUnit.SECONDS.toMillis(30);
 
     /** Get list of indexed Values from a XYZ-Space */
     static List<String> getIndexList(String space, PSQLXyzConnector connector) throws SQLException {
-      IndexList indexList = cachedIndices.get(space);
-      if (indexList != null && indexList.expiry >= System.currentTimeMillis()) {
-        return indexList.indices;
-      }
-
-      indexList = connector.executeQuery(SQLQueryBuilder.generateIDXStatusQuery(space),
-              Capabilities::rsHandler);
-
-      cachedIndices.put(space, indexList);
-      return indexList.indices;
+      return cachedIndices.get(connector.metadataKey(space),
+          () -> connector.executeQuery(SQLQueryBuilder.generateIDXStatusQuery(space), Capabilities::rsHandler)).indices;
     }
 
     IndexList(List<String> indices) {
       this.indices = indices;
-      expiry = System.currentTimeMillis() + CACHE_INTERVAL_MS;
     }
 
     List<String> indices;
-    long expiry;
 
-    static Map<String, IndexList> cachedIndices = new HashMap<>();
+    static final MetadataCache<IndexList> cachedIndices = new MetadataCache<>("indexList", 10_000, CACHE_INTERVAL_MS, REFRESH_AHEAD_MS);
   }
 
   public static IndexList rsHandler(ResultSet rs) {
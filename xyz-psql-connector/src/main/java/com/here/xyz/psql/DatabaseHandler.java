@@ -26,6 +26,9 @@ import com.here.xyz.events.*;
 import com.here.xyz.models.geojson.coordinates.BBox;
 import com.here.xyz.models.geojson.implementation.Feature;
 import com.here.xyz.models.geojson.implementation.FeatureCollection;
+import com.here.xyz.psql.factory.QuadbinSQL;
+import com.here.xyz.psql.factory.SpatialLayoutSQL;
+import com.here.xyz.psql.factory.TweaksSQL;
 import com.here.xyz.responses.*;
 import com.mchange.v2.c3p0.AbstractConnectionCustomizer;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
@@ -39,6 +42,8 @@ import org.apache.logging.log4j.Logger;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -51,6 +56,15 @@ public abstract class DatabaseHandler extends StorageConnector {
     private static final int MAX_PRECISE_STATS_COUNT = 10_000;
     private static final String C3P0EXT_CONFIG_SCHEMA = "config.schema()";
     protected static final String HISTORY_TABLE_SUFFIX = "_hst";
+    protected static final String H3_TABLE_SUFFIX = "_h3";
+    protected static final String QK_TABLE_SUFFIX = "_qk";
+    protected static final String LOD_TABLE_SUFFIX = "_lod";
+    protected static final String PARTITION_SUFFIX = "_p";
+    /**
+     * The storage parameter for the amount of hash partitions of the space table, which is applied when the table gets created.
+     */
+    public static final String PARTITIONS = "partitions";
+    protected static final int MAX_PARTITIONS = 256;
     /**
      * Lambda Execution Time = 25s. We are actively canceling queries after STATEMENT_TIMEOUT_SECONDS
      * So if we receive a timeout prior 25s-STATEMENT_TIMEOUT_SECONDS the cancellation comes from
@@ -63,7 +77,43 @@ public abstract class DatabaseHandler extends StorageConnector {
     /**
      * The data source connections factory.
      */
-    private static Map<String, XYZDBInstance> dbInstanceMap = new HashMap<>();
+    private static Map<String, XYZDBInstance> dbInstanceMap = new ConcurrentHashMap<>();
+
+    /**
+     * The tables, which are known to exist. Only the existence is cached, so a missing table is always checked against the database.
+     */
+    private static final MetadataCache<Boolean> existingTables = new MetadataCache<>("existingTables", 50_000,
+            TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(1));
+
+    /**
+     * The H3 resolutions, for which precomputed hexbin aggregates are maintained, per table.
+     */
+    private static final MetadataCache<Set<Integer>> h3Aggregates = new MetadataCache<>("h3Aggregates", 10_000,
+            TimeUnit.MINUTES.toMillis(3), TimeUnit.SECONDS.toMillis(30));
+
+    /**
+     * The configuration of the quadkey count pyramid per table.
+     */
+    private static final MetadataCache<QuadbinSQL.CountPyramid> countPyramids = new MetadataCache<>("countPyramids", 10_000,
+            TimeUnit.MINUTES.toMillis(3), TimeUnit.SECONDS.toMillis(30));
+
+    /**
+     * The keys of the precomputed simplifications per table.
+     */
+    private static final MetadataCache<Set<String>> simplificationLods = new MetadataCache<>("simplificationLods", 10_000,
+            TimeUnit.MINUTES.toMillis(3), TimeUnit.SECONDS.toMillis(30));
+
+    /**
+     * The amount of hash partitions per table, 0 for tables which are not partitioned. Only existing tables are cached.
+     */
+    private static final MetadataCache<Integer> partitionCounts = new MetadataCache<>("partitionCounts", 50_000,
+            TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(1));
+
+    /**
+     * Whether the containment index of a table exists and is valid. It is built asynchronously, so the entries expire soon.
+     */
+    private static final MetadataCache<Boolean> containmentIndexes = new MetadataCache<>("containmentIndexes", 10_000,
+            TimeUnit.MINUTES.toMillis(1), TimeUnit.SECONDS.toMillis(10));
 
     /**
      * Current event.
@@ -90,6 +140,12 @@ public abstract class DatabaseHandler extends StorageConnector {
 
     private boolean retryAttempted;
 
+    /**
+     * The amount of rows and bytes, which were fetched by the feature result set handler for the last executed query.
+     */
+    private long fetchedRows;
+    private long fetchedBytes;
+
     @Override
     protected XyzResponse processHealthCheckEvent(HealthCheckEvent event) {
         long targetResponseTime = event.getMinResponseTime() + System.currentTimeMillis();
@@ -109,7 +165,10 @@ public abstract class DatabaseHandler extends StorageConnector {
             if (now < targetResponseTime) {
                 Thread.sleep(targetResponseTime - now);
             }
-            return new HealthStatus().withStatus("OK");
+            final Map<String, Object> statistics = new HashMap<>();
+            statistics.put("metadataCaches", MetadataCache.statistics());
+            statistics.put("fetchedFeatures", FetchStatistics.statistics());
+            return new HealthStatus().withStatus("OK").withStatistics(statistics);
         } catch (Exception e) {
             return new ErrorResponse().withStreamId(streamId).withError(XyzError.EXCEPTION).withErrorMessage(e.getMessage());
         }
@@ -121,13 +180,13 @@ public abstract class DatabaseHandler extends StorageConnector {
         this.event = event;
         final String ecps = PSQLConfig.getECPS(event);
 
-        if (!dbInstanceMap.containsKey(ecps)) {
+        dbInstanceMap.computeIfAbsent(ecps, k -> {
             /** Init dataSource, readDataSource ..*/
             logger.info("{} - Create new config and data source for ECPS string: '{}'", streamId, ecps);
             final PSQLConfig config = new PSQLConfig(event, context);
 
             final ComboPooledDataSource source = getComboPooledDataSource(config.host(), config.port(), config.database(), config.user(),
-                    config.password(), config.applicationName(), config.maxPostgreSQLConnections());
+                    config.password(), config.applicationName(), config.maxPostgreSQLConnections(), config.statementCacheSize());
 
             Map<String, String> m = new HashMap<>();
             m.put(C3P0EXT_CONFIG_SCHEMA, config.schema());
@@ -136,23 +195,33 @@ public abstract class DatabaseHandler extends StorageConnector {
             final DatabaseMaintainer dbMaintainer = new DatabaseMaintainer(source,config);
             final XYZDBInstance xyzDBInstance = new XYZDBInstance(source ,dbMaintainer, config);
 
-            if (config.replica() != null) {
-                final ComboPooledDataSource replicaDataSource = getComboPooledDataSource(config.replica(), config.port(), config.database(),
-                        config.user(), config.password(), config.applicationName(), config.maxPostgreSQLConnections());
-                replicaDataSource.setExtensions(m);
-                xyzDBInstance.addReadDataSource(replicaDataSource);
+            final List<PSQLConfig.ReplicaHost> replicas = config.replicas();
+            if (!replicas.isEmpty()) {
+                final ReplicaBalancer balancer = new ReplicaBalancer(config.leastOutstandingReplica(), config.replicaMaxLag(),
+                        config.replicaLagCheckInterval());
+                replicas.forEach(replica -> {
+                    final ComboPooledDataSource replicaDataSource = getComboPooledDataSource(replica.host, replica.port, config.database(),
+                            config.user(), config.password(), config.applicationName(), config.maxPostgreSQLConnections(),
+                            config.statementCacheSize());
+                    replicaDataSource.setExtensions(m);
+                    balancer.addReplica(replica.toString(), replica.weight, replicaDataSource);
+                });
+                balancer.start();
+                xyzDBInstance.setReplicaBalancer(balancer);
             }
-            dbInstanceMap.put(ecps, xyzDBInstance);
-        }
+            return xyzDBInstance;
+        });
 
         this.dataSource = dbInstanceMap.get(ecps).getDataSource();
-        this.readDataSource = dbInstanceMap.get(ecps).getReadDataSource();
         this.dbMaintainer = dbInstanceMap.get(ecps).getDatabaseMaintainer();
         this.config = dbInstanceMap.get(ecps).getConfig();
 
         if(event.getPreferPrimaryDataSource() == null || event.getPreferPrimaryDataSource() == Boolean.TRUE){
             this.readDataSource = this.dataSource;
         }
+        else {
+            this.readDataSource = dbInstanceMap.get(ecps).getReadDataSource();
+        }
 
         retryAttempted = false;
 
@@ -172,7 +241,8 @@ public abstract class DatabaseHandler extends StorageConnector {
     }
 
     private ComboPooledDataSource getComboPooledDataSource(String host, int port, String database, String user,
-                                                           String password, String applicationName, int maxPostgreSQLConnections) {
+                                                           String password, String applicationName, int maxPostgreSQLConnections,
+                                                           int statementCacheSize) {
         final ComboPooledDataSource cpds = new ComboPooledDataSource();
 
         cpds.setJdbcUrl(
@@ -186,6 +256,9 @@ public abstract class DatabaseHandler extends StorageConnector {
         cpds.setAcquireIncrement(1);
         cpds.setMaxPoolSize(maxPostgreSQLConnections);
         cpds.setCheckoutTimeout( CONNECTION_CHECKOUT_TIMEOUT_SECONDS * 1000 );
+        /** Reuse the prepared statements of a connection, the driver turns them into server-side prepared statements after prepareThreshold executions */
+        cpds.setMaxStatementsPerConnection(statementCacheSize);
+        cpds.setStatementCacheNumDeferredCloseThreads(1);
         cpds.setConnectionCustomizerClassName(DatabaseHandler.XyzConnectionCustomizer.class.getName());
         return cpds;
     }
@@ -271,18 +344,59 @@ public abstract class DatabaseHandler extends StorageConnector {
 
     private <T> T executeQuery(SQLQuery query, ResultSetHandler<T> handler, DataSource dataSource) throws SQLException {
         final long start = System.currentTimeMillis();
+        final boolean useCursor = expectedRows() >= config.cursorThreshold();
+        fetchedRows = 0;
+        fetchedBytes = 0;
         try {
-            final QueryRunner run = new QueryRunner(dataSource, new StatementConfiguration(null,null,null,null,calculateTimeout()));
-
             query.setText(SQLQuery.replaceVars(query.text(), config.schema(), config.table(event)));
             final String queryText = query.text();
             final List<Object> queryParameters = query.parameters();
             logger.info("{} - executeQuery: {} - Parameter: {}", streamId, queryText, queryParameters);
-            return run.query(queryText, handler, queryParameters.toArray());
+
+            if (!useCursor) {
+                final QueryRunner run = new QueryRunner(dataSource, new StatementConfiguration(null,null,null,null,calculateTimeout()));
+                return run.query(queryText, handler, queryParameters.toArray());
+            }
+
+            /** The PostgreSQL driver only uses a server-side cursor for a fetch size within a transaction */
+            final QueryRunner run = new QueryRunner(new StatementConfiguration(null,config.fetchSize(),null,null,calculateTimeout()));
+            try (final Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    final T result = run.query(connection, queryText, handler, queryParameters.toArray());
+                    connection.commit();
+                    return result;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
         } finally {
             final long end = System.currentTimeMillis();
             logger.info("{} - query time: {}ms", streamId, (end - start));
+            /** Only the feature result set handler counts, it always fetches at least the brackets of the feature array */
+            if (fetchedBytes > 0) {
+                FetchStatistics.record(useCursor, fetchedRows, fetchedBytes);
+            }
+            if (useCursor) {
+                logger.info("{} - fetched through cursor, fetchSize: {}, rows: {}, bytes: {}", streamId, config.fetchSize(), fetchedRows, fetchedBytes);
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of rows, which the current event is expected to return at most.
+     */
+    private long expectedRows() {
+        if (event instanceof SearchForFeaturesEvent) {
+            return ((SearchForFeaturesEvent) event).getLimit();
+        }
+        if (event instanceof GetFeaturesByIdEvent && ((GetFeaturesByIdEvent) event).getIds() != null) {
+            return ((GetFeaturesByIdEvent) event).getIds().size();
         }
+        return 0;
     }
 
     /**
@@ -362,16 +476,25 @@ public abstract class DatabaseHandler extends StorageConnector {
 
         List<Feature> inserts = Optional.ofNullable(event.getInsertFeatures()).orElse(new ArrayList<>());
         List<Feature> updates = Optional.ofNullable(event.getUpdateFeatures()).orElse(new ArrayList<>());
+        List<Feature> upserts = Optional.ofNullable(event.getUpsertFeatures()).orElse(new ArrayList<>());
         Map<String, String> deletes = Optional.ofNullable(event.getDeleteFeatures()).orElse(new HashMap<>());
         List<FeatureCollection.ModificationFailure> fails = Optional.ofNullable(event.getFailed()).orElse(new ArrayList<>());
 
+        /** Bulk loads are written in the physical order of a table with spatial layout */
+        final List<Feature> requestOrder = Stream.of(inserts, updates, upserts).flatMap(List::stream).collect(Collectors.toList());
+        if (SpatialLayoutSQL.isSpatialLayout(event)) {
+            inserts = SpatialLayoutSQL.inSortKeyOrder(inserts);
+            upserts = SpatialLayoutSQL.inSortKeyOrder(upserts);
+        }
+
         List<String> insertIds = inserts.stream().map(Feature::getId).filter(Objects::nonNull).collect(Collectors.toList());
         List<String> updateIds = updates.stream().map(Feature::getId).filter(Objects::nonNull).collect(Collectors.toList());
+        List<String> upsertIds = upserts.stream().map(Feature::getId).filter(Objects::nonNull).collect(Collectors.toList());
         List<String> deleteIds = new ArrayList<>(deletes.keySet());
 
         /** Include Old states */
         if (includeOldStates) {
-            String[] idsToFetch = Stream.of(insertIds, updateIds, deleteIds).flatMap(List::stream).toArray(String[]::new);
+            String[] idsToFetch = Stream.of(insertIds, updateIds, upsertIds, deleteIds).flatMap(List::stream).toArray(String[]::new);
             oldFeatures = fetchOldStates(idsToFetch);
             if (oldFeatures != null) {
                 collection.setOldFeatures(oldFeatures);
@@ -396,6 +519,10 @@ public abstract class DatabaseHandler extends StorageConnector {
                 if (updates.size() > 0) {
                     DatabaseWriter.updateFeatures(schema, table, streamId, collection, fails,  updates, connection, transactional, handleUUID);
                 }
+                if (upserts.size() > 0) {
+                    DatabaseWriter.upsertFeatures(schema, table, streamId, collection, fails, upserts, connection, transactional, handleUUID,
+                            partitionCount() > 0);
+                }
 
                 if (transactional) {
                     /** Commit SQLS in one transaction */
@@ -425,10 +552,12 @@ public abstract class DatabaseHandler extends StorageConnector {
                     else{
                         /** Add all other Objects to failed list */
                         final List<String> failedIds = fails.stream().map(FeatureCollection.ModificationFailure::getId).filter(Objects::nonNull).collect(Collectors.toList());
-                        addAllToFailedList(failedIds, fails, insertIds, updateIds, deleteIds);
+                        addAllToFailedList(failedIds, fails, insertIds, updateIds, upsertIds, deleteIds);
 
                         /** Reset the rest */
                         collection.setFeatures(new ArrayList<>());
+                        collection.setInserted(null);
+                        collection.setUpdated(null);
                         collection.setFailed(fails);
                         return collection;
                     }
@@ -472,18 +601,23 @@ public abstract class DatabaseHandler extends StorageConnector {
                 collection.getDeleted().addAll(deleteIds);
             }
 
+            if (SpatialLayoutSQL.isSpatialLayout(event)) {
+                SpatialLayoutSQL.restoreRequestOrder(collection, requestOrder);
+            }
+
             return collection;
         }
     }
 
     private void addAllToFailedList(
             final List<String> failedIds, List<FeatureCollection.ModificationFailure> fails,
-            List<String> insertIds,List<String> updateIds ,List<String> deleteIds ){
+            List<String> insertIds,List<String> updateIds, List<String> upsertIds, List<String> deleteIds ){
 
         final List<String> failedIdsTotal = new LinkedList<>();
 
         failedIdsTotal.addAll(insertIds.stream().filter(x -> !failedIds.contains(x)).collect(Collectors.toList()));
         failedIdsTotal.addAll(updateIds.stream().filter(x -> !failedIds.contains(x)).collect(Collectors.toList()));
+        failedIdsTotal.addAll(upsertIds.stream().filter(x -> !failedIds.contains(x)).collect(Collectors.toList()));
         failedIdsTotal.addAll(deleteIds.stream().filter(x -> !failedIds.contains(x)).collect(Collectors.toList()));
 
         for (String id: failedIdsTotal) {
@@ -491,18 +625,110 @@ public abstract class DatabaseHandler extends StorageConnector {
         }
     }
 
+    /**
+     * Deletes the features matching the tags and properties of the event in batches, each committed on its own, so that the deletion
+     * of many features holds no long lasting locks. The deletion is throttled to the configured rate. If the time of the invocation
+     * runs out, the amount of features deleted so far is returned as partial result, repeating the event continues the deletion.
+     * A space without search criteria is truncated, if its table can be locked at once. As counting the rows of the table would take as
+     * long as deleting them, the count of a truncation is unknown and therefore omitted.
+     */
     protected XyzResponse executeDeleteFeaturesByTag(DeleteFeaturesByTagEvent event) throws Exception {
         boolean includeOldStates = event.getParams() != null
                 && event.getParams().get(PSQLConfig.INCLUDE_OLD_STATES) == Boolean.TRUE;
 
+        if (!hasTable()) {
+            return new FeatureCollection().withCount(0L);
+        }
+
         final SQLQuery searchQuery = SQLQueryBuilder.generateSearchQuery(event, dataSource);
-        final SQLQuery query = SQLQueryBuilder.buildDeleteFeaturesByTagQuery(includeOldStates, searchQuery);
+        if (searchQuery == null && !includeOldStates) {
+            try {
+                truncateSpace();
+                return new FeatureCollection();
+            } catch (SQLException e) {
+                if (!"55P03".equals(e.getSQLState())) {
+                    throw e;
+                }
+                logger.info("{} - The table of space '{}' is in use, deleting its features in batches", streamId, event.getSpace());
+            }
+        }
 
-        //TODO: check in detail what we want to return
-        if (searchQuery != null && includeOldStates)
-            return executeQueryWithRetry(query, this::oldStatesResultSetHandler,false);
+        final int batchSize = Math.max(1, config.deleteBatchSize());
+        final int rate = config.deleteRate();
+        final long start = System.currentTimeMillis();
+        final List<String> oldStates = new ArrayList<>();
+        final long[] lastSerial = {Long.MIN_VALUE};
+        long deleted = 0;
+        boolean finished = false;
 
-        return new FeatureCollection().withCount((long) executeUpdateWithRetry(query));
+        try (final Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+
+            while (context.getRemainingTimeInMillis() > MIN_REMAINING_TIME_FOR_RETRY_SECONDS * 1000) {
+                final SQLQuery query = SQLQueryBuilder.buildDeleteFeaturesByTagBatchQuery(includeOldStates, searchQuery, lastSerial[0], batchSize);
+                final QueryRunner run = new QueryRunner(new StatementConfiguration(null, null, null, null, calculateTimeout()));
+                final int count = run.query(connection, SQLQuery.replaceVars(query.text(), config.schema(), config.table(event)), rs -> {
+                    int rows = 0;
+                    while (rs.next()) {
+                        rows++;
+                        lastSerial[0] = Math.max(lastSerial[0], rs.getLong("i"));
+                        if (includeOldStates) {
+                            oldStates.add(oldStateJson(rs));
+                        }
+                    }
+                    return rows;
+                }, query.parameters().toArray());
+
+                deleted += count;
+                if (count == 0) {
+                    finished = true;
+                    break;
+                }
+
+                if (rate > 0) {
+                    final long wait = deleted * 1000L / rate - (System.currentTimeMillis() - start);
+                    final long left = context.getRemainingTimeInMillis() - MIN_REMAINING_TIME_FOR_RETRY_SECONDS * 1000;
+                    if (wait >= left) {
+                        break;
+                    }
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                }
+            }
+        }
+
+        logger.info("{} - Deleted {} features of space '{}' in {} ms{}", streamId, deleted, event.getSpace(),
+                System.currentTimeMillis() - start, finished ? "" : ", the deletion is not finished yet");
+
+        final FeatureCollection collection = new FeatureCollection().withCount(deleted);
+        if (includeOldStates) {
+            collection._setFeatures("[" + String.join(",", oldStates) + "]");
+        }
+        if (!finished) {
+            collection.setPartial(true);
+        }
+        return collection;
+    }
+
+    /**
+     * Truncates the table of the space. Fails with the SQL state 55P03 (lock_not_available), if the table is in use for longer than a
+     * second.
+     */
+    private void truncateSpace() throws SQLException {
+        try (final Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.setQueryTimeout(calculateTimeout());
+                stmt.execute("SET LOCAL lock_timeout = '1s'");
+                stmt.executeUpdate(SQLQuery.replaceVars(
+                        SQLQueryBuilder.buildDeleteFeaturesByTagQuery(false, null).text(), config.schema(), config.table(event)));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
     }
 
     private boolean canRetryAttempt() throws Exception {
@@ -510,6 +736,8 @@ public abstract class DatabaseHandler extends StorageConnector {
             return false;
         }
 
+        // The table might have been dropped in the meantime, so do not trust the cache here.
+        existingTables.invalidate(metadataKey(config.table(event)));
         if (hasTable()) {
             retryAttempted = true; // the table is there, do not retry
             return false;
@@ -533,6 +761,11 @@ public abstract class DatabaseHandler extends StorageConnector {
             return true;
         }
 
+        final String key = metadataKey(config.table(event));
+        if (existingTables.getIfPresent(key) != null) {
+            return true;
+        }
+
         PSQLConfig pConfig = (PSQLConfig) config;
         long start = System.currentTimeMillis();
         try (final Connection conn = dataSource.getConnection()) {
@@ -541,6 +774,7 @@ public abstract class DatabaseHandler extends StorageConnector {
                 if (rs.next()) {
                     long end = System.currentTimeMillis();
                     logger.info("{} - Time for table check: " + (end - start) + "ms", streamId);
+                    existingTables.put(key, true);
                     return true;
                 }
             }
@@ -548,6 +782,392 @@ public abstract class DatabaseHandler extends StorageConnector {
         }
     }
 
+    /**
+     * Returns the key of the given table within the metadata caches, which are shared by all handler instances.
+     */
+    protected String metadataKey(String table) {
+        return PSQLConfig.getECPS(event) + "/" + config.schema() + "." + table;
+    }
+
+    /**
+     * Records the property search of the current event for the index advisor.
+     *
+     * @param executed true, if the search was executed by the last query, false if it was rejected.
+     */
+    protected void recordPropertySearch(PropertiesQuery query, boolean executed) {
+        if (query != null && config.isPropertySearchActivated() && config.isIndexAdvisorActivated()) {
+            dbMaintainer.getSearchWorkload().record(config.table(event), query, executed ? fetchedRows : -1,
+                Capabilities.hasContainmentIndex(event));
+        }
+    }
+
+    /**
+     * Removes all cached metadata of the table of the current space, e.g. after it was dropped.
+     */
+    protected void invalidateMetadata() {
+        existingTables.invalidate(metadataKey(config.table(event)));
+        existingTables.invalidate(metadataKey(config.table(event) + HISTORY_TABLE_SUFFIX));
+        Capabilities.IndexList.cachedIndices.invalidate(metadataKey(config.table(event)));
+        h3Aggregates.invalidate(metadataKey(config.table(event)));
+        countPyramids.invalidate(metadataKey(config.table(event)));
+        simplificationLods.invalidate(metadataKey(config.table(event)));
+        partitionCounts.invalidate(metadataKey(config.table(event)));
+        containmentIndexes.invalidate(metadataKey(config.table(event)));
+    }
+
+    /**
+     * Returns the amount of partitions, which are requested for the space of the given event through the storage parameter "partitions".
+     *
+     * @return the amount of partitions or 0, if the space should not be partitioned.
+     */
+    protected static int requestedPartitions(Event event) {
+        final Object partitions = event.getParams() != null ? event.getParams().get(PARTITIONS) : null;
+        if (partitions instanceof Integer && (Integer) partitions > 1 && (Integer) partitions <= MAX_PARTITIONS) {
+            return (Integer) partitions;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the amount of hash partitions of the table of the current space.
+     *
+     * @return the amount of partitions or 0, if the table is not partitioned or does not exist.
+     */
+    protected int partitionCount() throws SQLException {
+        final String table = SQLQuery.sqlQuote(config.schema()) + "." + SQLQuery.sqlQuote(config.table(event));
+        final Integer count = partitionCounts.get(metadataKey(config.table(event)), () ->
+                executeQuery(new SQLQuery("SELECT CASE WHEN c.relkind = 'p' THEN (SELECT count(*) FROM pg_inherits WHERE inhparent = c.oid) "
+                        + "ELSE 0 END::integer FROM pg_class c WHERE c.oid = to_regclass(?)", table), rs -> rs.next() ? rs.getInt(1) : null));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns true, if the containment index of the table of the current space exists and is valid.
+     */
+    protected boolean containmentIndexExists() throws SQLException {
+        final String index = SQLQuery.sqlQuote(config.schema()) + "." + SQLQuery.sqlQuote(containmentIndexName(config.table(event)));
+        return containmentIndexes.get(metadataKey(config.table(event)), () ->
+                executeQuery(new SQLQuery("SELECT EXISTS (SELECT 1 FROM pg_index WHERE indexrelid = to_regclass(?) AND indisvalid)", index),
+                        rs -> rs.next() && rs.getBoolean(1)));
+    }
+
+    private static String containmentIndexName(String table) {
+        return "idx_" + table + "_properties_path";
+    }
+
+    /**
+     * Requests or removes the GIN (jsonb_path_ops) index on the properties of the features, which backs the containment predicates of
+     * equality searches. The index is built by the asynchronous index maintenance ( see {@link DatabaseMaintainer} ), until it exists
+     * the equality searches are handled like without containment index.
+     *
+     * @throws SQLException if the index can't be requested or removed.
+     */
+    protected void ensureContainmentIndex(boolean enabled) throws SQLException {
+        final String tableName = config.table(event);
+        final Map<String, String> indexes = Collections.singletonMap(containmentIndexName(tableName),
+                "USING gin ((jsondata->'properties') jsonb_path_ops)");
+
+        executeUpdateWithRetry(enabled ? SQLQueryBuilder.buildSpecialIndexesRequestQuery(config.schema(), tableName, indexes)
+                : SQLQueryBuilder.buildSpecialIndexesRemovalQuery(tableName, indexes.keySet()));
+        containmentIndexes.invalidate(metadataKey(tableName));
+        logger.info("{} - Successfully requested the {} of the containment index of space '{}'", streamId, enabled ? "creation" : "removal", event.getSpace());
+    }
+
+    /**
+     * Creates or drops the sort key index of the spatial layout. The index enables the reorganisation of the table in the order of the
+     * sort key, see {@link DatabaseMaintainer}.
+     *
+     * @throws SQLException if the index can't be created or dropped.
+     */
+    protected void ensureSpatialLayout(boolean enabled) throws SQLException {
+        final String tableName = config.table(event);
+        final String indexName = SQLQuery.sqlQuote(SpatialLayoutSQL.sortKeyIndexName(tableName));
+        final String query = enabled ? SpatialLayoutSQL.createSortKeyIndexSQL(indexName) : "DROP INDEX IF EXISTS ${schema}." + indexName;
+
+        try (final Connection connection = dataSource.getConnection();
+             final Statement stmt = connection.createStatement()) {
+            stmt.execute(SQLQuery.replaceVars(query, config.schema(), tableName));
+            logger.info("{} - Successfully {} the spatial layout of space '{}'", streamId, enabled ? "created" : "dropped", event.getSpace());
+        } catch (Exception e) {
+            throw new SQLException("Update of the spatial layout for " + SQLQuery.sqlQuote(tableName) + " has failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Requests or removes the partial spatial indexes, which are used by the distribution sampling. Each index only contains the features
+     * with a sampling key below one of the sampling thresholds, so a sample is read through an index scan of the matching size. The
+     * indexes are built by the asynchronous index maintenance ( see {@link DatabaseMaintainer} ), so the request neither waits for them
+     * nor locks the table.
+     *
+     * @throws SQLException if the indexes can't be requested or removed.
+     */
+    protected void ensureSamplingIndexes(boolean enabled) throws SQLException {
+        final String tableName = config.table(event);
+        final Map<String, String> indexes = new LinkedHashMap<>();
+        for (String threshold : TweaksSQL.SAMPLING_INDEX_THRESHOLDS) {
+            indexes.put("idx_" + tableName + "_sample_" + threshold, "USING gist ((geo)) WHERE " + TweaksSQL.samplingIndexPredicate(threshold));
+        }
+
+        executeUpdateWithRetry(enabled ? SQLQueryBuilder.buildSpecialIndexesRequestQuery(config.schema(), tableName, indexes)
+                : SQLQueryBuilder.buildSpecialIndexesRemovalQuery(tableName, indexes.keySet()));
+        logger.info("{} - Successfully requested the {} of the sampling indexes of space '{}'", streamId, enabled ? "creation" : "removal", event.getSpace());
+    }
+
+    /**
+     * Returns the keys ( algorithm:strength ) of the simplifications, which are precomputed for the space of this event.
+     */
+    protected Set<String> simplificationLods() throws SQLException {
+        return simplificationLods.get(metadataKey(config.table(event)), () -> readSimplificationLods(readDataSource));
+    }
+
+    private Set<String> readSimplificationLods(DataSource dataSource) throws SQLException {
+        final String lodTable = SQLQuery.sqlQuote(config.schema()) + "." + SQLQuery.sqlQuote(config.table(event) + LOD_TABLE_SUFFIX);
+        return executeQuery(new SQLQuery("SELECT obj_description(to_regclass(?), 'pg_class')", lodTable), rs -> {
+            final Set<String> lods = new HashSet<>();
+            if (rs.next() && rs.getString(1) != null) {
+                lods.addAll(Arrays.asList(rs.getString(1).split(",")));
+            }
+            return lods;
+        }, dataSource);
+    }
+
+    /**
+     * Ensures that exactly the given simplifications are precomputed. The simplifications, which were not precomputed before, are built
+     * from the existing features. If no simplification is given, the precomputed simplifications are dropped. Nothing is done, if the
+     * simplifications did not change, so that the writes to the space are not blocked on every update of the space.
+     *
+     * @param lods the simplification expressions by the key ( algorithm:strength ) of the simplification.
+     * @throws SQLException if the precomputed simplifications can't be created or dropped.
+     */
+    protected void ensureSimplificationLods(Map<String, String> lods) throws SQLException {
+        final String tableName = config.table(event);
+        if (readSimplificationLods(dataSource).equals(lods == null ? Collections.emptySet() : lods.keySet())) {
+            return;
+        }
+
+        try (final Connection connection = dataSource.getConnection()) {
+            try {
+                if (connection.getAutoCommit()) {
+                    connection.setAutoCommit(false);
+                }
+
+                try (Statement stmt = connection.createStatement()) {
+                    for (String query : SQLQueryBuilder.deleteStatementTriggersSQL(config.schema(), tableName, "LOD")) {
+                        stmt.addBatch(query);
+                    }
+
+                    if (lods == null || lods.isEmpty()) {
+                        stmt.addBatch(SQLQuery.replaceVars("DROP TABLE IF EXISTS ${schema}.${lodtable}", config.schema(), tableName));
+                    } else {
+                        /** Block concurrent writes until the triggers are in place, so that no change gets lost while simplifying */
+                        String query = "LOCK TABLE ${schema}.${table} IN SHARE ROW EXCLUSIVE MODE";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        query = "CREATE TABLE IF NOT EXISTS ${schema}.${lodtable} (i bigint NOT NULL, lod text NOT NULL, geo geometry, "
+                                + "CONSTRAINT \"" + tableName + LOD_TABLE_SUFFIX + "_pkey\" PRIMARY KEY (i, lod))";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        final String lodList = String.join(",", lods.keySet());
+                        query = "DELETE FROM ${schema}.${lodtable} WHERE lod <> ALL(string_to_array('" + lodList + "', ','))";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        final StringBuilder args = new StringBuilder();
+                        for (Map.Entry<String, String> lod : lods.entrySet()) {
+                            stmt.addBatch(SQLQueryBuilder.buildLodSQL(config.schema(), tableName, lod.getKey(), lod.getValue()));
+                            args.append(args.length() == 0 ? "" : ",").append("'").append(lod.getKey()).append("','").append(lod.getValue()).append("'");
+                        }
+
+                        for (String triggerQuery : SQLQueryBuilder.addStatementTriggersSQL(config.schema(), tableName, "LOD",
+                                "xyz_trigger_lod", args.toString())) {
+                            stmt.addBatch(triggerQuery);
+                        }
+
+                        /** The comment is used to find the precomputed simplifications, see simplificationLods() */
+                        stmt.addBatch(SQLQuery.replaceVars("COMMENT ON TABLE ${schema}.${lodtable} IS '" + lodList + "'", config.schema(), tableName));
+                    }
+
+                    stmt.executeBatch();
+                    connection.commit();
+                    logger.info("{} - Successfully updated the precomputed simplifications of space '{}' to {}", streamId, event.getSpace(),
+                            lods == null ? "[]" : lods.keySet());
+                }
+            } catch (Exception e) {
+                connection.rollback();
+                throw new SQLException("Update of the precomputed simplifications for " + SQLQuery.sqlQuote(tableName) + " has failed: " + e.getMessage(), e);
+            } finally {
+                simplificationLods.invalidate(metadataKey(tableName));
+            }
+        }
+    }
+
+    /**
+     * Returns the configuration of the quadkey count pyramid, which is maintained for the space of this event.
+     */
+    protected QuadbinSQL.CountPyramid quadCountPyramid() throws SQLException {
+        return countPyramids.get(metadataKey(config.table(event)), () -> readQuadCountPyramid(readDataSource));
+    }
+
+    private QuadbinSQL.CountPyramid readQuadCountPyramid(DataSource dataSource) throws SQLException {
+        final String qkTable = SQLQuery.sqlQuote(config.schema()) + "." + SQLQuery.sqlQuote(config.table(event) + QK_TABLE_SUFFIX);
+        return executeQuery(new SQLQuery("SELECT obj_description(to_regclass(?), 'pg_class')", qkTable),
+                rs -> QuadbinSQL.CountPyramid.fromComment(rs.next() ? rs.getString(1) : null), dataSource);
+    }
+
+    /**
+     * Ensures that the quadkey count pyramid is maintained with the given configuration. If the configuration changed, the pyramid is
+     * rebuilt from the existing features once. If the configuration is {@link QuadbinSQL.CountPyramid#NONE}, the pyramid is dropped.
+     * Nothing is done, if the configuration did not change, so that the writes to the space are not blocked on every update of the space.
+     *
+     * @throws SQLException if the pyramid can't be created or dropped.
+     */
+    protected void ensureQuadCountPyramid(QuadbinSQL.CountPyramid countPyramid) throws SQLException {
+        final String tableName = config.table(event);
+        if (countPyramid.equals(readQuadCountPyramid(dataSource))) {
+            return;
+        }
+
+        try (final Connection connection = dataSource.getConnection()) {
+            try {
+                if (connection.getAutoCommit()) {
+                    connection.setAutoCommit(false);
+                }
+
+                try (Statement stmt = connection.createStatement()) {
+                    for (String query : SQLQueryBuilder.deleteStatementTriggersSQL(config.schema(), tableName, "QK_COUNT")) {
+                        stmt.addBatch(query);
+                    }
+
+                    if (!countPyramid.exists()) {
+                        stmt.addBatch(SQLQuery.replaceVars("DROP TABLE IF EXISTS ${schema}.${qktable}", config.schema(), tableName));
+                    } else {
+                        /** Block concurrent writes until the triggers are in place, so that no change gets lost while building the pyramid */
+                        String query = "LOCK TABLE ${schema}.${table} IN SHARE ROW EXCLUSIVE MODE";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        query = "CREATE TABLE IF NOT EXISTS ${schema}.${qktable} (qk text NOT NULL, tag text NOT NULL, qty bigint NOT NULL, "
+                                + "CONSTRAINT \"" + tableName + QK_TABLE_SUFFIX + "_pkey\" PRIMARY KEY (qk, tag))";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        stmt.addBatch(SQLQuery.replaceVars("TRUNCATE ${schema}.${qktable}", config.schema(), tableName));
+                        stmt.addBatch(SQLQueryBuilder.buildQuadCountSQL(config.schema(), tableName, countPyramid.maxLevel, countPyramid.byTag));
+
+                        for (String triggerQuery : SQLQueryBuilder.addStatementTriggersSQL(config.schema(), tableName, "QK_COUNT",
+                                "xyz_trigger_qkcount", countPyramid.maxLevel + "," + countPyramid.byTag)) {
+                            stmt.addBatch(triggerQuery);
+                        }
+
+                        /** The comment is used to find the configuration of the pyramid, see quadCountPyramid() */
+                        stmt.addBatch(SQLQuery.replaceVars("COMMENT ON TABLE ${schema}.${qktable} IS '" + countPyramid.toComment() + "'",
+                                config.schema(), tableName));
+                    }
+
+                    stmt.executeBatch();
+                    connection.commit();
+                    logger.info("{} - Successfully updated the quadkey count pyramid of space '{}' to '{}'", streamId, event.getSpace(),
+                            countPyramid.toComment());
+                }
+            } catch (Exception e) {
+                connection.rollback();
+                throw new SQLException("Update of the quadkey count pyramid for " + SQLQuery.sqlQuote(tableName) + " has failed: " + e.getMessage(), e);
+            } finally {
+                countPyramids.invalidate(metadataKey(tableName));
+            }
+        }
+    }
+
+    /**
+     * Returns the H3 resolutions, for which precomputed hexbin aggregates are maintained for the space of this event.
+     */
+    protected Set<Integer> h3AggregateResolutions() throws SQLException {
+        return h3Aggregates.get(metadataKey(config.table(event)), () -> readH3AggregateResolutions(readDataSource));
+    }
+
+    private Set<Integer> readH3AggregateResolutions(DataSource dataSource) throws SQLException {
+        final String h3Table = SQLQuery.sqlQuote(config.schema()) + "." + SQLQuery.sqlQuote(config.table(event) + H3_TABLE_SUFFIX);
+        return executeQuery(new SQLQuery("SELECT obj_description(to_regclass(?), 'pg_class')", h3Table), rs -> {
+            final Set<Integer> resolutions = new HashSet<>();
+            if (rs.next() && rs.getString(1) != null) {
+                for (String resolution : rs.getString(1).split(",")) {
+                    resolutions.add(Integer.parseInt(resolution.trim()));
+                }
+            }
+            return resolutions;
+        }, dataSource);
+    }
+
+    /**
+     * Ensures that precomputed hexbin aggregates are maintained for exactly the given H3 resolutions. The aggregates of resolutions,
+     * which were not maintained before, are built from the existing features. If no resolution is given, the aggregates are dropped.
+     * Nothing is done, if the resolutions did not change, so that the writes to the space are not blocked on every update of the space.
+     *
+     * @throws SQLException if the aggregates can't be created or dropped.
+     */
+    protected void ensureH3Aggregates(List<Integer> resolutions) throws SQLException {
+        final String tableName = config.table(event);
+        final Set<Integer> requested = resolutions == null ? Collections.emptySet() : new HashSet<>(resolutions);
+        if (requested.equals(readH3AggregateResolutions(dataSource))) {
+            return;
+        }
+
+        try (final Connection connection = dataSource.getConnection()) {
+            try {
+                if (connection.getAutoCommit()) {
+                    connection.setAutoCommit(false);
+                }
+
+                try (Statement stmt = connection.createStatement()) {
+                    for (String query : SQLQueryBuilder.deleteStatementTriggersSQL(config.schema(), tableName, "H3_AGGREGATE")) {
+                        stmt.addBatch(query);
+                    }
+
+                    if (resolutions == null || resolutions.isEmpty()) {
+                        stmt.addBatch(SQLQuery.replaceVars("DROP TABLE IF EXISTS ${schema}.${h3table}", config.schema(), tableName));
+                    } else {
+                        /** Block concurrent writes until the triggers are in place, so that no change gets lost while building the aggregates */
+                        String query = "LOCK TABLE ${schema}.${table} IN SHARE ROW EXCLUSIVE MODE";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        query = "CREATE TABLE IF NOT EXISTS ${schema}.${h3table} (h3 h3index NOT NULL, res integer NOT NULL, qty bigint NOT NULL, "
+                                + "geo geometry(Polygon,4326) NOT NULL, CONSTRAINT \"" + tableName + H3_TABLE_SUFFIX + "_pkey\" PRIMARY KEY (h3))";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        final String resolutionList = resolutions.stream().map(String::valueOf).collect(Collectors.joining(","));
+                        query = "DELETE FROM ${schema}.${h3table} WHERE res <> ALL(ARRAY[" + resolutionList + "])";
+                        stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+
+                        for (int resolution = 0; resolution <= 15; resolution++) {
+                            final String indexName = SQLQuery.sqlQuote("idx_" + tableName + H3_TABLE_SUFFIX + "_geo_" + resolution);
+                            if (resolutions.contains(resolution)) {
+                                query = "CREATE INDEX IF NOT EXISTS " + indexName + " ON ${schema}.${h3table} USING gist ((geo)) WHERE res = " + resolution;
+                                stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), tableName));
+                                stmt.addBatch(SQLQueryBuilder.buildH3AggregateSQL(config.schema(), tableName, resolution));
+                            } else {
+                                stmt.addBatch(SQLQuery.replaceVars("DROP INDEX IF EXISTS ${schema}." + indexName, config.schema(), tableName));
+                            }
+                        }
+
+                        for (String triggerQuery : SQLQueryBuilder.addStatementTriggersSQL(config.schema(), tableName, "H3_AGGREGATE",
+                                "xyz_trigger_h3aggregate", resolutionList)) {
+                            stmt.addBatch(triggerQuery);
+                        }
+
+                        /** The comment is used to find the aggregated resolutions, see h3AggregateResolutions() */
+                        stmt.addBatch(SQLQuery.replaceVars("COMMENT ON TABLE ${schema}.${h3table} IS '" + resolutionList + "'", config.schema(), tableName));
+                    }
+
+                    stmt.executeBatch();
+                    connection.commit();
+                    logger.info("{} - Successfully updated the hexbin aggregates of space '{}' for resolutions {}", streamId, event.getSpace(), resolutions);
+                }
+            } catch (Exception e) {
+                connection.rollback();
+                throw new SQLException("Update of the hexbin aggregates for " + SQLQuery.sqlQuote(tableName) + " has failed: " + e.getMessage(), e);
+            } finally {
+                h3Aggregates.invalidate(metadataKey(tableName));
+            }
+        }
+    }
+
     /**
      * A helper method that will ensure that the tables for the space of this event do exist and is up to date, if not it will alter the
      * table.
@@ -573,6 +1193,7 @@ public abstract class DatabaseHandler extends StorageConnector {
 
                     stmt.executeBatch();
                     connection.commit();
+                    existingTables.put(metadataKey(tableName), true);
                     logger.info("{} - Successfully created table for space '{}'", streamId, event.getSpace());
                 }
             } catch (Exception e) {
@@ -589,14 +1210,33 @@ public abstract class DatabaseHandler extends StorageConnector {
     }
 
     private void createSpaceStatement(Statement stmt, String tableName) throws SQLException {
+        final int partitions = requestedPartitions(event);
         String query = "CREATE TABLE IF NOT EXISTS ${schema}.${table} (jsondata jsonb, geo geometry(GeometryZ,4326), i BIGSERIAL, geojson jsonb)";
 //        String query = "CREATE TABLE IF NOT EXISTS ${schema}.${table} (jsondata jsonb, geo geometry(GeometryZ,4326), i BIGSERIAL)";
+        if (partitions > 0) {
+            /** Partitioning by the id lets the id lookups, updates and deletes prune all other partitions */
+            query += " PARTITION BY HASH ((jsondata->>'id'))";
+        }
         query = SQLQuery.replaceVars(query, config.schema(), tableName);
         stmt.addBatch(query);
 
-        query = "CREATE UNIQUE INDEX IF NOT EXISTS ${idx_id} ON ${schema}.${table} ((jsondata->>'id'))";
-        query = SQLQuery.replaceVars(query, replacements, config.schema(), tableName);
-        stmt.addBatch(query);
+        if (partitions > 0) {
+            for (int remainder = 0; remainder < partitions; remainder++) {
+                final String partition = tableName + PARTITION_SUFFIX + remainder;
+                query = "CREATE TABLE IF NOT EXISTS ${schema}.${table} PARTITION OF ${schema}." + SQLQuery.sqlQuote(tableName)
+                        + " FOR VALUES WITH (MODULUS " + partitions + ", REMAINDER " + remainder + ")";
+                stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), partition));
+
+                /** A partitioned unique index can't include the partition key expression. As equal ids are always in the same partition,
+                 * the ids are unique overall, if they are unique per partition. */
+                query = "CREATE UNIQUE INDEX IF NOT EXISTS " + SQLQuery.sqlQuote("idx_" + partition + "_id") + " ON ${schema}.${table} ((jsondata->>'id'))";
+                stmt.addBatch(SQLQuery.replaceVars(query, config.schema(), partition));
+            }
+        } else {
+            query = "CREATE UNIQUE INDEX IF NOT EXISTS ${idx_id} ON ${schema}.${table} ((jsondata->>'id'))";
+            query = SQLQuery.replaceVars(query, replacements, config.schema(), tableName);
+            stmt.addBatch(query);
+        }
 
         query = "CREATE INDEX IF NOT EXISTS ${idx_tags} ON ${schema}.${table} USING gin ((jsondata->'properties'->'@ns:com:here:xyz'->'tags') jsonb_ops)";
         query = SQLQuery.replaceVars(query, replacements, config.schema(), tableName);
@@ -619,8 +1259,17 @@ public abstract class DatabaseHandler extends StorageConnector {
         stmt.addBatch(query);
     }
 
+    /**
+     * Creates the history table of the space and its trigger. New history tables are partitioned by month and written once per
+     * statement, the versions exceeding maxVersionCount are pruned asynchronously by the {@link DatabaseMaintainer}. Existing
+     * unpartitioned history tables keep being pruned by their row trigger.
+     */
     protected void ensureHistorySpace(Integer maxVersionCount) throws SQLException {
         final String tableName = config.table(event);
+        final String hstTable = SQLQuery.sqlQuote(config.schema()) + "." + SQLQuery.sqlQuote(tableName + HISTORY_TABLE_SUFFIX);
+        /** The layout of the history is decided on the primary, a replica might not know the history table yet */
+        final boolean unpartitioned = executeQuery(new SQLQuery("SELECT relkind = 'r' FROM pg_class WHERE oid = to_regclass(?)", hstTable),
+                rs -> rs.next() && rs.getBoolean(1), dataSource);
 
         try (final Connection connection = dataSource.getConnection()) {
             try {
@@ -632,9 +1281,27 @@ public abstract class DatabaseHandler extends StorageConnector {
                     /** Create Space-Table */
                     createSpaceStatement(stmt, config.table(event));
 
-                    String query = "CREATE TABLE IF NOT EXISTS ${schema}.${hsttable} (uuid text NOT NULL, jsondata jsonb, geo geometry(GeometryZ,4326), CONSTRAINT \""+tableName+"_pkey\" PRIMARY KEY (uuid))";
-                    query = SQLQuery.replaceVars(query, config.schema(), tableName);
-                    stmt.addBatch(query);
+                    String query;
+                    if (unpartitioned) {
+                        query = "CREATE TABLE IF NOT EXISTS ${schema}.${hsttable} (uuid text NOT NULL, jsondata jsonb, geo geometry(GeometryZ,4326), CONSTRAINT \""+tableName+"_pkey\" PRIMARY KEY (uuid))";
+                        query = SQLQuery.replaceVars(query, config.schema(), tableName);
+                        stmt.addBatch(query);
+                    } else {
+                        query = "CREATE TABLE IF NOT EXISTS ${schema}.${hsttable} (uuid text NOT NULL, jsondata jsonb, geo geometry(GeometryZ,4326), "
+                                + "ts timestamptz NOT NULL DEFAULT now(), CONSTRAINT \""+tableName+"_pkey\" PRIMARY KEY (uuid, ts)) PARTITION BY RANGE (ts)";
+                        query = SQLQuery.replaceVars(query, config.schema(), tableName);
+                        stmt.addBatch(query);
+
+                        query = "CREATE TABLE IF NOT EXISTS ${schema}." + SQLQuery.sqlQuote(tableName + HISTORY_TABLE_SUFFIX + "_default")
+                                + " PARTITION OF ${schema}.${hsttable} DEFAULT";
+                        query = SQLQuery.replaceVars(query, config.schema(), tableName);
+                        stmt.addBatch(query);
+
+                        /** The maximal version count is read by xyz_maintain_history() */
+                        query = "COMMENT ON TABLE ${schema}.${hsttable} IS " + (maxVersionCount == null ? "NULL" : "'" + maxVersionCount + "'");
+                        query = SQLQuery.replaceVars(query, config.schema(), tableName);
+                        stmt.addBatch(query);
+                    }
 
                     query = "CREATE INDEX IF NOT EXISTS ${idx_hst_uuid} ON ${schema}.${hsttable} USING btree (uuid)";
                     query = SQLQuery.replaceVars(query, replacements, config.schema(), tableName);
@@ -651,11 +1318,31 @@ public abstract class DatabaseHandler extends StorageConnector {
                     query = SQLQueryBuilder.deleteHistoryTriggerSQL(config.schema(),config.table(event));
                     stmt.addBatch(query);
 
-                    query = SQLQueryBuilder.addHistoryTriggerSQL(config.schema(),config.table(event), maxVersionCount);
-                    stmt.addBatch(query);
+                    for (String triggerQuery : SQLQueryBuilder.deleteStatementTriggersSQL(config.schema(), tableName, "HISTORY")) {
+                        stmt.addBatch(triggerQuery);
+                    }
+
+                    if (unpartitioned) {
+                        query = SQLQueryBuilder.addHistoryTriggerSQL(config.schema(),config.table(event), maxVersionCount);
+                        stmt.addBatch(query);
+                    } else {
+                        for (String triggerQuery : SQLQueryBuilder.addStatementTriggersSQL(config.schema(), tableName, "HISTORY",
+                                "xyz_trigger_historywriter_partitioned", "", "UPDATE", "DELETE")) {
+                            stmt.addBatch(triggerQuery);
+                        }
+                    }
 
                     stmt.executeBatch();
+                    if (!unpartitioned) {
+                        try (PreparedStatement partitionsStmt = connection.prepareStatement("SELECT xyz_history_partitions(?, ?)")) {
+                            partitionsStmt.setString(1, config.schema());
+                            partitionsStmt.setString(2, tableName);
+                            partitionsStmt.execute();
+                        }
+                    }
                     connection.commit();
+                    existingTables.put(metadataKey(tableName), true);
+                    existingTables.put(metadataKey(tableName + HISTORY_TABLE_SUFFIX), true);
                     logger.info("{} - Successfully created history table for space '{}'", streamId, event.getSpace());
                 }
             } catch (Exception e) {
@@ -687,6 +1374,7 @@ public abstract class DatabaseHandler extends StorageConnector {
             sb.append(geom == null ? "null" : geom);
             sb.append("}");
             sb.append(",");
+            fetchedRows++;
 
             if (isIterate) {
                 numFeatures++;
@@ -697,6 +1385,7 @@ public abstract class DatabaseHandler extends StorageConnector {
             sb.setLength(sb.length() - 1);
         }
         sb.append("]");
+        fetchedBytes += sb.length();
 
         final FeatureCollection featureCollection = new FeatureCollection();
         featureCollection._setFeatures(sb.toString());
@@ -709,6 +1398,22 @@ public abstract class DatabaseHandler extends StorageConnector {
         return featureCollection;
     }
 
+    /**
+     * Returns the old state of the feature in the current row, as returned by a delete.
+     */
+    private static String oldStateJson(ResultSet rs) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"type\":\"Feature\",\"id\":");
+        sb.append(rs.getString("id"));
+        String geom = rs.getString("geometry");
+        if (geom != null) {
+            sb.append(",\"geometry\":");
+            sb.append(geom);
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
     /**
      * handler for delete by tags results.
      *
@@ -721,14 +1426,7 @@ public abstract class DatabaseHandler extends StorageConnector {
         String prefix = "[";
         sb.append(prefix);
         while (rs.next()) {
-            sb.append("{\"type\":\"Feature\",\"id\":");
-            sb.append(rs.getString("id"));
-            String geom = rs.getString("geometry");
-            if (geom != null) {
-                sb.append(",\"geometry\":");
-                sb.append(geom);
-                sb.append("}");
-            }
+            sb.append(oldStateJson(rs));
             sb.append(",");
         }
         if (sb.length() > prefix.length()) {
@@ -828,6 +1526,7 @@ public abstract class DatabaseHandler extends StorageConnector {
     public class XYZDBInstance {
         private DataSource dataSource;
         private DataSource readDataSource;
+        private ReplicaBalancer replicaBalancer;
         private DatabaseMaintainer databaseMaintainer;
         private PSQLConfig config;
 
@@ -845,7 +1544,12 @@ public abstract class DatabaseHandler extends StorageConnector {
             this.config = config;
         }
 
+        /**
+         * Returns the read replica to be used for the next request, or the primary if no replica is available.
+         */
         public DataSource getReadDataSource() {
+            if(replicaBalancer != null)
+                return replicaBalancer.select(this.dataSource);
             if(readDataSource == null)
                 return this.dataSource;
             return this.readDataSource;
@@ -864,6 +1568,10 @@ public abstract class DatabaseHandler extends StorageConnector {
         public void addReadDataSource(DataSource readDataSource){
             this.readDataSource = readDataSource;
         }
+
+        void setReplicaBalancer(ReplicaBalancer replicaBalancer){
+            this.replicaBalancer = replicaBalancer;
+        }
     }
 
     public static class XyzConnectionCustomizer extends AbstractConnectionCustomizer { // handle initialization per db connection
@@ -21,6 +21,7 @@ package com.here.xyz.psql;
 
 import com.here.xyz.events.Event;
 import com.here.xyz.psql.factory.MaintenanceSQL;
+import com.here.xyz.psql.factory.SpatialLayoutSQL;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -30,20 +31,35 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 public class DatabaseMaintainer {
     private static final Logger logger = LogManager.getLogger();
 
     /** Is used to check against xyz_ext_version() */
-    private static final int XYZ_EXT_VERSION = 128;
+    private static final int XYZ_EXT_VERSION = 143;
     /** Can get configured dynamically with storageParam onDemandIdxLimit */
     protected final static int ON_DEMAND_IDX_DEFAULT_LIM = 4;
+    /** The time per maintenance run, which is spent to prune the histories and to reorganize the spaces with spatial layout */
+    private static final long BACKGROUND_JOBS_BUDGET_MS = 5_000;
+    /** The maximal time per maintenance run, which is spent to reorganize the spaces with spatial layout */
+    private static final long REORGANIZATION_BUDGET_MS = 1_000;
+    /** The minimal time between two reorganizations of the spaces with spatial layout */
+    private static final long REORGANIZATION_INTERVAL_MS = 60_000;
+    /** The amount of feature ids per space, whose history versions are pruned per maintenance run */
+    private static final int HISTORY_PRUNING_BATCH = 10_000;
 
     private DataSource dataSource;
     private PSQLConfig config;
+    /** The property searches on this database, which are evaluated by the index advisor */
+    private final SearchWorkload workload = new SearchWorkload();
+    /** The earliest time of the next reorganization of the spaces with spatial layout */
+    private long nextReorganization;
 
     public DatabaseMaintainer(DataSource dataSource, PSQLConfig config){
         this.dataSource = dataSource;
@@ -57,10 +73,26 @@ public class DatabaseMaintainer {
         /** Check if all required extensions, schemas, tables and functions are present  */
         this.initialDBSetup(streamId, autoIndexing, hasPropertySearch);
 
+        if (hasPropertySearch && config.isIndexAdvisorActivated()) {
+            /** Derive On-Demand Indices from the observed searches */
+            final int budget = config.onDemandLimit() != null ? config.onDemandLimit() : ON_DEMAND_IDX_DEFAULT_LIM;
+            new IndexAdvisor(dataSource, config.schema()).run(streamId, workload, budget);
+        }
+
         if (hasPropertySearch) {
             /** Trigger missing Index Maintenance (On-Demand & Auto-Indexing) */
             this.triggerIndexing(streamId, autoIndexing);
         }
+
+        final long deadline = System.currentTimeMillis() + BACKGROUND_JOBS_BUDGET_MS;
+        /** Prune the time partitioned histories */
+        this.pruneHistories(streamId, deadline);
+        /** Keep the spaces with spatial layout sorted */
+        this.reorganizeSpaces(streamId, Math.min(deadline, System.currentTimeMillis() + REORGANIZATION_BUDGET_MS));
+    }
+
+    protected SearchWorkload getSearchWorkload() {
+        return workload;
     }
 
     private synchronized void initialDBSetup(String streamId, boolean autoIndexing, boolean hasPropertySearch){
@@ -229,6 +261,95 @@ public class DatabaseMaintainer {
         }
     }
 
+    /**
+     * Removes the history versions, which exceed the maximal version count of their space, and drops the history partitions which
+     * became empty. The history triggers only insert, so the pruning does not slow down the writes.
+     */
+    private synchronized void pruneHistories(String streamId, long deadline) {
+        try (final Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            final List<String> spaces = new ArrayList<>();
+            try (PreparedStatement stmt = connection.prepareStatement(MaintenanceSQL.partitionedHistorySpacesSQL)) {
+                stmt.setString(1, config.schema());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        spaces.add(rs.getString(1));
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(MaintenanceSQL.maintainHistorySQL)) {
+                for (String space : spaces) {
+                    if (System.currentTimeMillis() >= deadline) {
+                        break;
+                    }
+                    stmt.setString(1, config.schema());
+                    stmt.setString(2, space);
+                    stmt.setInt(3, HISTORY_PRUNING_BATCH);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next() && rs.getInt(1) > 0) {
+                            logger.info("{} - Pruned {} history versions of space table {}", streamId, rs.getInt(1), space);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("{} - Failed to prune the histories on database {} : {}", streamId, config.database(), e);
+        }
+    }
+
+    /**
+     * Rewrites the features of the spaces with spatial layout batch by batch in the order of their sort key, until the time budget of
+     * the run is used up. Each batch is committed on its own, so the tables stay available for reads. A batch is skipped, while a space
+     * is being written, writes which start during a batch wait for it. As every maintenance run of the health check would otherwise
+     * compete with the writes, the reorganization runs at most once per {@link #REORGANIZATION_INTERVAL_MS}.
+     */
+    private synchronized void reorganizeSpaces(String streamId, long deadline) {
+        if (System.currentTimeMillis() < nextReorganization) {
+            return;
+        }
+        nextReorganization = System.currentTimeMillis() + REORGANIZATION_INTERVAL_MS;
+
+        try (final Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            final List<String> tables = new ArrayList<>();
+            try (PreparedStatement stmt = connection.prepareStatement(SpatialLayoutSQL.SPATIAL_LAYOUT_TABLES_SQL)) {
+                stmt.setString(1, config.schema());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        tables.add(rs.getString(1));
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(SpatialLayoutSQL.REORGANIZE_SPACE_SQL)) {
+                for (String table : tables) {
+                    long moved = 0;
+                    int batch;
+                    do {
+                        stmt.setString(1, config.schema());
+                        stmt.setString(2, table);
+                        stmt.setInt(3, SpatialLayoutSQL.REORGANIZATION_BATCH);
+                        stmt.setDouble(4, SpatialLayoutSQL.REORGANIZATION_MIN_CORRELATION);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            batch = rs.next() ? rs.getInt(1) : 0;
+                        }
+                        moved += batch;
+                    } while (batch > 0 && System.currentTimeMillis() < deadline);
+
+                    if (moved > 0) {
+                        logger.info("{} - Reorganized {} features of space table {}", streamId, moved, table);
+                    }
+                    if (System.currentTimeMillis() >= deadline) {
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("{} - Failed to reorganize the spaces with spatial layout on database {} : {}", streamId, config.database(), e);
+        }
+    }
+
     private String readResource(String resource) throws IOException {
         InputStream is = DatabaseHandler.class.getResourceAsStream(resource);
         try (BufferedReader buffer = new BufferedReader(new InputStreamReader(is))) {
@@ -24,13 +24,17 @@ import com.here.xyz.models.geojson.implementation.Feature;
 import com.here.xyz.models.geojson.implementation.FeatureCollection;
 import com.here.xyz.models.geojson.implementation.Geometry;
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.io.WKBWriter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.postgresql.util.PGobject;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -113,6 +117,11 @@ public class DatabaseWriter {
         return createStatement(connection, SQLQueryBuilder.updateWithoutGeometryStmtSQL(schema,table,handleUUID));
     }
 
+    protected static PreparedStatement createUpsertStatement(Connection connection, String schema, String table, boolean handleUUID,
+                                                             boolean partitioned) throws SQLException {
+        return createStatement(connection, SQLQueryBuilder.upsertStmtSQL(schema,table,handleUUID,partitioned));
+    }
+
     protected static PreparedStatement deleteStmtSQLStatement(Connection connection, String schema, String table, boolean handleUUID)
             throws SQLException {
         return createStatement(connection, SQLQueryBuilder.deleteStmtSQL(schema,table,handleUUID));
@@ -153,6 +162,95 @@ public class DatabaseWriter {
         return DatabaseStreamWriter.updateFeatures(schema, table, streamId, collection, fails, updates, connection, handleUUID);
     }
 
+    /**
+     * Writes all upserts with one set-based statement, so that no previous load of the existing states is needed. The IDs of successfully
+     * written features are added to the inserted or updated list of the collection, the rest is reported as failed.
+     */
+    protected static FeatureCollection upsertFeatures(String schema, String table, String streamId, FeatureCollection collection,
+                                                      List<FeatureCollection.ModificationFailure> fails,
+                                                      List<Feature> upserts, Connection connection,
+                                                      boolean transactional, boolean handleUUID, boolean partitioned)
+            throws SQLException, JsonProcessingException {
+        setAutocommit(connection,!transactional);
+
+        final String[] jsondata = new String[upserts.size()];
+        final String[] geo = new String[upserts.size()];
+        final String[] geojson = new String[upserts.size()];
+        final String[] expectedUUIDs = new String[upserts.size()];
+
+        for (int i = 0; i < upserts.size(); i++) {
+            final Feature feature = upserts.get(i);
+
+            if (feature.getId() == null) {
+                throw new NullPointerException("id");
+            }
+
+            jsondata[i] = featureToPGobject(feature, true).getValue();
+            geojson[i] = featureToPGobject(feature, false).getValue();
+            expectedUUIDs[i] = feature.getProperties().getXyzNamespace().getPuuid();
+
+            if (feature.getGeometry() != null) {
+                final WKBWriter wkbWriter = new WKBWriter(3);
+                com.vividsolutions.jts.geom.Geometry jtsGeometry = feature.getGeometry().getJTSGeometry();
+                //Avoid NAN values
+                assure3d(jtsGeometry.getCoordinates());
+                geo[i] = WKBWriter.toHex(wkbWriter.write(jtsGeometry));
+            }
+        }
+
+        final Map<String, Boolean> written = new HashMap<>();
+        final Map<String, Long> createdAt = new HashMap<>();
+        final Map<String, String> puuids = new HashMap<>();
+        try (final PreparedStatement upsertStmt = createUpsertStatement(connection, schema, table, handleUUID, partitioned)) {
+            upsertStmt.setQueryTimeout(TIMEOUT);
+            upsertStmt.setArray(1, connection.createArrayOf("text", jsondata));
+            upsertStmt.setArray(2, connection.createArrayOf("text", geo));
+            upsertStmt.setArray(3, connection.createArrayOf("text", geojson));
+            upsertStmt.setArray(4, connection.createArrayOf("text", expectedUUIDs));
+
+            try (final ResultSet rs = upsertStmt.executeQuery()) {
+                while (rs.next()) {
+                    written.put(rs.getString(1), rs.getBoolean(2));
+                    createdAt.put(rs.getString(1), rs.getLong(3));
+                    puuids.put(rs.getString(1), rs.getString(4));
+                }
+            }
+        }
+
+        for (Feature feature : upserts) {
+            if (!written.containsKey(feature.getId())) {
+                fails.add(new FeatureCollection.ModificationFailure().withId(feature.getId()).withMessage(UPDATE_ERROR_UUID));
+            }
+        }
+
+        if(transactional && fails.size() > 0)
+            throw new SQLException(UPDATE_ERROR_GENERAL);
+
+        for (Feature feature : upserts) {
+            final Boolean inserted = written.get(feature.getId());
+            if (inserted == null) {
+                continue;
+            }
+            /* Reflect the state as it was written by the storage */
+            feature.getProperties().getXyzNamespace().setCreatedAt(createdAt.get(feature.getId()));
+            feature.getProperties().getXyzNamespace().setPuuid(puuids.get(feature.getId()));
+            if (inserted) {
+                if (collection.getInserted() == null) {
+                    collection.setInserted(new ArrayList<>());
+                }
+                collection.getInserted().add(feature.getId());
+            } else {
+                if (collection.getUpdated() == null) {
+                    collection.setUpdated(new ArrayList<>());
+                }
+                collection.getUpdated().add(feature.getId());
+            }
+            collection.getFeatures().add(feature);
+        }
+
+        return collection;
+    }
+
     protected static void deleteFeatures(String schema, String table, String streamId,
                                                       List<FeatureCollection.ModificationFailure> fails,
                                                       Map<String, String> deletes, Connection connection,
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+package com.here.xyz.psql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The cumulative amount of rows and bytes, which were fetched by the feature queries of all handler instances of the JVM. Queries, which
+ * were fetched through a server-side cursor, are counted separately. The statistics are reported by the health check.
+ */
+class FetchStatistics {
+
+  private static final Counters all = new Counters();
+  private static final Counters cursor = new Counters();
+
+  /**
+   * Records a feature query.
+   *
+   * @param usedCursor whether the rows were fetched through a server-side cursor.
+   * @param rows the amount of fetched rows.
+   * @param bytes the amount of fetched bytes.
+   */
+  static void record(boolean usedCursor, long rows, long bytes) {
+    all.record(rows, bytes);
+    if (usedCursor) {
+      cursor.record(rows, bytes);
+    }
+  }
+
+  /**
+   * Returns the statistics of all feature queries and of the ones, which were fetched through a cursor.
+   */
+  static Map<String, Object> statistics() {
+    final Map<String, Object> statistics = new LinkedHashMap<>();
+    statistics.put("all", all.toMap());
+    statistics.put("cursor", cursor.toMap());
+    return statistics;
+  }
+
+  private static class Counters {
+
+    final LongAdder queries = new LongAdder();
+    final LongAdder rows = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final AtomicLong maxRows = new AtomicLong();
+    final AtomicLong maxBytes = new AtomicLong();
+
+    void record(long rows, long bytes) {
+      queries.increment();
+      this.rows.add(rows);
+      this.bytes.add(bytes);
+      maxRows.accumulateAndGet(rows, Math::max);
+      maxBytes.accumulateAndGet(bytes, Math::max);
+    }
+
+    Map<String, Object> toMap() {
+      final Map<String, Object> map = new LinkedHashMap<>();
+      map.put("queries", queries.sum());
+      map.put("rows", rows.sum());
+      map.put("bytes", bytes.sum());
+      map.put("maxRowsPerQuery", maxRows.get());
+      map.put("maxBytesPerQuery", maxBytes.get());
+      return map;
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+package com.here.xyz.psql;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.here.xyz.XyzSerializable;
+import com.here.xyz.psql.SearchWorkload.Usage;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Derives on-demand indices from the observed search workload. The histograms of all connector instances are merged into the column
+ * search_stat of the xyz_config.xyz_idxs_status maintenance table, where the counts decay with a half-life of one day. The keys which are
+ * searched frequently and selectively are written into the column idx_workload, which is maintained by xyz_maintain_idxs_for_space() like
+ * the manual (idx_manual) configuration. Keys which became cold are removed again, which drops their index.
+ */
+class IndexAdvisor {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  static final long HALF_LIFE_MS = TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * The decayed amount of searches on a key, from which on an index is advised. An advised index is kept until the amount falls below
+   * the half of it.
+   */
+  static final double MIN_QUERIES = 50;
+
+  /**
+   * The maximal average share of the table rows returned by a search, for which an index is advised.
+   */
+  static final double MAX_SELECTIVITY = 0.05;
+
+  /**
+   * Tables with less rows are scanned sequentially anyway.
+   */
+  static final long MIN_TABLE_ROWS = 10_000;
+
+  /**
+   * The amount of rows, which are sampled to estimate the selectivity of a key, and the time after which the estimate is renewed.
+   */
+  static final long SELECTIVITY_SAMPLE_ROWS = 30_000;
+  static final long SELECTIVITY_ESTIMATE_TTL_MS = TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * Estimates the share of the table rows, which an equality search on the key returns on average, from a sample of the table. The values
+   * are weighted by their frequency ( like the most common values of the planner statistics ), rows without the key never match.
+   */
+  private static final String SELECTIVITY_ESTIMATE_SQL = "SELECT COALESCE((sum(s.n * s.n) FILTER (WHERE s.v IS NOT NULL))::float8"
+      + " / NULLIF((sum(s.n) FILTER (WHERE s.v IS NOT NULL))::float8 * sum(s.n), 0), 0)"
+      + " FROM (SELECT jsondata->'properties' #> string_to_array(?, '.') AS v, count(*) AS n FROM %s TABLESAMPLE SYSTEM (?) GROUP BY 1) s";
+
+  private static final String IDX_STATUS_TABLE = "xyz_config.xyz_idxs_status";
+
+  private final DataSource dataSource;
+  private final String schema;
+
+  IndexAdvisor(DataSource dataSource, String schema) {
+    this.dataSource = dataSource;
+    this.schema = schema;
+  }
+
+  /**
+   * Merges the drained workload into the maintenance table and updates the advised indices.
+   *
+   * @param budget the maximal amount of on-demand indices per space, including the manual ones.
+   */
+  void run(String streamId, SearchWorkload workload, int budget) {
+    final Map<String, Map<String, Usage>> observed = workload.drain();
+    final Set<String> tables = new TreeSet<>(observed.keySet());
+    int changed = 0;
+
+    // Spaces with advised indices are revisited also without new workload, to let their keys cool down
+    try (final Connection connection = dataSource.getConnection();
+        final PreparedStatement stmt = connection.prepareStatement("SELECT spaceid FROM " + IDX_STATUS_TABLE
+            + " WHERE schem = ? AND idx_workload IS NOT NULL AND idx_workload != '{}'::jsonb")) {
+      stmt.setString(1, schema);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          tables.add(rs.getString(1));
+        }
+      }
+    } catch (Exception e) {
+      logger.warn("{} - Failed to read the advised indices: {}", streamId, e);
+    }
+
+    for (String table : tables) {
+      try (final Connection connection = dataSource.getConnection()) {
+        connection.setAutoCommit(false);
+        try {
+          if (advise(connection, table, observed.getOrDefault(table, Collections.emptyMap()), budget, System.currentTimeMillis())) {
+            changed++;
+          }
+          connection.commit();
+        } catch (Exception e) {
+          connection.rollback();
+          throw e;
+        }
+      } catch (Exception e) {
+        logger.warn("{} - Failed to advise indices for {}: {}", streamId, table, e);
+      }
+    }
+
+    if (!tables.isEmpty()) {
+      logger.info("{} - Index advisor processed {} spaces, changed the advised indices of {}", streamId, tables.size(), changed);
+    }
+  }
+
+  private boolean advise(Connection connection, String table, Map<String, Usage> usages, int budget, long now)
+      throws SQLException, IOException {
+    try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + IDX_STATUS_TABLE
+        + " (spaceid, schem, idx_creation_finished) VALUES (?, ?, true) ON CONFLICT (spaceid) DO NOTHING")) {
+      stmt.setString(1, table);
+      stmt.setString(2, schema);
+      stmt.execute();
+    }
+
+    final String stat, manual, advised;
+    final long rows;
+    try (PreparedStatement stmt = connection.prepareStatement("SELECT search_stat::text, idx_manual::text, idx_workload::text, "
+        + "xyz_reltuples(to_regclass(quote_ident(?) || '.' || quote_ident(?)))::bigint "
+        + "FROM " + IDX_STATUS_TABLE + " WHERE spaceid = ? FOR UPDATE")) {
+      stmt.setString(1, schema);
+      stmt.setString(2, table);
+      stmt.setString(3, table);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (!rs.next() || rs.getObject(4) == null) {
+          // The space was deleted in the meantime, the rollback removes the inserted entry again.
+          connection.rollback();
+          return false;
+        }
+        stat = rs.getString(1);
+        manual = rs.getString(2);
+        advised = rs.getString(3);
+        rows = rs.getLong(4);
+      }
+    }
+
+    final SpaceStat spaceStat = merge(stat == null ? new SpaceStat() : XyzSerializable.deserialize(stat, SpaceStat.class), usages, now);
+    final Map<String, Boolean> manualIndices = manual == null ? new HashMap<>()
+        : XyzSerializable.deserialize(manual, new TypeReference<Map<String, Boolean>>() {});
+    final Map<String, Boolean> advisedBefore = advised == null ? new HashMap<>()
+        : XyzSerializable.deserialize(advised, new TypeReference<Map<String, Boolean>>() {});
+    if (rows >= MIN_TABLE_ROWS) {
+      estimateSelectivities(connection, table, spaceStat, manualIndices, advisedBefore.keySet(), rows, now);
+    }
+    final Map<String, Boolean> advisedNow = select(spaceStat, manualIndices, advisedBefore.keySet(), rows, budget);
+    final boolean changed = !advisedNow.equals(advisedBefore);
+
+    try (PreparedStatement stmt = connection.prepareStatement("UPDATE " + IDX_STATUS_TABLE
+        + " SET search_stat = ?::jsonb, idx_workload = ?::jsonb, schem = ?,"
+        + " idx_creation_finished = idx_creation_finished AND NOT ? WHERE spaceid = ?")) {
+      stmt.setString(1, XyzSerializable.serialize(spaceStat, new TypeReference<SpaceStat>() {}));
+      stmt.setString(2, XyzSerializable.serialize(advisedNow, new TypeReference<Map<String, Boolean>>() {}));
+      stmt.setString(3, schema);
+      stmt.setBoolean(4, changed);
+      stmt.setString(5, table);
+      stmt.execute();
+    }
+    return changed;
+  }
+
+  /**
+   * Estimates the selectivity of the frequently searched keys, whose estimate is missing or outdated. The rows returned by the searches
+   * are not sufficient, as they are capped by the limit of the searches.
+   */
+  private void estimateSelectivities(Connection connection, String table, SpaceStat stat, Map<String, Boolean> manual,
+      Set<String> advisedBefore, long tableRows, long now) throws SQLException {
+    final String sql = String.format(SELECTIVITY_ESTIMATE_SQL, SQLQuery.sqlQuote(schema) + "." + SQLQuery.sqlQuote(table));
+    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+      for (Map.Entry<String, KeyStat> e : stat.keys.entrySet()) {
+        final KeyStat k = e.getValue();
+        if (manual.containsKey(e.getKey()) || !isFrequent(e.getKey(), k, advisedBefore) || now - k.et < SELECTIVITY_ESTIMATE_TTL_MS) {
+          continue;
+        }
+        stmt.setString(1, e.getKey());
+        stmt.setDouble(2, Math.min(100d, 100d * SELECTIVITY_SAMPLE_ROWS / Math.max(1, tableRows)));
+        try (ResultSet rs = stmt.executeQuery()) {
+          k.e = rs.next() ? rs.getDouble(1) : 0d;
+          k.et = now;
+        }
+      }
+    }
+  }
+
+  private static boolean isFrequent(String key, KeyStat k, Set<String> advisedBefore) {
+    return k.q >= (advisedBefore.contains(key) ? MIN_QUERIES / 2 : MIN_QUERIES);
+  }
+
+  /**
+   * Decays the persisted counts and adds the newly observed ones.
+   */
+  static SpaceStat merge(SpaceStat stat, Map<String, Usage> usages, long now) {
+    final double decay = stat.ts == 0 ? 1d : Math.pow(0.5d, Math.max(0, now - stat.ts) / (double) HALF_LIFE_MS);
+    stat.ts = now;
+    stat.keys.values().forEach(k -> k.scale(decay));
+
+    usages.forEach((key, usage) -> {
+      final KeyStat k = stat.keys.computeIfAbsent(key, x -> new KeyStat());
+      k.q += usage.queries.sum();
+      k.s += usage.sampled.sum();
+      k.r += usage.rows.sum();
+      usage.operations.forEach((op, count) -> k.ops.merge(op.name(), (double) count.sum(), Double::sum));
+    });
+
+    // Forget keys which were not searched for a long time and keep the most frequent ones only
+    stat.keys = stat.keys.entrySet().stream()
+        .filter(e -> e.getValue().q >= 1d)
+        .sorted(Comparator.comparingDouble((Map.Entry<String, KeyStat> e) -> e.getValue().q).reversed())
+        .limit(SearchWorkload.MAX_KEYS_PER_SPACE)
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, TreeMap::new));
+    return stat;
+  }
+
+  /**
+   * Selects the most frequently searched keys with a sufficient selectivity, within the budget which is left by the manual indices.
+   */
+  static Map<String, Boolean> select(SpaceStat stat, Map<String, Boolean> manual, Set<String> advisedBefore, long tableRows, int budget) {
+    final Map<String, Boolean> result = new TreeMap<>();
+    if (tableRows < MIN_TABLE_ROWS) {
+      return result;
+    }
+
+    final long left = budget - manual.values().stream().filter(Boolean.TRUE::equals).count();
+    stat.keys.entrySet().stream()
+        .filter(e -> !manual.containsKey(e.getKey()))
+        .filter(e -> isFrequent(e.getKey(), e.getValue(), advisedBefore))
+        .filter(e -> e.getValue().selectivity(tableRows) <= MAX_SELECTIVITY)
+        .sorted(Comparator.comparingDouble((Map.Entry<String, KeyStat> e) -> e.getValue().q).reversed())
+        .limit(Math.max(0, left))
+        .forEach(e -> result.put(e.getKey(), true));
+    return result;
+  }
+
+  static class SpaceStat {
+
+    public long ts;
+    public Map<String, KeyStat> keys = new TreeMap<>();
+  }
+
+  static class KeyStat {
+
+    /**
+     * The decayed amount of searches, of executed searches and of the rows returned by them.
+     */
+    public double q, s, r;
+    /**
+     * The estimated selectivity of the key and the time of the estimate.
+     */
+    public double e;
+    public long et;
+    public Map<String, Double> ops = new TreeMap<>();
+
+    void scale(double factor) {
+      q *= factor;
+      s *= factor;
+      r *= factor;
+      ops.replaceAll((op, count) -> count * factor);
+    }
+
+    /**
+     * The estimated share of the table rows returned by a search. The rows returned by the executed searches are only a lower bound, as
+     * they are capped by the limit of the searches, so the estimate from the table sample is taken, if it is higher. Searches which were
+     * rejected for missing indices are not sampled.
+     */
+    double selectivity(long tableRows) {
+      final double observed = s < 1d ? 0d : (r / s) / Math.max(1, tableRows);
+      return Math.max(observed, e);
+    }
+  }
+}
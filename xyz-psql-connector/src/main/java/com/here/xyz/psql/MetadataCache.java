@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+package com.here.xyz.psql;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A size-bounded cache for database metadata (e.g. index lists or the existence of tables), which is shared by all handler instances of
+ * the JVM. An entry is refreshed ahead of its expiry by the first caller requesting it after the refresh interval, all other callers are
+ * served with the current value in the meantime.
+ */
+class MetadataCache<V> {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  /**
+   * All caches, used to report the statistics.
+   */
+  private static final List<MetadataCache<?>> caches = new CopyOnWriteArrayList<>();
+
+  private final String name;
+  private final int maxSize;
+  private final long expiryMs;
+  private final long refreshAheadMs;
+
+  private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+
+  /**
+   * @param name the name of the cache, used for the statistics.
+   * @param maxSize the maximal amount of entries.
+   * @param expiryMs the time after which an entry is not served anymore.
+   * @param refreshAheadMs the time before the expiry, from which on an entry gets refreshed.
+   */
+  MetadataCache(String name, int maxSize, long expiryMs, long refreshAheadMs) {
+    this.name = name;
+    this.maxSize = maxSize;
+    this.expiryMs = expiryMs;
+    this.refreshAheadMs = refreshAheadMs;
+    caches.add(this);
+  }
+
+  /**
+   * Returns the cached value for the key, loads it if it is missing or expired and refreshes it if it expires soon.
+   */
+  V get(String key, Loader<V> loader) throws SQLException {
+    final long now = System.currentTimeMillis();
+    final Entry<V> entry = entries.get(key);
+
+    if (entry != null && now < entry.expiry) {
+      hits.incrementAndGet();
+      if (now >= entry.expiry - refreshAheadMs && entry.refreshing.compareAndSet(false, true)) {
+        refreshes.incrementAndGet();
+        try {
+          final V value = loader.load();
+          put(key, value);
+          return value;
+        } catch (SQLException e) {
+          // Keep serving the current value until it expires.
+          entry.refreshing.set(false);
+          logger.warn("Refresh of metadata cache '{}' failed: {}", name, e.getMessage());
+        }
+      }
+      return entry.value;
+    }
+
+    misses.incrementAndGet();
+    final V value = loader.load();
+    put(key, value);
+    return value;
+  }
+
+  /**
+   * Returns the cached value for the key, without loading it.
+   *
+   * @return the value or null, if there is no value or it is expired.
+   */
+  V getIfPresent(String key) {
+    final Entry<V> entry = entries.get(key);
+    if (entry != null && System.currentTimeMillis() < entry.expiry) {
+      hits.incrementAndGet();
+      return entry.value;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  void put(String key, V value) {
+    if (value == null) {
+      entries.remove(key);
+      return;
+    }
+    entries.put(key, new Entry<>(value, System.currentTimeMillis() + expiryMs));
+    if (entries.size() > maxSize) {
+      evict();
+    }
+  }
+
+  void invalidate(String key) {
+    entries.remove(key);
+  }
+
+  /**
+   * Removes the expired entries and, if the cache is still too large, the entries which expire first.
+   */
+  private void evict() {
+    final long now = System.currentTimeMillis();
+    entries.entrySet().removeIf(e -> e.getValue().expiry <= now);
+
+    int overflow = entries.size() - maxSize;
+    if (overflow > 0) {
+      entries.entrySet().stream()
+          .sorted((e1, e2) -> Long.compare(e1.getValue().expiry, e2.getValue().expiry))
+          .limit(overflow)
+          .map(Map.Entry::getKey)
+          .collect(Collectors.toList())
+          .forEach(entries::remove);
+    }
+  }
+
+  double hitRatio() {
+    final long total = hits.get() + misses.get();
+    return total == 0 ? 0 : (double) hits.get() / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: size=%d, hits=%d, misses=%d, refreshes=%d, hitRatio=%.3f", name, entries.size(), hits.get(), misses.get(),
+        refreshes.get(), hitRatio());
+  }
+
+  /**
+   * Returns the statistics of all metadata caches by the name of the cache.
+   */
+  static Map<String, Object> statistics() {
+    final Map<String, Object> statistics = new TreeMap<>();
+    for (MetadataCache<?> cache : caches) {
+      final Map<String, Object> s = new LinkedHashMap<>();
+      s.put("size", cache.entries.size());
+      s.put("hits", cache.hits.get());
+      s.put("misses", cache.misses.get());
+      s.put("refreshes", cache.refreshes.get());
+      s.put("hitRatio", cache.hitRatio());
+      statistics.put(cache.name, s);
+    }
+    return statistics;
+  }
+
+  interface Loader<V> {
+
+    V load() throws SQLException;
+  }
+
+  private static class Entry<V> {
+
+    final V value;
+    final long expiry;
+    final AtomicBoolean refreshing = new AtomicBoolean();
+
+    Entry(V value, long expiry) {
+      this.value = value;
+      this.expiry = expiry;
+    }
+  }
+}
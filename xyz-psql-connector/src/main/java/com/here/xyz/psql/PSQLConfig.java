@@ -25,9 +25,11 @@ import com.google.common.hash.Hashing;
 import com.here.xyz.connectors.SimulatedContext;
 import com.here.xyz.events.Event;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -51,10 +53,27 @@ class PSQLConfig {
   protected static final String PSQL_PORT = "PSQL_PORT";
 
   /**
-   * A constant that is normally used as environment variable name for the host.
+   * A constant that is normally used as environment variable name for the read replica hosts. Multiple replicas are separated by
+   * commas, each host may be followed by a port and a weight (e.g. "replica1:5433@2,replica2@3,replica3"). The port defaults to the
+   * port of the primary, the weight to 1.
    */
   private static final String PSQL_REPLICA_HOST = "PSQL_REPLICA_HOST";
 
+  /**
+   * The strategy to select a read replica, either "round-robin" (weighted, the default) or "least-outstanding".
+   */
+  private final static String PSQL_REPLICA_BALANCING = "PSQL_REPLICA_BALANCING";
+
+  /**
+   * The maximal replication lag in milliseconds, from which on a read replica is taken out of rotation.
+   */
+  private final static String PSQL_REPLICA_MAX_LAG = "PSQL_REPLICA_MAX_LAG";
+
+  /**
+   * The interval in milliseconds, in which the replication lag of the read replicas is probed.
+   */
+  private final static String PSQL_REPLICA_LAG_CHECK_INTERVAL = "PSQL_REPLICA_LAG_CHECK_INTERVAL";
+
   /**
    * A constant that is normally used as environment variable name for the database.
    */
@@ -84,6 +103,31 @@ class PSQLConfig {
    */
   private final static String PSQL_MAX_CONN = "PSQL_MAX_CONN";
 
+  /**
+   * The expected amount of rows (e.g. the limit of a search), from which on a query result is fetched through a server-side cursor.
+   */
+  private final static String PSQL_CURSOR_THRESHOLD = "PSQL_CURSOR_THRESHOLD";
+
+  /**
+   * The amount of rows to be fetched at once, when a query result is fetched through a server-side cursor.
+   */
+  private final static String PSQL_FETCH_SIZE = "PSQL_FETCH_SIZE";
+
+  /**
+   * The amount of prepared statements, which are cached per connection.
+   */
+  private final static String PSQL_STATEMENT_CACHE_SIZE = "PSQL_STATEMENT_CACHE_SIZE";
+
+  /**
+   * The amount of features, which are deleted per transaction by a DeleteFeaturesByTagEvent.
+   */
+  private final static String PSQL_DELETE_BATCH_SIZE = "PSQL_DELETE_BATCH_SIZE";
+
+  /**
+   * The maximal amount of features per second, which are deleted by a DeleteFeaturesByTagEvent. Zero means unthrottled.
+   */
+  private final static String PSQL_DELETE_RATE = "PSQL_DELETE_RATE";
+
   /**
    * The encrypted connector parameters.
    */
@@ -92,6 +136,7 @@ class PSQLConfig {
   private Context context;
   private boolean propertySearch;
   private boolean autoIndexing;
+  private boolean indexAdvisor;
 
   private Map<String, Object> readECPS(String ecps) {
     if (DEFAULT_ECPS.equals(ecps)) {
@@ -143,6 +188,71 @@ class PSQLConfig {
     }
   }
 
+  /**
+   * Returns the expected amount of rows, from which on a query result is fetched incrementally through a server-side cursor.
+   *
+   * @return the expected amount of rows, from which on a cursor is used.
+   */
+  protected int cursorThreshold() {
+    try {
+      return Integer.parseInt(readEnv(PSQL_CURSOR_THRESHOLD), 10);
+    } catch (Exception e) {
+      return 5_000;
+    }
+  }
+
+  /**
+   * Returns the amount of rows to be fetched at once through a server-side cursor.
+   *
+   * @return the amount of rows to be fetched at once.
+   */
+  protected int fetchSize() {
+    try {
+      return Integer.parseInt(readEnv(PSQL_FETCH_SIZE), 10);
+    } catch (Exception e) {
+      return 1_000;
+    }
+  }
+
+  /**
+   * Returns the amount of prepared statements, which are cached per connection.
+   *
+   * @return the amount of prepared statements cached per connection.
+   */
+  protected int statementCacheSize() {
+    try {
+      return Integer.parseInt(readEnv(PSQL_STATEMENT_CACHE_SIZE), 10);
+    } catch (Exception e) {
+      return 64;
+    }
+  }
+
+  /**
+   * Returns the amount of features, which are deleted per transaction by a DeleteFeaturesByTagEvent.
+   *
+   * @return the amount of features deleted per transaction.
+   */
+  protected int deleteBatchSize() {
+    try {
+      return Integer.parseInt(readEnv(PSQL_DELETE_BATCH_SIZE), 10);
+    } catch (Exception e) {
+      return 5_000;
+    }
+  }
+
+  /**
+   * Returns the maximal amount of features per second, which are deleted by a DeleteFeaturesByTagEvent.
+   *
+   * @return the maximal amount of deleted features per second or 0, if the deletion is not throttled.
+   */
+  protected int deleteRate() {
+    try {
+      return Integer.parseInt(readEnv(PSQL_DELETE_RATE), 10);
+    } catch (Exception e) {
+      return 0;
+    }
+  }
+
   /**
    * Returns the host of the PostgreSQL service.
    *
@@ -157,12 +267,84 @@ class PSQLConfig {
   }
 
   /**
-   * Returns the host of the PostgreSQL service.
+   * Returns the read replicas together with their ports and weights.
    *
-   * @return the host of the PostgreSQL service.
+   * @return the read replicas, empty if there is no read replica.
    */
-  protected String replica() {
-    return readEnv(PSQL_REPLICA_HOST);
+  protected List<ReplicaHost> replicas() {
+    final List<ReplicaHost> replicas = new ArrayList<>();
+    final String hosts = readEnv(PSQL_REPLICA_HOST);
+    if (hosts == null) {
+      return replicas;
+    }
+
+    for (String host : hosts.split(",")) {
+      host = host.trim();
+      if (host.isEmpty()) {
+        continue;
+      }
+      int weight = 1;
+      final int w = host.lastIndexOf('@');
+      if (w > 0) {
+        try {
+          weight = Math.max(1, Integer.parseInt(host.substring(w + 1), 10));
+        } catch (NumberFormatException ignored) {
+        }
+        host = host.substring(0, w);
+      }
+      int port = port();
+      final int p = host.lastIndexOf(':');
+      if (p > 0) {
+        try {
+          port = Integer.parseInt(host.substring(p + 1), 10);
+          host = host.substring(0, p);
+        } catch (NumberFormatException ignored) {
+        }
+      }
+      replicas.add(new ReplicaHost(host, port, weight));
+    }
+    return replicas;
+  }
+
+  /**
+   * A read replica as configured in the environment variable PSQL_REPLICA_HOST.
+   */
+  protected static class ReplicaHost {
+
+    final String host;
+    final int port;
+    final int weight;
+
+    ReplicaHost(String host, int port, int weight) {
+      this.host = host;
+      this.port = port;
+      this.weight = weight;
+    }
+
+    @Override
+    public String toString() {
+      return host + ":" + port;
+    }
+  }
+
+  protected boolean leastOutstandingReplica() {
+    return "least-outstanding".equals(readEnv(PSQL_REPLICA_BALANCING));
+  }
+
+  protected long replicaMaxLag() {
+    try {
+      return Long.parseLong(readEnv(PSQL_REPLICA_MAX_LAG), 10);
+    } catch (Exception e) {
+      return 10_000;
+    }
+  }
+
+  protected long replicaLagCheckInterval() {
+    try {
+      return Long.parseLong(readEnv(PSQL_REPLICA_LAG_CHECK_INTERVAL), 10);
+    } catch (Exception e) {
+      return 5_000;
+    }
   }
 
   /**
@@ -239,6 +421,8 @@ class PSQLConfig {
         this.autoIndexing = true;
       if(event.getConnectorParams().get("propertySearch") == Boolean.TRUE)
         this.propertySearch = true;
+      if(event.getConnectorParams().get("indexAdvisor") == Boolean.TRUE)
+        this.indexAdvisor = true;
     }
   }
 
@@ -300,6 +484,10 @@ class PSQLConfig {
     return autoIndexing;
   }
 
+  protected boolean isIndexAdvisorActivated(){
+    return indexAdvisor;
+  }
+
   protected Integer onDemandLimit(){
     if(connectorParams != null && connectorParams.get("onDemandIdxLimit") != null)
       return  (Integer) connectorParams.get("onDemandIdxLimit");
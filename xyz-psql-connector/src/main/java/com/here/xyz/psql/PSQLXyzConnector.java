@@ -27,6 +27,7 @@ import com.here.xyz.models.geojson.implementation.Feature;
 import com.here.xyz.models.geojson.implementation.FeatureCollection;
 import com.here.xyz.psql.factory.H3SQL;
 import com.here.xyz.psql.factory.QuadbinSQL;
+import com.here.xyz.psql.factory.SpatialLayoutSQL;
 import com.here.xyz.psql.factory.TweaksSQL;
 import com.here.xyz.responses.*;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -36,6 +37,8 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -98,7 +101,7 @@ public class PSQLXyzConnector extends DatabaseHandler {
 
           case TweaksSQL.SIMPLIFICATION:
 
-            FeatureCollection fcollection = executeQueryWithRetry(SQLQueryBuilder.buildSimplificationTweaksQuery(event, bbox, event.getTweakParams(), dataSource));
+            FeatureCollection fcollection = executeQueryWithRetry(SQLQueryBuilder.buildSimplificationTweaksQuery(event, bbox, event.getTweakParams(), simplificationLods(), dataSource));
             fcollection.setPartial(true);
             return fcollection;
 
@@ -107,26 +110,33 @@ public class PSQLXyzConnector extends DatabaseHandler {
       }
 
       if (H3SQL.HEXBIN.equalsIgnoreCase(clusteringType)) {
-        return executeQueryWithRetry(SQLQueryBuilder.buildHexbinClusteringQuery(event, bbox, clusteringParams,dataSource));
+        return executeQueryWithRetry(SQLQueryBuilder.buildHexbinClusteringQuery(event, bbox, clusteringParams, h3AggregateResolutions(), dataSource));
       } else if ( QuadbinSQL.QUAD.equalsIgnoreCase(clusteringType)) {
         /* Check if input is valid */
         final int resolution = clusteringParams.get("resolution") != null ? (int) clusteringParams.get("resolution") : 0;
         final String countMode = clusteringParams.get("countmode") != null ? (String) clusteringParams.get("countmode") : null;
 
         QuadbinSQL.checkQuadbinInput(countMode, resolution, event, streamId, this);
-        return executeQueryWithRetry(SQLQueryBuilder.buildQuadbinClusteringQuery(event, bbox, resolution, countMode, config));
+        return executeQueryWithRetry(SQLQueryBuilder.buildQuadbinClusteringQuery(event, bbox, resolution, countMode, quadCountPyramid(), config));
       }
 
       final boolean isBigQuery = (bbox.widthInDegree(false) >= (360d / 4d) || (bbox.heightInDegree() >= (180d / 4d)));
 
       if(isBigQuery){
         /* Check if Properties are indexed */
-        if (!Capabilities.canSearchFor(event.getSpace(), event.getPropertiesQuery(), this)) {
+        if (!Capabilities.canSearchWithContainment(event, event.getPropertiesQuery(), this)
+            && !Capabilities.canSearchFor(event.getSpace(), event.getPropertiesQuery(), this)) {
+          recordPropertySearch(event.getPropertiesQuery(), false);
           throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
                   "Invalid request parameters. Search for the provided properties is not supported for this space.");
         }
       }
-      return executeQueryWithRetry(SQLQueryBuilder.buildGetFeaturesByBBoxQuery(event, isBigQuery, dataSource));
+      final FeatureCollection collection = executeQueryWithRetry(SQLQueryBuilder.buildGetFeaturesByBBoxQuery(event, isBigQuery, dataSource));
+      if (isBigQuery) {
+        // Small bounding boxes are served by the spatial index
+        recordPropertySearch(event.getPropertiesQuery(), true);
+      }
+      return collection;
     }catch (SQLException e){
       return checkSQLException(e, config.table(event));
     }
@@ -208,6 +218,17 @@ public class PSQLXyzConnector extends DatabaseHandler {
         }
       }
 
+      // Upserts are finalized like inserts, the storage decides whether they become an insert or an update
+      final List<Feature> upserts = event.getUpsertFeatures();
+      if (upserts != null) {
+        for (Feature feature : upserts) {
+          if (feature.getId() == null) {
+            feature.setId(RandomStringUtils.randomAlphanumeric(16));
+          }
+          Feature.finalizeFeature(feature, event.getSpace(), addUUID);
+        }
+      }
+
       final List<Feature> updates = event.getUpdateFeatures();
       if (updates != null) {
         for (final Feature feature : updates) {
@@ -221,9 +242,110 @@ public class PSQLXyzConnector extends DatabaseHandler {
     }
   }
 
+  /**
+   * Returns the H3 resolutions, for which precomputed hexbin aggregates should be maintained, as configured by the storage parameter
+   * "h3AggregateResolutions".
+   */
+  private List<Integer> getH3AggregateResolutions(ModifySpaceEvent event) throws ErrorResponseException {
+    final List<Integer> resolutions = new ArrayList<>();
+    if (event.getParams() == null || !(event.getParams().get(H3SQL.HEXBIN_AGGREGATE_RESOLUTIONS) instanceof List)) {
+      return resolutions;
+    }
+
+    for (Object resolution : (List<?>) event.getParams().get(H3SQL.HEXBIN_AGGREGATE_RESOLUTIONS)) {
+      if (!(resolution instanceof Integer) || (Integer) resolution < 0 || (Integer) resolution > 15) {
+        throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+            "Invalid value of " + H3SQL.HEXBIN_AGGREGATE_RESOLUTIONS + " [" + resolution + "] - Only H3 resolutions between 0 and 15 are allowed!");
+      }
+      if (!resolutions.contains(resolution)) {
+        resolutions.add((Integer) resolution);
+      }
+    }
+    return resolutions;
+  }
+
+  /**
+   * Returns the configuration of the quadkey count pyramid, as defined by the storage parameters "quadCountMaxLevel" and
+   * "quadCountByTag".
+   */
+  private QuadbinSQL.CountPyramid getQuadCountPyramid(ModifySpaceEvent event) throws ErrorResponseException {
+    if (event.getParams() == null || event.getParams().get(QuadbinSQL.COUNT_PYRAMID_MAX_LEVEL) == null) {
+      return QuadbinSQL.CountPyramid.NONE;
+    }
+
+    final Object maxLevel = event.getParams().get(QuadbinSQL.COUNT_PYRAMID_MAX_LEVEL);
+    if (!(maxLevel instanceof Integer) || (Integer) maxLevel < 0 || (Integer) maxLevel > QuadbinSQL.COUNT_PYRAMID_LIMIT) {
+      throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+          "Invalid value of " + QuadbinSQL.COUNT_PYRAMID_MAX_LEVEL + " [" + maxLevel + "] - Only levels between 0 and "
+              + QuadbinSQL.COUNT_PYRAMID_LIMIT + " are allowed!");
+    }
+    return new QuadbinSQL.CountPyramid((Integer) maxLevel, event.getParams().get(QuadbinSQL.COUNT_PYRAMID_BY_TAG) == Boolean.TRUE);
+  }
+
+  /**
+   * Returns the simplifications to be precomputed, as configured by the storage parameter "simplificationLods". Each entry has the form
+   * "algorithm:strength", e.g. "simplifiedkeeptopology:med".
+   *
+   * @return the simplification expressions by the key of the simplification.
+   */
+  private Map<String, String> getSimplificationLods(ModifySpaceEvent event) throws ErrorResponseException {
+    final Map<String, String> lods = new LinkedHashMap<>();
+    if (event.getParams() == null || !(event.getParams().get(TweaksSQL.SIMPLIFICATION_LODS) instanceof List)) {
+      return lods;
+    }
+
+    for (Object lod : (List<?>) event.getParams().get(TweaksSQL.SIMPLIFICATION_LODS)) {
+      final String[] parts = String.valueOf(lod).split(":");
+      final String function = TweaksSQL.simplificationFunction(parts[0]);
+      if (parts.length != 2 || function == null) {
+        throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+            "Invalid value of " + TweaksSQL.SIMPLIFICATION_LODS + " [" + lod + "] - Expected is algorithm:strength, available algorithms are: ["
+                + TweaksSQL.SIMPLIFICATION_ALGORITHM_A01 + "," + TweaksSQL.SIMPLIFICATION_ALGORITHM_A02 + "," + TweaksSQL.SIMPLIFICATION_ALGORITHM_A03 + "]!");
+      }
+
+      Object strength = parts[1];
+      try {
+        strength = Integer.parseInt(parts[1]);
+      } catch (NumberFormatException ignored) {
+      }
+      final int s = TweaksSQL.simplificationStrength(strength);
+      lods.put(TweaksSQL.lodKey(parts[0], s), function + "(geo, " + TweaksSQL.simplificationTolerance(parts[0], s) + ")");
+    }
+    return lods;
+  }
+
+  /**
+   * Validates the amount of hash partitions, as defined by the storage parameter "partitions". The layout of a table can't be changed
+   * once it exists.
+   */
+  private void checkPartitions(ModifySpaceEvent event) throws Exception {
+    if (event.getParams() == null || event.getParams().get(PARTITIONS) == null) {
+      return;
+    }
+
+    final int partitions = requestedPartitions(event);
+    if (partitions == 0) {
+      throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+          "Invalid value of " + PARTITIONS + " [" + event.getParams().get(PARTITIONS) + "] - Only values between 2 and " + MAX_PARTITIONS
+              + " are allowed!");
+    }
+    if (ModifySpaceEvent.Operation.UPDATE == event.getOperation() && hasTable() && partitionCount() != partitions) {
+      throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+          "The " + PARTITIONS + " of an existing space can not be changed.");
+    }
+  }
+
   @Override
   protected XyzResponse processModifySpaceEvent(ModifySpaceEvent event) throws Exception {
     try{
+      if (ModifySpaceEvent.Operation.UPDATE == event.getOperation()
+              || ModifySpaceEvent.Operation.CREATE == event.getOperation()) {
+        checkPartitions(event);
+        if (requestedPartitions(event) > 0) {
+          ensureSpace();
+        }
+      }
+
       if(event.getSpaceDefinition() != null && event.getSpaceDefinition().isEnableUUID()){
         Integer maxVersionCount = null;
 
@@ -238,6 +360,62 @@ public class PSQLXyzConnector extends DatabaseHandler {
         }
       }
 
+      if (ModifySpaceEvent.Operation.UPDATE == event.getOperation()
+              || ModifySpaceEvent.Operation.CREATE == event.getOperation()) {
+        final List<Integer> h3Resolutions = getH3AggregateResolutions(event);
+        if (!h3Resolutions.isEmpty()) {
+          ensureSpace();
+          ensureH3Aggregates(h3Resolutions);
+        } else if (ModifySpaceEvent.Operation.UPDATE == event.getOperation() && !h3AggregateResolutions().isEmpty()) {
+          ensureH3Aggregates(null);
+        }
+
+        final QuadbinSQL.CountPyramid countPyramid = getQuadCountPyramid(event);
+        if (countPyramid.exists()) {
+          ensureSpace();
+          ensureQuadCountPyramid(countPyramid);
+        } else if (ModifySpaceEvent.Operation.UPDATE == event.getOperation() && quadCountPyramid().exists()) {
+          ensureQuadCountPyramid(countPyramid);
+        }
+
+        if (event.getParams() != null && event.getParams().get(Capabilities.CONTAINMENT_INDEX) == Boolean.TRUE) {
+          if (!config.isPropertySearchActivated()) {
+            throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+                Capabilities.CONTAINMENT_INDEX + " requires a connector with propertySearch, which maintains the indexes!");
+          }
+          ensureSpace();
+          ensureContainmentIndex(true);
+        } else if (ModifySpaceEvent.Operation.UPDATE == event.getOperation() && config.isPropertySearchActivated() && hasTable()) {
+          ensureContainmentIndex(false);
+        }
+
+        if (event.getParams() != null && event.getParams().get(TweaksSQL.SAMPLING_INDEXES) == Boolean.TRUE) {
+          if (!config.isPropertySearchActivated()) {
+            throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+                TweaksSQL.SAMPLING_INDEXES + " requires a connector with propertySearch, which maintains the indexes!");
+          }
+          ensureSpace();
+          ensureSamplingIndexes(true);
+        } else if (ModifySpaceEvent.Operation.UPDATE == event.getOperation() && config.isPropertySearchActivated() && hasTable()) {
+          ensureSamplingIndexes(false);
+        }
+
+        if (SpatialLayoutSQL.isSpatialLayout(event)) {
+          ensureSpace();
+          ensureSpatialLayout(true);
+        } else if (ModifySpaceEvent.Operation.UPDATE == event.getOperation() && hasTable()) {
+          ensureSpatialLayout(false);
+        }
+
+        final Map<String, String> lods = getSimplificationLods(event);
+        if (!lods.isEmpty()) {
+          ensureSpace();
+          ensureSimplificationLods(lods);
+        } else if (ModifySpaceEvent.Operation.UPDATE == event.getOperation() && !simplificationLods().isEmpty()) {
+          ensureSimplificationLods(null);
+        }
+      }
+
       if ((ModifySpaceEvent.Operation.UPDATE == event.getOperation()
               || ModifySpaceEvent.Operation.CREATE == event.getOperation())
               && event.getConnectorParams() != null
@@ -281,8 +459,12 @@ public class PSQLXyzConnector extends DatabaseHandler {
 
         if (hasTable) {
           SQLQuery q = new SQLQuery("DROP TABLE IF EXISTS ${schema}.${table};");
-          q.append("DROP TABLE IF EXISTS ${schema}.${hsttable}");
+          q.append("DROP TABLE IF EXISTS ${schema}.${hsttable};");
+          q.append("DROP TABLE IF EXISTS ${schema}.${h3table};");
+          q.append("DROP TABLE IF EXISTS ${schema}.${qktable};");
+          q.append("DROP TABLE IF EXISTS ${schema}.${lodtable}");
           executeUpdateWithRetry(q);
+          invalidateMetadata();
           logger.info("{} - Successfully deleted table for space '{}'", streamId, event.getSpace());
         } else
           logger.info("{} - Table not found '{}'", streamId, event.getSpace());
@@ -312,6 +494,7 @@ public class PSQLXyzConnector extends DatabaseHandler {
       }
 
       if (!Capabilities.canSearchFor(event.getSpace(), event.getPropertiesQuery(), this)) {
+        recordPropertySearch(event.getPropertiesQuery(), false);
         return new ErrorResponse().withStreamId(streamId).withError(XyzError.ILLEGAL_ARGUMENT)
                 .withErrorMessage("Invalid request parameters. Search for the provided properties is not supported for this space.");
       }
@@ -319,6 +502,7 @@ public class PSQLXyzConnector extends DatabaseHandler {
       SQLQuery query = SQLQueryBuilder.buildFeaturesQuery(event, isIterate, hasHandle, hasSearch, start, dataSource) ;
 
       FeatureCollection collection = executeQueryWithRetry(query);
+      recordPropertySearch(event.getPropertiesQuery(), true);
       if (isIterate && hasSearch && collection.getHandle() != null) {
         collection.setHandle("" + (start + event.getLimit()));
       }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+package com.here.xyz.psql;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.sql.DataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Selects the read replica for a request, either by weighted round-robin or by the least amount of outstanding requests (busy
+ * connections). The replication lag of all replicas is probed periodically, replicas which are lagging behind or can't be reached are
+ * taken out of rotation. If no replica is available, the primary is used.
+ */
+class ReplicaBalancer {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  /**
+   * The replication lag in milliseconds, zero if the replica has replayed everything it received.
+   */
+  private static final String LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+      + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+  /**
+   * The maximum time in milliseconds to wait for the first probe when the balancer is started.
+   */
+  private static final long FIRST_PROBE_TIMEOUT_MS = 1_000;
+
+  private static final ScheduledExecutorService probeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+    final Thread thread = new Thread(r, "replica-lag-probe");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+  private final boolean leastOutstanding;
+  private final long maxLagMs;
+
+  private final long lagCheckIntervalMs;
+
+  ReplicaBalancer(boolean leastOutstanding, long maxLagMs, long lagCheckIntervalMs) {
+    this.leastOutstanding = leastOutstanding;
+    this.maxLagMs = maxLagMs;
+    this.lagCheckIntervalMs = lagCheckIntervalMs;
+  }
+
+  void addReplica(String host, int weight, ComboPooledDataSource dataSource) {
+    replicas.add(new Replica(host, weight, dataSource));
+  }
+
+  /**
+   * Starts the lag probing. The replicas are out of rotation until they were probed. The first probe runs immediately and is awaited for
+   * a short time, so that a replica, which is lagging behind or can't be reached, never receives any request. If the first probe takes
+   * longer, the requests are sent to the primary until it is finished.
+   */
+  void start() {
+    final Future<?> firstProbe = probeExecutor.submit(this::probe);
+    probeExecutor.scheduleWithFixedDelay(this::probe, lagCheckIntervalMs, lagCheckIntervalMs, TimeUnit.MILLISECONDS);
+    try {
+      firstProbe.get(FIRST_PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      logger.warn("The first lag probe of the read replicas did not finish within {}ms, the primary is used meanwhile.",
+          FIRST_PROBE_TIMEOUT_MS);
+    } catch (ExecutionException e) {
+      logger.warn("The first lag probe of the read replicas failed.", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the data source of the replica to be used for the next request.
+   *
+   * @param primary the data source to be used, if no replica is available.
+   */
+  DataSource select(DataSource primary) {
+    final Replica selected = leastOutstanding ? selectLeastOutstanding() : selectWeighted();
+    return selected != null ? selected.dataSource : primary;
+  }
+
+  /**
+   * Smooth weighted round-robin, which spreads the requests of a replica evenly instead of sending them in bursts.
+   */
+  private synchronized Replica selectWeighted() {
+    Replica selected = null;
+    int totalWeight = 0;
+    for (Replica replica : replicas) {
+      if (!replica.available) {
+        continue;
+      }
+      replica.currentWeight += replica.weight;
+      totalWeight += replica.weight;
+      if (selected == null || replica.currentWeight > selected.currentWeight) {
+        selected = replica;
+      }
+    }
+    if (selected != null) {
+      selected.currentWeight -= totalWeight;
+    }
+    return selected;
+  }
+
+  private Replica selectLeastOutstanding() {
+    Replica selected = null;
+    double selectedLoad = Double.MAX_VALUE;
+    for (Replica replica : replicas) {
+      if (!replica.available) {
+        continue;
+      }
+      final double load = (double) replica.outstanding() / replica.weight;
+      if (load < selectedLoad) {
+        selected = replica;
+        selectedLoad = load;
+      }
+    }
+    return selected;
+  }
+
+  private void probe() {
+    for (Replica replica : replicas) {
+      boolean available;
+      try (final Connection conn = replica.dataSource.getConnection();
+          final Statement stmt = conn.createStatement();
+          final ResultSet rs = stmt.executeQuery(LAG_QUERY)) {
+        replica.lagMs = rs.next() ? rs.getLong(1) : 0;
+        available = replica.lagMs <= maxLagMs;
+      } catch (SQLException e) {
+        available = false;
+        logger.warn("Lag probe of read replica '{}' failed: {}", replica.host, e.getMessage());
+      } catch (RuntimeException e) {
+        // Never let an exception cancel the scheduled probing.
+        available = false;
+        logger.warn("Lag probe of read replica '{}' failed.", replica.host, e);
+      }
+
+      if (available != replica.available) {
+        logger.info("Read replica '{}' is {} rotation, replication lag: {}ms", replica.host, available ? "put into" : "taken out of",
+            replica.lagMs);
+        replica.available = available;
+      }
+    }
+  }
+
+  private static class Replica {
+
+    final String host;
+    final int weight;
+    final ComboPooledDataSource dataSource;
+    volatile boolean available;
+    volatile long lagMs;
+    int currentWeight;
+
+    Replica(String host, int weight, ComboPooledDataSource dataSource) {
+      this.host = host;
+      this.weight = weight;
+      this.dataSource = dataSource;
+    }
+
+    int outstanding() {
+      try {
+        return dataSource.getNumBusyConnectionsDefaultUser();
+      } catch (SQLException e) {
+        return Integer.MAX_VALUE;
+      }
+    }
+  }
+}
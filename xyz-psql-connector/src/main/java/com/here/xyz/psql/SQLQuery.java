@@ -30,7 +30,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static com.here.xyz.psql.DatabaseHandler.H3_TABLE_SUFFIX;
 import static com.here.xyz.psql.DatabaseHandler.HISTORY_TABLE_SUFFIX;
+import static com.here.xyz.psql.DatabaseHandler.LOD_TABLE_SUFFIX;
+import static com.here.xyz.psql.DatabaseHandler.QK_TABLE_SUFFIX;
 
 /**
  * A struct like object that contains the string for a prepared statement and the respective parameters for replacement.
@@ -44,6 +47,9 @@ public class SQLQuery {
   private static final String VAR_SCHEMA = "${schema}";
   private static final String VAR_TABLE = "${table}";
   private static final String VAR_HST_TABLE = "${hsttable}";
+  private static final String VAR_H3_TABLE = "${h3table}";
+  private static final String VAR_QK_TABLE = "${qktable}";
+  private static final String VAR_LOD_TABLE = "${lodtable}";
 
   public SQLQuery() {
     this.statement = new StringBuilder();
@@ -174,7 +180,10 @@ public class SQLQuery {
     return query
             .replace(VAR_SCHEMA, sqlQuote(schema))
             .replace(VAR_TABLE, sqlQuote(table))
-            .replace(VAR_HST_TABLE, sqlQuote(table+HISTORY_TABLE_SUFFIX));
+            .replace(VAR_HST_TABLE, sqlQuote(table+HISTORY_TABLE_SUFFIX))
+            .replace(VAR_H3_TABLE, sqlQuote(table+H3_TABLE_SUFFIX))
+            .replace(VAR_QK_TABLE, sqlQuote(table+QK_TABLE_SUFFIX))
+            .replace(VAR_LOD_TABLE, sqlQuote(table+LOD_TABLE_SUFFIX));
   }
 
   protected static String replaceVars(String query, Map<String, String> replacements, String schema, String table) {
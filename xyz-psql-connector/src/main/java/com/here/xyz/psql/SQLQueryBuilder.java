@@ -18,6 +18,8 @@
  */
 package com.here.xyz.psql;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.here.xyz.XyzSerializable;
 import com.here.xyz.events.*;
 import com.here.xyz.models.geojson.WebMercatorTile;
 import com.here.xyz.models.geojson.coordinates.BBox;
@@ -30,6 +32,7 @@ import com.here.xyz.psql.factory.TweaksSQL;
 import javax.sql.DataSource;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class SQLQueryBuilder {
     private static final long GEOMETRY_DECIMAL_DIGITS = 8;
@@ -95,7 +98,7 @@ public class SQLQueryBuilder {
             query = new SQLQuery("SELECT CASE WHEN reltuples < 10000");
             query.append("THEN (SELECT count(*) FROM ${schema}.${table})");
             query.append("ELSE reltuples END AS count");
-            query.append("FROM pg_class WHERE oid =?::regclass", schemaTable);
+            query.append("FROM xyz_reltuples(?::regclass) AS reltuples", schemaTable);
         }
         return query;
     }
@@ -103,7 +106,7 @@ public class SQLQueryBuilder {
     /***************************************** CLUSTERING ******************************************************/
     public static SQLQuery buildHexbinClusteringQuery(
             GetFeaturesByBBoxEvent event, BBox bbox,
-            Map<String, Object> clusteringParams, DataSource dataSource) throws Exception {
+            Map<String, Object> clusteringParams, Set<Integer> h3Aggregates, DataSource dataSource) throws Exception {
 
         int zLevel = (event instanceof GetFeaturesByTileEvent ? ((GetFeaturesByTileEvent) event).getLevel() : H3SQL.bbox2zoom(bbox)),
                 maxResForLevel = H3SQL.zoom2resolution(zLevel),
@@ -114,29 +117,33 @@ public class SQLQueryBuilder {
         String statisticalProperty = (String) clusteringParams.get(H3SQL.HEXBIN_PROPERTY);
         boolean statisticalPropertyProvided = (statisticalProperty != null && statisticalProperty.length() > 0),
                 h3cflip = (clusteringParams.get(H3SQL.HEXBIN_POINTMODE) == Boolean.TRUE);
-               /** todo: replace format %.14f with parameterized version*/
-        final String expBboxSql = String
-                .format("st_envelope( st_buffer( ST_MakeEnvelope(%.14f,%.14f,%.14f,%.14f, 4326)::geography, ( 2.5 * edgeLengthM( %d )) )::geometry )",
-                        bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat(), h3res);
+        /* The bbox is bound as parameters, only the resolution and level (a small, fixed set of values) remain in the statement text. */
+        final SQLQuery expBboxSql = new SQLQuery("st_envelope( st_buffer( ST_MakeEnvelope(?, ?, ?, ?, 4326)::geography, ( 2.5 * edgeLengthM( " + h3res + " )) )::geometry )",
+                bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
 
         /*clippedGeo - passed bbox is extended by "margin" on service level */
-        String clippedGeo = (!event.getClip() ? "geo" : String
-                .format("ST_Intersection(geo,ST_MakeEnvelope(%.14f,%.14f,%.14f,%.14f,4326) )", bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat())),
-                fid = (!event.getClip() ? "h3" : String.format("h3 || %f || %f", bbox.minLon(), bbox.minLat())),
-                filterEmptyGeo = (!event.getClip() ? "" : String.format(" and not st_isempty( %s ) ", clippedGeo));
+        final SQLQuery clippedGeo = (!event.getClip() ? new SQLQuery("geo") :
+                new SQLQuery("ST_Intersection(geo,ST_MakeEnvelope(?, ?, ?, ?, 4326) )", bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat())),
+                fid = (!event.getClip() ? new SQLQuery("h3") : new SQLQuery("h3 || ? || ?", String.format("%f", bbox.minLon()), String.format("%f", bbox.minLat())));
 
         final SQLQuery searchQuery = generateSearchQuery(event, dataSource);
 
+        /* The precomputed aggregates only contain the feature count of the cells, so they can't be used for statistics or filtered requests. */
+        final boolean useAggregates = h3Aggregates.contains(h3res) && !statisticalPropertyProvided && searchQuery == null;
+
         String aggField = (statisticalPropertyProvided ? "jsonb_set('{}'::jsonb, ? , agg::jsonb)::json" : "agg");
 
         final SQLQuery query = new SQLQuery(String.format(H3SQL.h3sqlBegin, h3res,
                 !h3cflip ? "st_centroid(geo)" : "geo",
-                h3cflip ? "st_centroid(geo)" : clippedGeo,
+                h3cflip ? "st_centroid(geo)" : clippedGeo.text(),
                 statisticalPropertyProvided ? ", min, max, sum, avg, median" : "",
                 zLevel,
                 !h3cflip ? "centroid" : "hexagon",
                 aggField,
-                fid));
+                fid.text()));
+
+        /* Parameters in the order of their appearance within h3sqlBegin: id (fid), aggregation, geojson (clippedGeo) */
+        query.addParameters(fid.parameters().toArray());
 
         if (statisticalPropertyProvided) {
             ArrayList<String> jpath = new ArrayList<>();
@@ -144,8 +151,23 @@ public class SQLQueryBuilder {
             query.addParameter(SQLQuery.createSQLArray(jpath.toArray(new String[]{}), "text", dataSource));
         }
 
+        if (!h3cflip) {
+            query.addParameters(clippedGeo.parameters().toArray());
+        }
+
         query.append(expBboxSql);
 
+        if (useAggregates) {
+            query.append(String.format(H3SQL.h3sqlAggregateMid, h3res));
+            query.append(expBboxSql);
+            query.append(String.format(H3SQL.h3sqlAggregateEnd, !event.getClip() ? "" : " and not st_isempty( " + clippedGeo.text() + " ) "));
+            if (event.getClip()) {
+                query.addParameters(clippedGeo.parameters().toArray());
+            }
+            query.append("LIMIT ?", event.getLimit());
+            return query;
+        }
+
         if (!statisticalPropertyProvided) {
             query.append(new SQLQuery(String.format(H3SQL.h3sqlMid, h3res, "(0.0)::numeric", zLevel, H3SQL.pxSize)));
         } else {
@@ -170,7 +192,12 @@ public class SQLQueryBuilder {
             query.append(searchQuery);
         }
 
-        query.append(String.format(H3SQL.h3sqlEnd, filterEmptyGeo));
+        if (!event.getClip()) {
+            query.append(String.format(H3SQL.h3sqlEnd, ""));
+        } else {
+            query.append(String.format(H3SQL.h3sqlEnd, " and not st_isempty( " + clippedGeo.text() + " ) "));
+            query.addParameters(clippedGeo.parameters().toArray());
+        }
         query.append("LIMIT ?", event.getLimit());
 
         return query;
@@ -178,7 +205,7 @@ public class SQLQueryBuilder {
 
     public static SQLQuery buildQuadbinClusteringQuery(GetFeaturesByBBoxEvent event,
                                                           BBox bbox, int resolution, String countMode,
-                                                          PSQLConfig config) {
+                                                          QuadbinSQL.CountPyramid countPyramid, PSQLConfig config) {
         /* Quadkey calc */
         final int lev = WebMercatorTile.getZoomFromBBOX(bbox);
         double lon2 = bbox.minLon() + ((bbox.maxLon() - bbox.minLon()) / 2);
@@ -186,22 +213,24 @@ public class SQLQueryBuilder {
 
         final WebMercatorTile tile = WebMercatorTile.getTileFromLatLonLev(lat2, lon2, lev);
 
-        SQLQuery propQuery;
-        String propQuerySQL = null;
+        SQLQuery propQuery = null;
         final PropertiesQuery propertiesQuery = event.getPropertiesQuery();
 
-
         if (propertiesQuery != null) {
             propQuery = generatePropertiesQuery(propertiesQuery);
+        }
 
-            if (propQuery != null) {
-                propQuerySQL = propQuery.text();
-                for (Object param : propQuery.parameters()) {
-                    propQuerySQL = propQuerySQL.replaceFirst("\\?", "'" + param + "'");
-                }
-            }
+        /* The pyramid counts every feature once by its reference point, so its counts are estimated. It is used for the estimated and
+        the mixed count mode, but not for property filtered requests. Like for the other count modes, tags are ignored unless the pyramid
+        counts per tag. */
+        if (propQuery == null && QuadbinSQL.acceptsPyramidCounts(countMode) && countPyramid.exists()
+                && tile.level + resolution <= countPyramid.maxLevel) {
+            final TagsQuery tags = event.getTags();
+            final String tag = (countPyramid.byTag && tags != null && tags.size() == 1 && tags.get(0).size() == 1 && !tags.containsWildcard())
+                    ? tags.get(0).get(0) : "";
+            return QuadbinSQL.generateQuadbinPyramidSQL(config.schema(), config.table(event), resolution, tag, tile);
         }
-        return QuadbinSQL.generateQuadbinClusteringSQL(config.schema(), config.table(event), resolution, countMode, propQuerySQL, tile);
+        return QuadbinSQL.generateQuadbinClusteringSQL(config.schema(), config.table(event), resolution, countMode, propQuery, tile);
     }
     /***************************************** CLUSTERING END **************************************************/
 
@@ -235,78 +264,61 @@ public class SQLQueryBuilder {
      } 
 
 
-     final String twqry = String.format(String.format("ST_Intersects(geo, ST_MakeEnvelope(%%.%1$df,%%.%1$df,%%.%1$df,%%.%1$df, 4326) ) and %%s", 14 /*GEOMETRY_DECIMAL_DIGITS*/), bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat(), TweaksSQL.strengthSql(strength,bDistribution) );
+     final SQLQuery tweakQuery = new SQLQuery("ST_Intersects(geo, ST_MakeEnvelope(?, ?, ?, ?, 4326) ) and", bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
+     tweakQuery.append(TweaksSQL.strengthSql(strength,bDistribution));
 
      final SQLQuery searchQuery = generateSearchQuery(event,dataSource);
-     final SQLQuery tweakQuery = new SQLQuery(twqry);
 
      return generateCombinedQuery(event, tweakQuery, searchQuery , dataSource);
 	}
 
-    public static SQLQuery buildSimplificationTweaksQuery(GetFeaturesByBBoxEvent event, BBox bbox, Map tweakParams, DataSource dataSource) throws SQLException 
+    public static SQLQuery buildSimplificationTweaksQuery(GetFeaturesByBBoxEvent event, BBox bbox, Map tweakParams, Set<String> lods, DataSource dataSource) throws SQLException 
     {
      int strength = 0;
-     String tweaksGeoSql = "geo";
+     SQLQuery tweaksGeoSql = new SQLQuery("geo");
      boolean bMerge = false;
 
      if( tweakParams != null )
      {
-      if( tweakParams.get(TweaksSQL.SIMPLIFICATION_STRENGTH) instanceof Integer )
-       strength = (int) tweakParams.get(TweaksSQL.SIMPLIFICATION_STRENGTH);
-      else
-       switch((String) tweakParams.get(TweaksSQL.SIMPLIFICATION_STRENGTH) )
-       { case "low"     : strength =  20;  break;
-         case "lowmed"  : strength =  40;  break;
-         case "med"     : strength =  60;  break;
-         case "medhigh" : strength =  80;  break;
-         case "high"    : strength = 100; break;
-         default: strength  = 50; break;
-       }
+      strength = TweaksSQL.simplificationStrength(tweakParams.get(TweaksSQL.SIMPLIFICATION_STRENGTH));
+
+       final String algorithm = (String) tweakParams.get(TweaksSQL.SIMPLIFICATION_ALGORITHM),
+                    simplificationFunction = TweaksSQL.simplificationFunction(algorithm),
+                    lodKey = TweaksSQL.lodKey(algorithm, strength);
+
+       // take the precomputed simplification, if available. It is simplified before clipping.
+       final boolean bLod = simplificationFunction != null && lods.contains(lodKey);
+       final SQLQuery geoSrc = ( !bLod ? new SQLQuery("geo") :
+                                 new SQLQuery("(select l.geo from ${schema}.${lodtable} l where l.i = ${schema}.${table}.i and l.lod = ?)", lodKey) );
+       tweaksGeoSql = geoSrc;
 
        // do clip before simplifications
        if (event.getClip())
-       { String fmt =  String.format(  " case st_within( %%1$s, ST_MakeEnvelope(%%2$.%1$df,%%3$.%1$df,%%4$.%1$df,%%5$.%1$df, 4326) ) " 
-                                     + "  when true then %%1$s "
-                                     + "  else ST_Intersection(%%1$s,ST_MakeEnvelope(%%2$.%1$df,%%3$.%1$df,%%4$.%1$df,%%5$.%1$df, 4326))"
-                                     + " end " , 14 /*GEOMETRY_DECIMAL_DIGITS*/ );
-         tweaksGeoSql = String.format( fmt, tweaksGeoSql, bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
-       } 
+       { tweaksGeoSql = wrapGeoSql(" case st_within( ", geoSrc, ", ST_MakeEnvelope(?, ?, ?, ?, 4326) ) ", bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
+         tweaksGeoSql.append("  when true then");
+         tweaksGeoSql.append(geoSrc);
+         tweaksGeoSql.append("  else ST_Intersection(");
+         tweaksGeoSql.append(geoSrc);
+         tweaksGeoSql.append(",ST_MakeEnvelope(?, ?, ?, ?, 4326))", bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
+         tweaksGeoSql.append(" end ");
+       }
 
        //SIMPLIFICATION_ALGORITHM
-       int hint = 0;
-
-       switch((String) tweakParams.get(TweaksSQL.SIMPLIFICATION_ALGORITHM) )
-       { 
-         case TweaksSQL.SIMPLIFICATION_ALGORITHM_A03 : hint++;
-         case TweaksSQL.SIMPLIFICATION_ALGORITHM_A02 :
-         { 
-          double tolerance = ( strength <= 10 ? (1.0 / (11 - strength)) : strength);
-          tweaksGeoSql = String.format("%s(%s, %f)",( hint == 0 ? "ftm_SimplifyPreserveTopology" : "ftm_Simplify"), tweaksGeoSql, tolerance );
-         }
-         break;
-
-         case TweaksSQL.SIMPLIFICATION_ALGORITHM_A01 : 
-         {
-          double tolerance =  (0.0045/100) * strength;
-          tweaksGeoSql = String.format("ST_SnapToGrid(%s, %f)",tweaksGeoSql, tolerance );
-         }  
-         break;
-
-         case TweaksSQL.SIMPLIFICATION_ALGORITHM_A04 : bMerge = true; break;
-
-         default: break;
-       }
+       if( TweaksSQL.SIMPLIFICATION_ALGORITHM_A04.equals(algorithm) )
+        bMerge = true;
+       else if( simplificationFunction != null && !bLod )
+        tweaksGeoSql = wrapGeoSql(simplificationFunction + "(", tweaksGeoSql, ", ?)", TweaksSQL.simplificationTolerance(algorithm, strength) );
 
        //convert to geojson 
-       tweaksGeoSql = String.format("replace(ST_AsGeojson(ST_Force3D( %s ),%d),'nan','0')",tweaksGeoSql,GEOMETRY_DECIMAL_DIGITS);
+       tweaksGeoSql = wrapGeoSql("replace(ST_AsGeojson(ST_Force3D(", tweaksGeoSql, "),"+GEOMETRY_DECIMAL_DIGITS+"),'nan','0')");
      } 
 
-       final String bboxqry = String.format( String.format("ST_Intersects(geo, ST_MakeEnvelope(%%.%1$df,%%.%1$df,%%.%1$df,%%.%1$df, 4326) )", 14 /*GEOMETRY_DECIMAL_DIGITS*/), bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat() );
+       final SQLQuery bboxqry = new SQLQuery("ST_Intersects(geo, ST_MakeEnvelope(?, ?, ?, ?, 4326) )", bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
 
        final SQLQuery searchQuery = generateSearchQuery(event,dataSource);
 
        if( !bMerge )
-        return generateCombinedQuery(event, new SQLQuery(bboxqry), searchQuery , tweaksGeoSql, dataSource);
+        return generateCombinedQuery(event, bboxqry, searchQuery , tweaksGeoSql, dataSource);
 
        // Merge Algorithm - only using low, med, high
        
@@ -315,7 +327,9 @@ public class SQLQueryBuilder {
        if( strength <= 20 ) minGeoHashLenToMerge = 7;
        else if ( strength <= 60 ) minGeoHashLenToMerge = 6;
 
-       SQLQuery query = new SQLQuery( String.format( TweaksSQL.mergeBeginSql, tweaksGeoSql, minGeoHashLenToMerge, bboxqry ) );
+       SQLQuery query = new SQLQuery( String.format( TweaksSQL.mergeBeginSql, tweaksGeoSql.text(), minGeoHashLenToMerge, bboxqry.text() ) );
+       query.addParameters(tweaksGeoSql.parameters().toArray());
+       query.addParameters(bboxqry.parameters().toArray());
 
        if (searchQuery != null) 
        { query.append(" and ");
@@ -327,6 +341,16 @@ public class SQLQueryBuilder {
 
        return query;
 	}
+
+    /**
+     * Wraps the given geometry expression, the parameters are kept in the order of their appearance.
+     */
+    private static SQLQuery wrapGeoSql(String prefix, SQLQuery geoSql, String suffix, Object... suffixParameters) {
+        final SQLQuery query = new SQLQuery(prefix);
+        query.append(geoSql);
+        query.append(suffix, suffixParameters);
+        return query;
+    }
     
     /***************************************** TWEAKS END **************************************************/
 
@@ -363,6 +387,27 @@ public class SQLQueryBuilder {
         return query;
     }
 
+    /**
+     * Deletes the next batch of the features matching the search query in the order of their serial id. The serial ids of the deleted
+     * features are returned, so that the next batch continues after the highest one.
+     */
+    public static SQLQuery buildDeleteFeaturesByTagBatchQuery(boolean includeOldStates, SQLQuery searchQuery, long lastSerial, int batchSize){
+        final SQLQuery query = new SQLQuery("DELETE FROM ${schema}.${table} WHERE i = ANY(ARRAY(SELECT i FROM ${schema}.${table} WHERE i > ?",
+                lastSerial);
+
+        if (searchQuery != null) {
+            query.append("AND (");
+            query.append(searchQuery);
+            query.append(")");
+        }
+        query.append("ORDER BY i LIMIT ?)) RETURNING i", batchSize);
+
+        if (includeOldStates)
+            query.append(", jsondata->'id' as id, replace(ST_AsGeojson(ST_Force3D(geo),"+GEOMETRY_DECIMAL_DIGITS+"),'nan','0') as geometry");
+
+        return query;
+    }
+
     public static SQLQuery buildDeleteFeaturesByTagQuery(boolean includeOldStates, SQLQuery searchQuery){
 
         final SQLQuery query;
@@ -445,8 +490,44 @@ public class SQLQueryBuilder {
                         "$$ ;");
         return query;
     }
+    /**
+     * Requests indexes from the asynchronous index maintenance, which builds them outside of the request ( see
+     * xyz_maintain_idxs_for_space() ). Nothing is changed, if all indexes are requested already.
+     *
+     * @param indexes the definitions of the indexes ( the part after "ON table" ) by their names
+     */
+    public static SQLQuery buildSpecialIndexesRequestQuery(String schema, String table, Map<String, String> indexes) {
+        return new SQLQuery("INSERT INTO " + IDX_STATUS_TABLE + " AS x_s (spaceid, schem, idx_creation_finished, idx_special) "
+                + "VALUES (?, ?, false, ?::jsonb) "
+                + "ON CONFLICT (spaceid) DO UPDATE SET schem = EXCLUDED.schem, "
+                + "idx_special = COALESCE(x_s.idx_special, '{}'::jsonb) || EXCLUDED.idx_special, idx_creation_finished = false "
+                + "WHERE NOT COALESCE(x_s.idx_special, '{}'::jsonb) @> EXCLUDED.idx_special",
+                table, schema, XyzSerializable.serialize(indexes, new TypeReference<Map<String, String>>() {}));
+    }
+
+    /**
+     * Requests the removal of indexes, which were requested through {@link #buildSpecialIndexesRequestQuery(String, String, Map)}, from
+     * the asynchronous index maintenance. Nothing is changed, if none of the indexes was requested.
+     */
+    public static SQLQuery buildSpecialIndexesRemovalQuery(String table, Collection<String> indexNames) {
+        final Map<String, Boolean> removals = new HashMap<>();
+        indexNames.forEach(name -> removals.put(name, false));
+        final String json = XyzSerializable.serialize(removals, new TypeReference<Map<String, Boolean>>() {});
+        return new SQLQuery("UPDATE " + IDX_STATUS_TABLE + " SET idx_special = idx_special || ?::jsonb, idx_creation_finished = false "
+                + "WHERE spaceid = ? AND jsonb_exists_any(idx_special, ARRAY(SELECT jsonb_object_keys(?::jsonb)))",
+                json, table, json);
+    }
+
 /** ###################################################################################### */
     private static SQLQuery generatePropertiesQuery(PropertiesQuery properties) {
+        return generatePropertiesQuery(properties, false);
+    }
+
+    /**
+     * @param useContainment if true, equality filters on properties are translated into containment predicates, which are backed by
+     *     the GIN (jsonb_path_ops) index of the space ( see Capabilities.CONTAINMENT_INDEX ).
+     */
+    private static SQLQuery generatePropertiesQuery(PropertiesQuery properties, boolean useContainment) {
         if (properties == null || properties.size() == 0) {
             return null;
         }
@@ -470,6 +551,9 @@ public class SQLQueryBuilder {
                     if (propertyQuery.getKey().equals("id")) {
                         keyDisjunctionQueries.add(new SQLQuery("jsondata->>'id'" + SQLQuery.getOperation(propertyQuery.getOperation()) + "?::text", v));
                     }
+                    else if (useContainment && isContainmentSearch(propertyQuery, v)) {
+                        keyDisjunctionQueries.add(createContainment(propertyQuery.getKey(), v));
+                    }
                     // The rest are indexed as jsonb
                     else {
                         SQLQuery q = SQLQuery.createKey(propertyQuery.getKey());
@@ -485,6 +569,31 @@ public class SQLQueryBuilder {
         return SQLQuery.join(disjunctionQueries, "OR", false);
     }
 
+    /**
+     * Checks if the property query can be translated into a containment predicate. This is the case for equality filters on scalar values.
+     * As the path of a containment predicate always matches objects, the result is the same as for the extraction comparison.
+     */
+    static boolean isContainmentSearch(PropertyQuery propertyQuery, Object value) {
+        return propertyQuery.getOperation() == PropertyQuery.QueryOperation.EQUALS
+                && propertyQuery.getKey().startsWith("properties.")
+                && (value instanceof String || value instanceof Number || value instanceof Boolean);
+    }
+
+    /**
+     * Creates the predicate jsondata->'properties' @> {"a": {"b": value}} for the key properties.a.b.
+     */
+    private static SQLQuery createContainment(String key, Object value) {
+        final String[] path = key.substring("properties.".length()).split("\\.");
+        final StringBuilder document = new StringBuilder(SQLQuery.getValue(value));
+        for (int i = 0; i < path.length; i++) {
+            document.insert(0, "jsonb_build_object(?::text, ").append(")");
+        }
+
+        final SQLQuery query = new SQLQuery("jsondata->'properties' @> " + document, (Object[]) path);
+        query.addParameter(value);
+        return query;
+    }
+
     private static SQLQuery generateTagsQuery(TagsQuery tags, DataSource dataSource)
             throws SQLException {
         if (tags == null || tags.size() == 0) {
@@ -518,7 +627,7 @@ public class SQLQueryBuilder {
         return query;
     }
 
-    private static SQLQuery generateCombinedQuery(SearchForFeaturesEvent event, SQLQuery indexedQuery, SQLQuery secondaryQuery, String tweaksgeo, DataSource dataSource)
+    private static SQLQuery generateCombinedQuery(SearchForFeaturesEvent event, SQLQuery indexedQuery, SQLQuery secondaryQuery, SQLQuery tweaksgeo, DataSource dataSource)
             throws SQLException {
         final SQLQuery query = new SQLQuery();
 
@@ -531,7 +640,10 @@ public class SQLQueryBuilder {
         query.append(SQLQuery.selectJson(event.getSelection(),dataSource));
 
         if( tweaksgeo != null )
-            query.append(String.format(",%s as twgeo",tweaksgeo));
+        {   query.append(",");
+            query.append(tweaksgeo);
+            query.append("as twgeo");
+        }
         else if (event instanceof GetFeaturesByBBoxEvent) {
             query.append(",");
             query.append(geometrySelectorForEvent((GetFeaturesByBBoxEvent) event));
@@ -586,7 +698,7 @@ public class SQLQueryBuilder {
 
     protected static SQLQuery generateSearchQuery(final QueryEvent event, final DataSource dataSource)
             throws SQLException {
-        final SQLQuery propertiesQuery = generatePropertiesQuery(event.getPropertiesQuery());
+        final SQLQuery propertiesQuery = generatePropertiesQuery(event.getPropertiesQuery(), Capabilities.hasContainmentIndex(event));
         final SQLQuery tagsQuery = generateTagsQuery(event.getTags(),dataSource);
 
         return SQLQuery.join("AND", propertiesQuery, tagsQuery);
@@ -640,6 +752,55 @@ public class SQLQueryBuilder {
         return SQLQuery.replaceVars(updateWithoutGeometryStmtSQL, schema, table);
     }
 
+    /**
+     * Set-based upsert of all features given as parallel arrays (jsondata, hex-encoded WKB geometry, geojson, expected uuid).
+     * An existing feature keeps its createdAt. If UUIDs are handled, the previous uuid becomes the puuid and a conflicting row is only
+     * replaced if no expected uuid was given or it matches the current one. The result contains the id of every written row,
+     * whether it was inserted and the createdAt / puuid values it was written with.
+     * A partitioned table has no unique index ON CONFLICT could infer, there the existing rows are updated and the missing ones inserted
+     * within the same statement. A concurrent insert of the same id fails on the unique index of the partition.
+     */
+    protected static String upsertStmtSQL(final String schema, final String table, final boolean handleUUID, final boolean partitioned){
+        final String newJsondata = partitioned ? "(u.j::jsonb #- '{properties,@ns:com:here:xyz,puuid}')" : "EXCLUDED.jsondata";
+        String jsondata = "jsonb_set("+newJsondata+", '{properties,@ns:com:here:xyz,createdAt}', "+
+                "COALESCE(t.jsondata->'properties'->'@ns:com:here:xyz'->'createdAt', "+newJsondata+"->'properties'->'@ns:com:here:xyz'->'createdAt'))";
+        if(handleUUID) {
+            jsondata = "jsonb_set("+jsondata+", '{properties,@ns:com:here:xyz,puuid}', "+
+                    "COALESCE(t.jsondata->'properties'->'@ns:com:here:xyz'->'uuid', 'null'::jsonb))";
+        }
+        final String written = "(jsondata->'properties'->'@ns:com:here:xyz'->>'createdAt')::bigint, jsondata->'properties'->'@ns:com:here:xyz'->>'puuid'";
+
+        String upsertStmtSQL = "WITH u AS (SELECT * FROM unnest(?::text[], ?::text[], ?::text[], ?::text[]) AS u(j, g, gj, pu)) ";
+
+        if(partitioned) {
+            upsertStmtSQL += ", upd AS (UPDATE ${schema}.${table} AS t SET jsondata = "+jsondata+", "+
+                    "geo = ST_Force3D(ST_GeomFromWKB(decode(u.g,'hex'),4326)), geojson = u.gj::jsonb FROM u "+
+                    "WHERE t.jsondata->>'id' = u.j::jsonb->>'id'";
+            if(handleUUID) {
+                upsertStmtSQL += " AND (u.pu IS NULL OR u.pu = t.jsondata->'properties'->'@ns:com:here:xyz'->>'uuid')";
+            }
+            upsertStmtSQL += " RETURNING t.jsondata), "+
+                    "ins AS (INSERT INTO ${schema}.${table} (jsondata, geo, geojson) "+
+                    "SELECT u.j::jsonb #- '{properties,@ns:com:here:xyz,puuid}', ST_Force3D(ST_GeomFromWKB(decode(u.g,'hex'),4326)), u.gj::jsonb FROM u "+
+                    "WHERE NOT EXISTS (SELECT 1 FROM ${schema}.${table} AS t WHERE t.jsondata->>'id' = u.j::jsonb->>'id') RETURNING jsondata) "+
+                    "SELECT jsondata->>'id', false, "+written+" FROM upd "+
+                    "UNION ALL SELECT jsondata->>'id', true, "+written+" FROM ins";
+            return SQLQuery.replaceVars(upsertStmtSQL, schema, table);
+        }
+
+        upsertStmtSQL += "INSERT INTO ${schema}.${table} AS t (jsondata, geo, geojson) "+
+                "SELECT u.j::jsonb #- '{properties,@ns:com:here:xyz,puuid}', ST_Force3D(ST_GeomFromWKB(decode(u.g,'hex'),4326)), u.gj::jsonb FROM u "+
+                "ON CONFLICT ((jsondata->>'id')) DO UPDATE SET jsondata = "+jsondata+", geo = EXCLUDED.geo, geojson = EXCLUDED.geojson";
+
+        if(handleUUID) {
+            upsertStmtSQL += " WHERE NOT EXISTS (SELECT 1 FROM u WHERE u.pu IS NOT NULL AND u.j::jsonb->>'id' = EXCLUDED.jsondata->>'id'"+
+                    " AND u.pu IS DISTINCT FROM t.jsondata->'properties'->'@ns:com:here:xyz'->>'uuid')";
+        }
+        upsertStmtSQL += " RETURNING jsondata->>'id', (xmax = 0), "+written;
+
+        return SQLQuery.replaceVars(upsertStmtSQL, schema, table);
+    }
+
     protected static String deleteStmtSQL(final String schema, final String table, final boolean handleUUID){
         String deleteStmtSQL = "DELETE FROM ${schema}.${table} WHERE jsondata->>'id' = ?";
         if(handleUUID) {
@@ -670,4 +831,82 @@ public class SQLQueryBuilder {
         return SQLQuery.replaceVars(historyTriggerSQL, schema, table);
     }
 
+    private static final String[] STATEMENT_TRIGGER_OPERATIONS = {"INSERT", "UPDATE", "DELETE", "TRUNCATE"};
+
+    protected static List<String> deleteStatementTriggersSQL(final String schema, final String table, final String name){
+        final List<String> deleteTriggersSQL = new ArrayList<>();
+        for (String operation : STATEMENT_TRIGGER_OPERATIONS) {
+            deleteTriggersSQL.add(SQLQuery.replaceVars("DROP TRIGGER IF EXISTS TR_"+table.replaceAll("-","_")+"_"+name+"_"+operation+" ON ${schema}.${table};",
+                    schema, table));
+        }
+        return deleteTriggersSQL;
+    }
+
+    /**
+     * Creates triggers, which execute the given function once per statement. The changed rows are passed through the transition tables
+     * old_table and new_table.
+     */
+    protected static List<String> addStatementTriggersSQL(final String schema, final String table, final String name,
+                                                          final String function, final String args){
+        return addStatementTriggersSQL(schema, table, name, function, args, STATEMENT_TRIGGER_OPERATIONS);
+    }
+
+    /**
+     * Creates triggers for the given operations, which execute the given function once per statement.
+     */
+    protected static List<String> addStatementTriggersSQL(final String schema, final String table, final String name,
+                                                          final String function, final String args, final String... operations){
+        final Map<String, String> transitionTables = new HashMap<>();
+        transitionTables.put("INSERT", "REFERENCING NEW TABLE AS new_table");
+        transitionTables.put("UPDATE", "REFERENCING OLD TABLE AS old_table NEW TABLE AS new_table");
+        transitionTables.put("DELETE", "REFERENCING OLD TABLE AS old_table");
+        transitionTables.put("TRUNCATE", "");
+
+        final List<String> addTriggersSQL = new ArrayList<>();
+        for (String operation : operations) {
+            addTriggersSQL.add(SQLQuery.replaceVars("CREATE TRIGGER TR_"+table.replaceAll("-","_")+"_"+name+"_"+operation+" " +
+                    "AFTER "+operation+" ON ${schema}.${table} " + transitionTables.get(operation) +
+                    " FOR EACH STATEMENT " +
+                    "EXECUTE PROCEDURE "+function+"("+args+"); ", schema, table));
+        }
+        return addTriggersSQL;
+    }
+
+    /**
+     * Builds the aggregates of the given resolution from the existing features, if the resolution was not aggregated before.
+     */
+    protected static String buildH3AggregateSQL(final String schema, final String table, final int resolution){
+        String h3AggregateSQL = "INSERT INTO ${schema}.${h3table} (h3, res, qty, geo) " +
+                "SELECT h, "+resolution+", count(1), h3ToGeoBoundaryDeg(h)::geometry(Polygon,4326) FROM ( " +
+                "  SELECT coveringDeg(CASE st_geometrytype(geo) WHEN 'ST_Point' THEN geo ELSE st_force3d(st_closestpoint(geo, geo)) END, "+resolution+") AS h " +
+                "  FROM ${schema}.${table} WHERE geo IS NOT NULL AND NOT st_isempty(geo) " +
+                "  AND NOT EXISTS (SELECT 1 FROM ${schema}.${h3table} WHERE res = "+resolution+") " +
+                ") c GROUP BY h";
+        return SQLQuery.replaceVars(h3AggregateSQL, schema, table);
+    }
+
+    /**
+     * Builds the precomputed simplification from the existing features, if it was not built before.
+     */
+    protected static String buildLodSQL(final String schema, final String table, final String lodKey, final String simplificationSQL){
+        String lodSQL = "INSERT INTO ${schema}.${lodtable} (i, lod, geo) " +
+                "SELECT i, '"+lodKey+"', "+simplificationSQL+" FROM ${schema}.${table} WHERE geo IS NOT NULL " +
+                "AND NOT EXISTS (SELECT 1 FROM ${schema}.${lodtable} WHERE lod = '"+lodKey+"')";
+        return SQLQuery.replaceVars(lodSQL, schema, table);
+    }
+
+    /**
+     * Builds the quadkey count pyramid from the existing features.
+     */
+    protected static String buildQuadCountSQL(final String schema, final String table, final int maxLevel, final boolean byTag){
+        String quadCountSQL = "INSERT INTO ${schema}.${qktable} (qk, tag, qty) " +
+                "SELECT left(q.qk, l), t.tag, count(1) FROM ( " +
+                "  SELECT xyz_qk_point2qk(xyz_qk_refpt(geo), "+maxLevel+") AS qk, jsondata " +
+                "  FROM ${schema}.${table} WHERE geo IS NOT NULL AND NOT st_isempty(geo) " +
+                ") q, generate_series(0, "+maxLevel+") l, LATERAL (SELECT ''::text AS tag " +
+                (byTag ? "UNION ALL SELECT jsonb_array_elements_text(q.jsondata->'properties'->'@ns:com:here:xyz'->'tags') " : "") +
+                ") t GROUP BY 1, 2";
+        return SQLQuery.replaceVars(quadCountSQL, schema, table);
+    }
+
 }
\ No newline at end of file
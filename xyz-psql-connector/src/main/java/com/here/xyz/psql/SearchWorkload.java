@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+package com.here.xyz.psql;
+
+import com.here.xyz.events.PropertiesQuery;
+import com.here.xyz.events.PropertyQuery;
+import com.here.xyz.events.PropertyQuery.QueryOperation;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * A lightweight histogram of the property keys and operators, which were used to search the spaces of one database. The histogram is
+ * filled by the handlers and periodically drained by the {@link IndexAdvisor}.
+ */
+class SearchWorkload {
+
+  /**
+   * The maximal amount of spaces and of keys per space, which are tracked between two advisor runs. Further ones are ignored.
+   */
+  static final int MAX_SPACES = 1_000;
+  static final int MAX_KEYS_PER_SPACE = 32;
+
+  private static final String PROPERTIES_PREFIX = "properties.";
+
+  private final Map<String, Map<String, Usage>> spaces = new ConcurrentHashMap<>();
+
+  /**
+   * Records a search on the table.
+   *
+   * @param table the table of the space.
+   * @param query the properties query of the search.
+   * @param rows the amount of returned rows, or a negative value if the search was not executed (e.g. because it was not supported).
+   * @param containment true, if equality filters are served by the containment index of the space and should not be recorded.
+   */
+  void record(String table, PropertiesQuery query, long rows, boolean containment) {
+    if (table == null || query == null) {
+      return;
+    }
+
+    final Map<String, Usage> keys = spaces.size() < MAX_SPACES ? spaces.computeIfAbsent(table, k -> new ConcurrentHashMap<>())
+        : spaces.get(table);
+    if (keys == null) {
+      return;
+    }
+
+    final Map<String, Set<QueryOperation>> operations = query.stream().flatMap(List::stream)
+        .filter(q -> isIndexable(q, containment))
+        .collect(Collectors.groupingBy(q -> q.getKey().substring(PROPERTIES_PREFIX.length()),
+            Collectors.mapping(PropertyQuery::getOperation, Collectors.toSet())));
+
+    operations.forEach((key, ops) -> {
+      final Usage usage = keys.size() < MAX_KEYS_PER_SPACE ? keys.computeIfAbsent(key, k -> new Usage()) : keys.get(key);
+      if (usage != null) {
+        usage.add(ops, rows);
+      }
+    });
+  }
+
+  /**
+   * Returns all recorded usages and resets the histogram.
+   */
+  Map<String, Map<String, Usage>> drain() {
+    final Map<String, Map<String, Usage>> result = new HashMap<>();
+    for (String table : spaces.keySet()) {
+      final Map<String, Usage> keys = spaces.remove(table);
+      if (keys != null && !keys.isEmpty()) {
+        result.put(table, keys);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Only filters on properties can be served by an on-demand index. The system properties and the feature id are always indexed,
+   * inequality filters never use an index.
+   */
+  private static boolean isIndexable(PropertyQuery q, boolean containment) {
+    final String key = q.getKey();
+    if (key == null || !key.startsWith(PROPERTIES_PREFIX) || key.length() == PROPERTIES_PREFIX.length()
+        || key.startsWith(PROPERTIES_PREFIX + "@ns:com:here:xyz.") || key.contains("'") || key.contains("\\")) {
+      return false;
+    }
+    if (q.getOperation() == null || q.getOperation() == QueryOperation.NOT_EQUALS) {
+      return false;
+    }
+    return !containment || !q.getValues().stream().allMatch(v -> SQLQueryBuilder.isContainmentSearch(q, v));
+  }
+
+  static class Usage {
+
+    /**
+     * The amount of searches on the key.
+     */
+    final LongAdder queries = new LongAdder();
+
+    /**
+     * The amount of executed searches and the sum of rows they returned, used to estimate the selectivity.
+     */
+    final LongAdder sampled = new LongAdder();
+    final LongAdder rows = new LongAdder();
+
+    final Map<QueryOperation, LongAdder> operations = new ConcurrentHashMap<>();
+
+    private void add(Set<QueryOperation> ops, long returnedRows) {
+      queries.increment();
+      if (returnedRows >= 0) {
+        sampled.increment();
+        rows.add(returnedRows);
+      }
+      ops.forEach(op -> operations.computeIfAbsent(op, k -> new LongAdder()).increment());
+    }
+  }
+}
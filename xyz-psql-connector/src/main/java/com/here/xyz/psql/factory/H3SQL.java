@@ -27,6 +27,8 @@ public class H3SQL
   public static final String HEXBIN_RESOLUTION = "resolution";
   public static final String HEXBIN_PROPERTY = "property";
   public static final String HEXBIN_POINTMODE = "pointmode";
+  /** The storage parameter, which lists the resolutions for which precomputed aggregates are maintained */
+  public static final String HEXBIN_AGGREGATE_RESOLUTIONS = "h3AggregateResolutions";
 
   public static String h3sqlBegin =
       "  select "
@@ -121,6 +123,25 @@ public class H3SQL
           + "  ) outer_v ";
 
 
+  /** Replaces h3sqlMid .. h3sqlEnd, if the cells are taken from the precomputed aggregates ( see xyz_trigger_h3aggregate ) */
+  public static String h3sqlAggregateMid =
+      "                    , oo.geo ) as omni, "
+          + "           oo.geo "
+          + "     from "
+          + "     ( "
+          + "      select to_hex(a.h3) as h3, a.qty, a.geo "
+          + "      from ${schema}.${h3table} a "
+          + "      where a.res = %1$d and a.qty > 0 and a.geo && ",
+  h3sqlAggregateEnd =
+            "     ) oo "
+          + "     where 1 = 1 "
+          + "   ) "
+          + "   select * from h3cluster "
+          + "   where 1 = 1 "
+          + "     and omni = true "
+          + "     %1$s "
+          + "  ) outer_v ";
+
   public static int[] MaxResForZoom = {2, 2, 2, 2, 3, 4, 4, 5, 6, 6, 7, 8, 9, 9, 10, 11, 11, 12, 13, 14, 14, 15, 15};
 
   public static int zoom2resolution(int zoom) {
@@ -119,6 +119,13 @@ public class MaintenanceSQL {
     /** Get status of running index queries (statistic,analyzing,creation,deletion) */
     public static String checkIDXStatus = "SELECT * FROM xyz_index_status();";
 
+    /** Lists the spaces of the schema, which have a time partitioned history */
+    public static String partitionedHistorySpacesSQL =
+            "SELECT left(relname, -4) FROM pg_class WHERE relnamespace = to_regnamespace(?) AND relkind = 'p' AND relname LIKE '%\\_hst'";
+
+    /** Prunes the time partitioned history of a space, returns the amount of removed versions */
+    public static String maintainHistorySQL = "SELECT xyz_maintain_history(?, ?, ?)";
+
     /** Create XYZ_CONFIG_SCHEMA and required system tables */
     public static String configSchemaAndSystemTablesSQL =
             "CREATE SCHEMA IF NOT EXISTS \"" + XYZ_CONFIG_SCHEMA + "\";"+
@@ -138,6 +145,9 @@ public class MaintenanceSQL {
             "  count bigint, " +
             "  prop_stat jsonb, " +
             "  idx_manual jsonb, " +
+            "  search_stat jsonb, " +
+            "  idx_workload jsonb, " +
+            "  idx_special jsonb, " +
             "  CONSTRAINT "+XYZ_CONFIG_IDX_TABLE+"_pkey PRIMARY KEY (spaceid) " +
             "); " +
             "INSERT INTO xyz_config."+XYZ_CONFIG_IDX_TABLE+" (spaceid,count) " +
@@ -47,6 +47,65 @@ public class QuadbinSQL {
      * MIXED-mode only supports tables with lower than LIMIT_MIXED_MODE records
      */
     private static final Integer LIMIT_COUNTMODE_MIXED = 6000000;
+    /**
+     * The storage parameter, which defines the deepest level of the quadkey count pyramid
+     */
+    public static final String COUNT_PYRAMID_MAX_LEVEL = "quadCountMaxLevel";
+    /**
+     * The storage parameter, which defines if the quadkey count pyramid additionally counts the features per tag
+     */
+    public static final String COUNT_PYRAMID_BY_TAG = "quadCountByTag";
+    /**
+     * The deepest level of the quadkey count pyramid, which can be configured
+     */
+    public static final int COUNT_PYRAMID_LIMIT = 20;
+
+    /**
+     * The configuration of a quadkey count pyramid, which holds the feature count of each quadkey down to maxLevel.
+     */
+    public static class CountPyramid {
+        public static final CountPyramid NONE = new CountPyramid(-1, false);
+
+        public final int maxLevel;
+        public final boolean byTag;
+
+        public CountPyramid(int maxLevel, boolean byTag) {
+            this.maxLevel = maxLevel;
+            this.byTag = byTag;
+        }
+
+        /**
+         * Parses the configuration, as it is stored in the comment of the pyramid table.
+         */
+        public static CountPyramid fromComment(String comment) {
+            if (comment == null || comment.isEmpty()) {
+                return NONE;
+            }
+            final String[] parts = comment.split(",");
+            return new CountPyramid(Integer.parseInt(parts[0].trim()), parts.length > 1 && "tags".equals(parts[1].trim()));
+        }
+
+        public String toComment() {
+            return maxLevel + (byTag ? ",tags" : "");
+        }
+
+        public boolean exists() {
+            return maxLevel >= 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CountPyramid)) {
+                return false;
+            }
+            return maxLevel == ((CountPyramid) o).maxLevel && byTag == ((CountPyramid) o).byTag;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * maxLevel + (byTag ? 1 : 0);
+        }
+    }
 
     /**
      * Check if request parameters are valid. In case of invalidity throw an Exception
@@ -72,10 +131,18 @@ public class QuadbinSQL {
         }
     }
 
+    /**
+     * Whether the counts may be taken from the quadkey count pyramid. Its counts are estimated, so they are not used, if real counts were
+     * requested.
+     */
+    public static boolean acceptsPyramidCounts(String countMode) {
+        return countMode == null || countMode.equalsIgnoreCase(COUNTMODE_ESTIMATED) || countMode.equalsIgnoreCase(COUNTMODE_MIXED);
+    }
+
     /**
      * Creates the SQLQuery for Quadbin requests.
      */
-    public static SQLQuery generateQuadbinClusteringSQL(String schema, String space, int resolution, String quadMode, String propQuery, WebMercatorTile tile) {
+    public static SQLQuery generateQuadbinClusteringSQL(String schema, String space, int resolution, String quadMode, SQLQuery propQuery, WebMercatorTile tile) {
         SQLQuery query = new SQLQuery("");
 
         String realCountCondition = "";
@@ -108,7 +175,7 @@ public class QuadbinSQL {
                                     "      'select 1 from "+ schema+".\""+space+"\""+
                                     "       WHERE ST_Intersects(geo, xyz_qk_qk2bbox(''',qk,''')) "+
                                     " AND "+
-                                    propQuery.replaceAll("'","''")+
+                                    inlineParameters(propQuery).replaceAll("'","''")+
                                     "'))";
                     estCalc = "cond_est_cnt"; // "(CASE WHEN cond_est_cnt <= 1 THEN 0 ELSE cond_est_cnt END)";
                 }else{
@@ -120,16 +187,16 @@ public class QuadbinSQL {
 
         query.append(
                 "WITH stats AS("+
-                        "    SELECT reltuples as est_cnt FROM pg_class WHERE oid = '"+schema+".\""+space+"\"'::regclass"+
+                        "    SELECT xyz_reltuples('"+schema+".\""+space+"\"'::regclass) as est_cnt"+
                         ")"+
                         "SELECT * from ("+
                         "SELECT  (SELECT concat('{\"id\": \"',ceil(random()*10000000),'\", \"type\": \"Feature\""+
                         "       ,\"properties\": {\"count\": ',cnt_bbox_est,',\"qk\":\"',qk,'\""+
                         "       ,\"xyz\":\"',qkxyz,'\" ,\"estimated\":',to_jsonb(NOT("+realCountCondition+")),',\"total_count\":',est_cnt::bigint,',\"equipartition_count\":',"+
-                        "          (floor((est_cnt/POW(2,"+(tile.level+1)+")/POW(4,"+resolution+")))),'}}')::jsonb) as properties,"+
+                        "          (floor((est_cnt/POW(2,?)/POW(4,?)))),'}}')::jsonb) as properties,"+
                         "    (CASE WHEN cnt_bbox_est != 0"+
                         "        THEN"+
-                        "            (SELECT ST_AsGeojson( ST_Buffer(qkbbox,-0.01/"+tile.level+")) ::jsonb)"+
+                        "            (SELECT ST_AsGeojson( ST_Buffer(qkbbox,-0.01/?)) ::jsonb)"+
                         "        ELSE"+
                         "            NULL::jsonb"+
                         "        END "+
@@ -139,7 +206,7 @@ public class QuadbinSQL {
                         "        ("+
                         "        CASE WHEN "+realCountCondition+" THEN "+
                         "            (select count(1) from "+ schema+".\""+space+"\""+
-                        "                WHERE ST_Intersects(geo, qkbbox)");
+                        "                WHERE ST_Intersects(geo, qkbbox)", tile.level + 1, resolution, tile.level);
         if(propQuery != null) {
             query.append(" AND ");
             query.append(propQuery);
@@ -153,11 +220,46 @@ public class QuadbinSQL {
                 "              ("+pureEstimation+") as cond_est_cnt "+
                 "            from("+
                 "            SELECT qk, xyz_qk_qk2bbox( qk ) as qkbbox, xyz_qk_qk2lrc(qk) as qkxyz from ("+
-                "            SELECT unnest(xyz_qk_child_calculation('"+(tile.asQuadkey() == null ? 0 :tile.asQuadkey())+"',"+resolution+",null)) as qk"+
+                "            SELECT unnest(xyz_qk_child_calculation(?,?,null)) as qk"+
                 "            )a"+
                 "        ) b"+
                 "    )c"+
-                ")x, stats ) d WHERE geojson IS NOT null ");
+                ")x, stats ) d WHERE geojson IS NOT null ", (tile.asQuadkey() == null ? "0" : tile.asQuadkey()), resolution);
         return query;
     }
+
+    /**
+     * Creates the SQLQuery for Quadbin requests, which takes the counts from the quadkey count pyramid. The pyramid counts every feature
+     * once by its reference point, while the other count modes count every feature intersecting a tile, so the counts are marked as
+     * estimated.
+     *
+     * @param tag the tag to count the features for, an empty string to count all features.
+     */
+    public static SQLQuery generateQuadbinPyramidSQL(String schema, String space, int resolution, String tag, WebMercatorTile tile) {
+        SQLQuery query = new SQLQuery(
+                "WITH stats AS("+
+                        "    SELECT xyz_reltuples('"+schema+".\""+space+"\"'::regclass) as est_cnt"+
+                        ")"+
+                        "SELECT (SELECT concat('{\"id\": \"',ceil(random()*10000000),'\", \"type\": \"Feature\""+
+                        "       ,\"properties\": {\"count\": ',c.qty,',\"qk\":\"',c.qk,'\""+
+                        "       ,\"xyz\":\"',xyz_qk_qk2lrc(c.qk),'\" ,\"estimated\":true,\"total_count\":',est_cnt::bigint,',\"equipartition_count\":',"+
+                        "          (floor((est_cnt/POW(2,?)/POW(4,?)))),'}}')::jsonb) as properties,"+
+                        "    (SELECT ST_AsGeojson( ST_Buffer(xyz_qk_qk2bbox(c.qk),-0.01/?)) ::jsonb) as geojson"+
+                        "    FROM stats, ${schema}.${qktable} c"+
+                        "    WHERE c.tag = ? AND c.qty > 0"+
+                        "    AND c.qk = ANY(xyz_qk_child_calculation(?,?,null))",
+                tile.level + 1, resolution, tile.level, tag, (tile.asQuadkey() == null ? "0" : tile.asQuadkey()), resolution);
+        return query;
+    }
+
+    /**
+     * The property query of the estimation is executed dynamically by xyz_count_estimation(), so its parameters are inlined as literals.
+     */
+    private static String inlineParameters(SQLQuery propQuery) {
+        String propQuerySQL = propQuery.text();
+        for (Object param : propQuery.parameters()) {
+            propQuerySQL = propQuerySQL.replaceFirst("\\?", "'" + param + "'");
+        }
+        return propQuerySQL;
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017-2020 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.psql.factory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.here.xyz.events.Event;
+import com.here.xyz.models.geojson.HQuad;
+import com.here.xyz.models.geojson.implementation.Feature;
+import com.here.xyz.models.geojson.implementation.FeatureCollection;
+import com.vividsolutions.jts.geom.Coordinate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The spatial layout keeps the rows of a space table physically sorted by a space-filling curve, so that the features of a tile are
+ * stored on few pages. The sort key is the morton code ( z-order ) of the level {@link #SORT_KEY_LEVEL} tile, which contains the
+ * reference point of the geometry, see xyz_sort_key().
+ */
+public class SpatialLayoutSQL {
+
+    /**
+     * The storage parameter, which enables the spatial layout of a space
+     */
+    public static final String SPATIAL_LAYOUT = "spatialLayout";
+    /**
+     * The tile level of the sort key, its morton code fits into 48 bits
+     */
+    public static final int SORT_KEY_LEVEL = 24;
+    /**
+     * The amount of features, which are moved per reorganisation step
+     */
+    public static final int REORGANIZATION_BATCH = 1000;
+    /**
+     * A new reorganisation pass is started, if the correlation of the physical order with the sort key fell below this value
+     */
+    public static final double REORGANIZATION_MIN_CORRELATION = 0.9;
+
+    /**
+     * Moves the next batch of features, returns the amount of moved features
+     */
+    public static final String REORGANIZE_SPACE_SQL = "SELECT xyz_reorganize_space(?, ?, ?, ?)";
+
+    /**
+     * Lists the tables of the schema, which have a spatial layout
+     */
+    public static final String SPATIAL_LAYOUT_TABLES_SQL = "SELECT t.relname FROM pg_index x"
+            + " JOIN pg_class i ON i.oid = x.indexrelid JOIN pg_class t ON t.oid = x.indrelid"
+            + " WHERE t.relnamespace = to_regnamespace(?) AND NOT t.relispartition AND i.relname = 'idx_' || t.relname || '_sortkey'";
+
+    public static boolean isSpatialLayout(Event event) {
+        return event.getParams() != null && event.getParams().get(SPATIAL_LAYOUT) == Boolean.TRUE;
+    }
+
+    public static String sortKeyIndexName(String table) {
+        return "idx_" + table + "_sortkey";
+    }
+
+    public static String createSortKeyIndexSQL(String indexName) {
+        return "CREATE INDEX IF NOT EXISTS " + indexName + " ON ${schema}.${table} ((xyz_sort_key(geo)), i)";
+    }
+
+    /**
+     * Calculates the sort key of the given feature like xyz_sort_key(). Features without geometry are sorted last.
+     */
+    public static long sortKey(Feature feature) {
+        if (feature.getGeometry() == null) {
+            return Long.MAX_VALUE;
+        }
+        final Coordinate refPoint = feature.getGeometry().getJTSGeometry().getCoordinate();
+        if (refPoint == null) {
+            return Long.MAX_VALUE;
+        }
+
+        final int numRowsCols = 1 << SORT_KEY_LEVEL;
+        final double longitude = Math.min(Math.max(refPoint.x, -180.0), 179.9999999);
+        final double sinLatitude = Math.sin(Math.toRadians(Math.min(Math.max(refPoint.y, -85.0511287), 85.0511287)));
+        final int colX = (int) Math.floor(((longitude + 180.0) / 360.0) * numRowsCols);
+        final int rowY = (int) Math.floor((0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI)) * numRowsCols);
+        return HQuad.MortonUtlis.convertXYToLongKey(colX, rowY);
+    }
+
+    /**
+     * Returns the features in the order of their sort key, so that a bulk load writes them in the physical order of the table.
+     */
+    public static List<Feature> inSortKeyOrder(List<Feature> features) {
+        final Map<Feature, Long> sortKeys = new IdentityHashMap<>();
+        features.forEach(f -> sortKeys.put(f, sortKey(f)));
+
+        final List<Feature> sorted = new ArrayList<>(features);
+        sorted.sort(Comparator.comparingLong(sortKeys::get));
+        return sorted;
+    }
+
+    /**
+     * Restores the order of the request in the response, after the features were written in the order of their sort key.
+     */
+    public static void restoreRequestOrder(FeatureCollection collection, List<Feature> requestOrder) throws JsonProcessingException {
+        final Map<String, Integer> positions = new HashMap<>();
+        requestOrder.forEach(f -> positions.putIfAbsent(f.getId(), positions.size()));
+        final Comparator<String> byPosition = Comparator.comparingInt(id -> positions.getOrDefault(id, Integer.MAX_VALUE));
+
+        collection.getFeatures().sort(Comparator.comparing(Feature::getId, byPosition));
+        if (collection.getInserted() != null) {
+            collection.getInserted().sort(byPosition);
+        }
+        if (collection.getUpdated() != null) {
+            collection.getUpdated().sort(byPosition);
+        }
+    }
+}
@@ -19,6 +19,8 @@
 
 package com.here.xyz.psql.factory;
 
+import com.here.xyz.psql.SQLQuery;
+
 public class TweaksSQL
 {
   public static final String SAMPLING = "sampling";
@@ -33,20 +35,34 @@ public class TweaksSQL
   public static final String SIMPLIFICATION_ALGORITHM_A02 = "simplifiedkeeptopology";
   public static final String SIMPLIFICATION_ALGORITHM_A03 = "simplified";
   public static final String SIMPLIFICATION_ALGORITHM_A04 = "merge";
+  /** The storage parameter, which lists the simplifications ( "algorithm:strength" ) to be precomputed */
+  public static final String SIMPLIFICATION_LODS = "simplificationLods";
   
 
   /*
-   [  1     |   (1) | 1/3    | ~ md5( '' || i) < '5'   ]
-   [  5     |   (5) | 1/4    | ~ md5( '' || i) < '4'   ]
-   [ low    |  (10) | 1/8    | ~ md5( '' || i) < '2'   ]
-   [ lowmed	|  (30) | 1/32   | ~ md5( '' || i) < '08'  ]
-   [ med    |  (50) | 1/128  | ~ md5( '' || i) < '02'  ]
-   [ medhigh|  (75) | 1/1024 | ~ md5( '' || i) < '004' ]
-   [ high   | (100) | 1/4096 | ~ md5( '' || i) < '001' ]
+   [  1     |   (1) | 1/3    | ~ md5( i::text ) < '5'   ]
+   [  5     |   (5) | 1/4    | ~ md5( i::text ) < '4'   ]
+   [ low    |  (10) | 1/8    | ~ md5( i::text ) < '2'   ]
+   [ lowmed	|  (30) | 1/32   | ~ md5( i::text ) < '08'  ]
+   [ med    |  (50) | 1/128  | ~ md5( i::text ) < '02'  ]
+   [ medhigh|  (75) | 1/1024 | ~ md5( i::text ) < '004' ]
+   [ high   | (100) | 1/4096 | ~ md5( i::text ) < '001' ]
   */
 
-  private static final String DstFunctIndexExpr = "left(md5(''||i),5)"; 
-  public static String strengthSql(int strength, boolean bRandom)
+  /** The sampling key, i::text is immutable ( other than ''||i ), so that it can be used in the predicates of the sampling indexes */
+  private static final String DstFunctIndexExpr = "left(md5(i::text),5)";
+  /** The storage parameter, which enables the partial spatial indexes for the distribution sampling */
+  public static final String SAMPLING_INDEXES = "samplingIndexes";
+  /** The sampling thresholds, for which partial spatial indexes are created. Lower strengths keep too many rows to benefit from them */
+  public static final String[] SAMPLING_INDEX_THRESHOLDS = { "2", "08", "02", "004", "001" };
+
+  /** Returns the predicate of the partial spatial index for the given sampling threshold */
+  public static String samplingIndexPredicate(String threshold)
+  { return DstFunctIndexExpr + " < '" + threshold + "'"; }
+
+  /** The bbox length is passed as bind parameter. The distribution threshold is one of a small, fixed set of values and stays in the
+   *  statement text, so that the planner can match the partial spatial indexes ( see SAMPLING_INDEXES ) */
+  public static SQLQuery strengthSql(int strength, boolean bRandom)
   { 
    if( !bRandom ) 
    {
@@ -55,7 +71,7 @@ public class TweaksSQL
                      strength <= 30  ? 0.004  : 
                      strength <= 50  ? 0.008  :
                      strength <= 75  ? 0.01   : 0.05 );
-    return String.format("( ST_Perimeter(box2d(geo) ) > %f )", bxLen );              
+    return new SQLQuery("( ST_Perimeter(box2d(geo) ) > ? )", bxLen );              
    }
     
    String s = ( strength <=  1  ? "5"   : 
@@ -65,9 +81,49 @@ public class TweaksSQL
                 strength <= 50  ? "02"  :
                 strength <= 75  ? "004" : "001" );
      
-   return String.format("%s < '%s'",DstFunctIndexExpr,s);
+   return new SQLQuery(samplingIndexPredicate(s));
+  }
+
+  public static int simplificationStrength(Object strength)
+  {
+   if( strength instanceof Integer )
+    return (int) strength;
+
+   switch( String.valueOf(strength) )
+   { case "low"     : return  20;
+     case "lowmed"  : return  40;
+     case "med"     : return  60;
+     case "medhigh" : return  80;
+     case "high"    : return 100;
+     default: return 50;
+   }
   }
 
+  /** Returns the function, which simplifies a single geometry with the given algorithm. Null, if the algorithm is not applied per geometry. */
+  public static String simplificationFunction(String algorithm)
+  {
+   if( algorithm == null ) return null;
+
+   switch( algorithm )
+   { case SIMPLIFICATION_ALGORITHM_A01 : return "ST_SnapToGrid";
+     case SIMPLIFICATION_ALGORITHM_A02 : return "ftm_SimplifyPreserveTopology";
+     case SIMPLIFICATION_ALGORITHM_A03 : return "ftm_Simplify";
+     default: return null;
+   }
+  }
+
+  public static double simplificationTolerance(String algorithm, int strength)
+  {
+   if( SIMPLIFICATION_ALGORITHM_A01.equals(algorithm) )
+    return (0.0045/100) * strength;
+
+   return ( strength <= 10 ? (1.0 / (11 - strength)) : strength);
+  }
+
+  /** Identifies a precomputed simplification ( level of detail ) */
+  public static String lodKey(String algorithm, int strength)
+  { return algorithm + ":" + strength; }
+
   public static String mergeBeginSql = 
     "select jsondata, geo "
    +"from "
@@ -109,6 +109,9 @@
 -- xyz_qk_lrc2bbox							:	select ST_ASText(xyz_qk_lrc2bbox(3,2,3));
 -- xyz_qk_qk2bbox							:	select xyz_qk_qk2bbox( '001' );
 -- xyz_qk_point2qk							:	select xyz_qk_point2qk(ST_GeomFromText( 'POINT( -64.78767  32.29703)' ), 3)
+-- xyz_maintain_history					:	select xyz_maintain_history('xyz', 'QgQCHStH', 1000)
+-- xyz_sort_key							:	select xyz_sort_key(ST_GeomFromText( 'POINT( -64.78767  32.29703)' ))
+-- xyz_reorganize_space						:	select xyz_reorganize_space('xyz', 'QgQCHStH', 1000, 0.9)
 -- xyz_qk_bbox2zooml						:	select xyz_qk_bbox2zooml(
 --													ST_GeomFromText('POLYGON((49.1430885846288 -122.003173828125,49.1430885846288 -122.001800537109,49.1439869452885
 --													-122.001800537109,49.1439869452885 -122.003173828125,49.1430885846288 -122.003173828125))' ));
@@ -132,6 +135,10 @@
 ------ prop_stat				: xyz_write_newest_statistics()				: select properties ->'value' from xyz_statistic_xl_space('xyz', 'QgQCHStH', 1000);
 ------ schem					: xyz_write_newest_statistics()				: schema in which the XYZ-Spaces are located
 ------ idx_manual				: xyz-psql-connector						: On-Demand Index configuration
+------ search_stat				: xyz-psql-connector						: decayed histogram of the searched properties
+------ idx_workload				: xyz-psql-connector						: On-Demand Indices derived from search_stat (Index Advisor)
+------ idx_special				: xyz-psql-connector						: Requested indices by name, the definition or false to drop it
+------							  xyz_maintain_idxs_for_space()
 ------
 ----
 -- select runts,idx_creation_finished,idx_proposals,idx_available,spaceid,count,prop_stat,schem,idx_manual
@@ -144,11 +151,52 @@
 CREATE OR REPLACE FUNCTION xyz_ext_version()
   RETURNS integer AS
 $BODY$
- select 128
+ select 143
 $BODY$
   LANGUAGE sql IMMUTABLE;
 ------------------------------------------------
 ------------------------------------------------
+-- Function: xyz_reltuples(regclass)
+-- DROP FUNCTION xyz_reltuples(regclass);
+CREATE OR REPLACE FUNCTION xyz_reltuples(tbl regclass)
+  RETURNS real AS
+$BODY$
+	/**
+	* Description: Returns the estimated row count of a space table. The estimation of a partitioned table is the sum of
+	*	the estimations of its partitions.
+	*
+	* Parameters:
+	*   @tbl	- the table
+	*/
+	SELECT COALESCE(sum(GREATEST(reltuples, 0)), 0)::real FROM pg_class
+		WHERE oid = tbl OR oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = tbl);
+$BODY$
+  LANGUAGE sql STABLE STRICT;
+------------------------------------------------
+------------------------------------------------
+-- Function: xyz_total_relation_size(regclass)
+-- DROP FUNCTION xyz_total_relation_size(regclass);
+CREATE OR REPLACE FUNCTION xyz_total_relation_size(tbl regclass)
+  RETURNS bigint AS
+$BODY$
+	/**
+	* Description: Returns the storage size of a space table including its indices and partitions.
+	*
+	* Parameters:
+	*   @tbl	- the table
+	*/
+	SELECT pg_total_relation_size(tbl) + COALESCE((SELECT sum(pg_total_relation_size(inhrelid))::bigint FROM pg_inherits WHERE inhparent = tbl), 0);
+$BODY$
+  LANGUAGE sql STABLE STRICT;
+------------------------------------------------
+------------------------------------------------
+-- Columns of the maintenance table, which were added later on
+ALTER TABLE IF EXISTS xyz_config.xyz_idxs_status
+	ADD COLUMN IF NOT EXISTS search_stat jsonb,
+	ADD COLUMN IF NOT EXISTS idx_workload jsonb,
+	ADD COLUMN IF NOT EXISTS idx_special jsonb;
+------------------------------------------------
+------------------------------------------------
 CREATE OR REPLACE FUNCTION xyz_trigger_historywriter()
   RETURNS trigger AS
 $BODY$
@@ -158,6 +206,14 @@ $BODY$
 	DECLARE uuid_deletes text[];
 
 	BEGIN
+		-- The features, which are moved by xyz_reorganize_space(), did not change
+		IF current_setting('xyz.reorganize', true) = 'true' THEN
+			IF TG_OP = 'DELETE' THEN
+				RETURN OLD;
+			END IF;
+			RETURN NEW;
+		END IF;
+
 		EXECUTE
 			format('SELECT array_agg(uuid)'
 				|| 'FROM( '
@@ -199,6 +255,253 @@ $BODY$
 language plpgsql;
 ------------------------------------------------
 ------------------------------------------------
+-- Writes the previous states of the features, which were changed by a statement, with one insert into the time partitioned history
+-- table ( <table>_hst ) of a space. The history is pruned asynchronously by xyz_maintain_history().
+-- Is executed once per statement, the changed rows are taken from the transition table old_table.
+CREATE OR REPLACE FUNCTION xyz_trigger_historywriter_partitioned()
+  RETURNS trigger AS
+$BODY$
+	BEGIN
+		-- The features, which are moved by xyz_reorganize_space(), did not change
+		IF current_setting('xyz.reorganize', true) = 'true' OR TG_OP NOT IN ('UPDATE', 'DELETE') THEN
+			RETURN NULL;
+		END IF;
+
+		EXECUTE format('INSERT INTO %I.%I (uuid, jsondata, geo)'
+			|| ' SELECT jsondata->''properties''->''@ns:com:here:xyz''->>''uuid'', '
+			|| CASE WHEN TG_OP = 'DELETE'
+				THEN 'jsonb_set(jsondata, ''{properties,@ns:com:here:xyz}'', ''{"deleted":true}''::jsonb || (jsondata->''properties''->''@ns:com:here:xyz''))'
+				ELSE 'jsondata' END
+			|| ', geo FROM old_table', TG_TABLE_SCHEMA, TG_TABLE_NAME || '_hst');
+		RETURN NULL;
+	END;
+$BODY$
+language plpgsql;
+------------------------------------------------
+------------------------------------------------
+-- Creates the monthly partitions of the time partitioned history table of a space for the current and the next month. Versions,
+-- which were written into the default partition ( <table>_hst_default ) for a month without partition ( e.g. the maintenance did
+-- not run ), are moved into a new partition of their month. The default partition is detached meanwhile, if the history is in use
+-- the move is retried by the next run.
+CREATE OR REPLACE FUNCTION xyz_history_partitions( schema text, space text )
+	RETURNS void AS
+$BODY$
+	DECLARE dflt text := space || '_hst_default';
+	DECLARE months timestamp[];
+	DECLARE m timestamp;
+	DECLARE in_default boolean;
+	BEGIN
+		EXECUTE format( 'SELECT array_agg( DISTINCT date_trunc( ''month'', ts )::timestamp ) FROM %I.%I', schema, dflt ) INTO months;
+		months := ARRAY[ date_trunc( 'month', now()::timestamp ), date_trunc( 'month', now()::timestamp ) + interval '1 month' ]
+			|| COALESCE( months, ARRAY[]::timestamp[] );
+
+		FOREACH m IN ARRAY months LOOP
+			CONTINUE WHEN to_regclass( format( '%I.%I', schema, space || '_hst_' || to_char( m, 'YYYYMM' ) ) ) IS NOT NULL;
+
+			EXECUTE format( 'SELECT EXISTS ( SELECT 1 FROM %I.%I WHERE ts >= %L AND ts < %L )', schema, dflt, m, m + interval '1 month' )
+				INTO in_default;
+			IF NOT in_default THEN
+				EXECUTE format( 'CREATE TABLE IF NOT EXISTS %I.%I PARTITION OF %I.%I FOR VALUES FROM (%L) TO (%L)',
+					schema, space || '_hst_' || to_char( m, 'YYYYMM' ), schema, space || '_hst', m, m + interval '1 month' );
+				CONTINUE;
+			END IF;
+
+			BEGIN
+				PERFORM set_config( 'lock_timeout', '1s', true );
+				EXECUTE format( 'ALTER TABLE %I.%I DETACH PARTITION %I.%I', schema, space || '_hst', schema, dflt );
+				EXECUTE format( 'CREATE TABLE %I.%I PARTITION OF %I.%I FOR VALUES FROM (%L) TO (%L)',
+					schema, space || '_hst_' || to_char( m, 'YYYYMM' ), schema, space || '_hst', m, m + interval '1 month' );
+				EXECUTE format( 'WITH d AS ( DELETE FROM %I.%I WHERE ts >= %L AND ts < %L RETURNING * ) INSERT INTO %I.%I SELECT * FROM d',
+					schema, dflt, m, m + interval '1 month', schema, space || '_hst' );
+				EXECUTE format( 'ALTER TABLE %I.%I ATTACH PARTITION %I.%I DEFAULT', schema, space || '_hst', schema, dflt );
+			EXCEPTION WHEN lock_not_available THEN
+				-- The history is in use, the versions are moved by the next run
+				RAISE NOTICE 'History partition % of % is kept in the default partition', to_char( m, 'YYYYMM' ), space;
+			END;
+		END LOOP;
+	END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
+-- Prunes the time partitioned history table of a space. Removes the versions in all partitions, which have at least
+-- max_version_cnt newer versions, and drops the partitions of past months, which became empty. The max_version_cnt is kept in the
+-- comment of the history table ( default 10 ). Ensures the partitions for the current and the next month.
+-- Every partition is pruned in the order of the feature ids, up to batch ids per run. The versions of a range of ids are numbered
+-- over the whole history at once. The position of the pass over a partition is kept in the comment of the partition.
+-- Returns the amount of removed versions.
+CREATE OR REPLACE FUNCTION xyz_maintain_history( schema text, space text, batch integer )
+	RETURNS integer AS
+$BODY$
+	DECLARE hst regclass := to_regclass( format( '%I.%I', schema, space || '_hst' ) );
+	DECLARE max_version_cnt integer;
+	DECLARE part record;
+	DECLARE pruned integer := 0;
+	DECLARE scanned integer := 0;
+	DECLARE lim integer;
+	DECLARE cnt integer;
+	DECLARE ids integer;
+	DECLARE last_id text;
+	DECLARE empty boolean;
+	BEGIN
+		IF hst IS NULL OR NOT pg_try_advisory_xact_lock( hst::oid::bigint ) THEN
+			RETURN 0;
+		END IF;
+
+		max_version_cnt := COALESCE( NULLIF( obj_description( hst, 'pg_class' ), '' )::integer, 10 );
+		PERFORM xyz_history_partitions( schema, space );
+
+		FOR part IN SELECT c.oid::regclass AS tbl, c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+				WHERE i.inhparent = hst ORDER BY c.relname LOOP
+			EXIT WHEN scanned >= batch;
+
+			lim := batch - scanned;
+			EXECUTE format( 'WITH k AS ( SELECT DISTINCT p.jsondata->>''id'' AS id FROM %1$s p'
+				|| '		WHERE $1::text IS NULL OR p.jsondata->>''id'' > $1 ORDER BY 1 LIMIT $3 ),'
+				|| ' v AS ( SELECT h.uuid, h.ts, row_number() OVER ( PARTITION BY h.jsondata->>''id'' ORDER BY h.ts DESC ) AS rn FROM %2$s h'
+				|| '		WHERE h.jsondata->>''id'' BETWEEN ( SELECT min(id) FROM k ) AND ( SELECT max(id) FROM k ) ),'
+				|| ' d AS ( DELETE FROM %1$s p USING v WHERE p.uuid = v.uuid AND p.ts = v.ts AND v.rn > $2 RETURNING 1 )'
+				|| ' SELECT ( SELECT count(*) FROM k )::integer, ( SELECT max(id) FROM k ), ( SELECT count(*) FROM d )::integer', part.tbl, hst )
+				INTO ids, last_id, cnt USING obj_description( part.tbl, 'pg_class' ), max_version_cnt, lim;
+			scanned := scanned + ids;
+			pruned := pruned + cnt;
+
+			IF ids = lim THEN
+				-- The pass over the partition is continued by the next run
+				EXECUTE format( 'COMMENT ON TABLE %s IS %L', part.tbl, last_id );
+				EXIT;
+			END IF;
+			EXECUTE format( 'COMMENT ON TABLE %s IS NULL', part.tbl );
+
+			-- The default partition and the partitions of the current and the next month are kept
+			IF part.relname < space || '_hst_' || to_char( now(), 'YYYYMM' ) THEN
+				EXECUTE format( 'SELECT NOT EXISTS ( SELECT 1 FROM %s )', part.tbl ) INTO empty;
+				IF empty THEN
+					BEGIN
+						PERFORM set_config( 'lock_timeout', '1s', true );
+						EXECUTE format( 'DROP TABLE %s', part.tbl );
+					EXCEPTION WHEN lock_not_available THEN
+						-- The history is in use, the partition is dropped by the next run
+						NULL;
+					END;
+				END IF;
+			END IF;
+		END LOOP;
+		RETURN pruned;
+	END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
+-- Maintains the precomputed hexbin aggregates ( <table>_h3 ) of a space for the resolutions passed as trigger arguments.
+-- Is executed once per statement, the changed rows are taken from the transition tables old_table and new_table. The changes
+-- of all rows and resolutions are summed up per cell first, so that every cell is upserted once per statement. The cells are
+-- upserted in the order of their index, so that concurrent statements lock them in the same order and cannot deadlock.
+-- Cells, whose count did not change ( e.g. updates without a change of the geometry ), are not touched at all.
+CREATE OR REPLACE FUNCTION xyz_trigger_h3aggregate()
+  RETURNS trigger AS
+$BODY$
+	DECLARE changes text := CASE TG_OP
+		WHEN 'INSERT' THEN 'SELECT geo, 1 AS d FROM new_table'
+		WHEN 'DELETE' THEN 'SELECT geo, -1 AS d FROM old_table'
+		ELSE 'SELECT geo, -1 AS d FROM old_table UNION ALL SELECT geo, 1 AS d FROM new_table' END;
+
+	BEGIN
+		IF current_setting('xyz.reorganize', true) = 'true' THEN
+			RETURN NULL;
+		END IF;
+		IF TG_OP = 'TRUNCATE' THEN
+			EXECUTE format('TRUNCATE %s."%s_h3"', TG_TABLE_SCHEMA, TG_TABLE_NAME);
+			RETURN NULL;
+		END IF;
+
+		EXECUTE format('INSERT INTO %s."%s_h3" AS a (h3, res, qty, geo)'
+			|| ' SELECT h, r, sum(d), h3ToGeoBoundaryDeg(h)::geometry(Polygon,4326) FROM ('
+			|| '	SELECT coveringDeg(CASE st_geometrytype(c.geo) WHEN ''ST_Point'' THEN c.geo ELSE st_force3d(st_closestpoint(c.geo, c.geo)) END, r) AS h, r, c.d'
+			|| '		FROM (%s) c, unnest(%L::integer[]) r WHERE c.geo IS NOT NULL AND NOT st_isempty(c.geo)'
+			|| ' ) x GROUP BY h, r HAVING sum(d) <> 0 ORDER BY h'
+			|| ' ON CONFLICT (h3) DO UPDATE SET qty = a.qty + excluded.qty',
+			TG_TABLE_SCHEMA, TG_TABLE_NAME, changes, TG_ARGV);
+		RETURN NULL;
+	END;
+$BODY$
+language plpgsql;
+------------------------------------------------
+------------------------------------------------
+-- Maintains the quadkey count pyramid ( <table>_qk ) of a space. TG_ARGV[0] is the deepest level of the pyramid,
+-- TG_ARGV[1] defines if the features are additionally counted per tag. The count of all features is stored with the empty tag.
+-- Is executed once per statement, the changed rows are taken from the transition tables old_table and new_table. The changes
+-- are summed up per quadkey and tag first and upserted in that order, so that concurrent statements cannot deadlock. Counts,
+-- which did not change ( e.g. updates without a change of the geometry or the tags ), are not touched at all.
+CREATE OR REPLACE FUNCTION xyz_trigger_qkcount()
+  RETURNS trigger AS
+$BODY$
+	DECLARE max_level integer := TG_ARGV[0]::integer;
+	DECLARE tags text := CASE WHEN TG_ARGV[1]::boolean
+		THEN ' UNION ALL SELECT jsonb_array_elements_text(q.jsondata->''properties''->''@ns:com:here:xyz''->''tags'')' ELSE '' END;
+	DECLARE changes text := CASE TG_OP
+		WHEN 'INSERT' THEN 'SELECT geo, jsondata, 1 AS d FROM new_table'
+		WHEN 'DELETE' THEN 'SELECT geo, jsondata, -1 AS d FROM old_table'
+		ELSE 'SELECT geo, jsondata, -1 AS d FROM old_table UNION ALL SELECT geo, jsondata, 1 AS d FROM new_table' END;
+
+	BEGIN
+		IF current_setting('xyz.reorganize', true) = 'true' THEN
+			RETURN NULL;
+		END IF;
+		IF TG_OP = 'TRUNCATE' THEN
+			EXECUTE format('TRUNCATE %s."%s_qk"', TG_TABLE_SCHEMA, TG_TABLE_NAME);
+			RETURN NULL;
+		END IF;
+
+		EXECUTE format('INSERT INTO %s."%s_qk" AS a (qk, tag, qty)'
+			|| ' SELECT left(q.qk, l), t.tag, sum(q.d) FROM ('
+			|| '	SELECT xyz_qk_point2qk(xyz_qk_refpt(c.geo), %s) AS qk, c.jsondata, c.d'
+			|| '		FROM (%s) c WHERE c.geo IS NOT NULL AND NOT st_isempty(c.geo)'
+			|| ' ) q, generate_series(0, %s) l, LATERAL (SELECT ''''::text AS tag %s) t'
+			|| ' GROUP BY 1, 2 HAVING sum(q.d) <> 0 ORDER BY 1, 2'
+			|| ' ON CONFLICT (qk, tag) DO UPDATE SET qty = a.qty + excluded.qty',
+			TG_TABLE_SCHEMA, TG_TABLE_NAME, max_level, changes, max_level, tags);
+		RETURN NULL;
+	END;
+$BODY$
+language plpgsql;
+------------------------------------------------
+------------------------------------------------
+-- Maintains the precomputed simplifications ( <table>_lod ) of a space. TG_ARGV holds pairs of the key of a simplification
+-- ( algorithm:strength ) and the expression, which simplifies the column geo.
+-- Is executed once per statement, the changed rows are taken from the transition tables old_table and new_table.
+CREATE OR REPLACE FUNCTION xyz_trigger_lod()
+  RETURNS trigger AS
+$BODY$
+	BEGIN
+		IF current_setting('xyz.reorganize', true) = 'true' THEN
+			RETURN NULL;
+		END IF;
+
+		IF TG_OP = 'TRUNCATE' THEN
+			EXECUTE format('TRUNCATE %s."%s_lod"', TG_TABLE_SCHEMA, TG_TABLE_NAME);
+			RETURN NULL;
+		ELSEIF TG_OP = 'DELETE' THEN
+			EXECUTE format('DELETE FROM %s."%s_lod" l USING old_table o WHERE l.i = o.i', TG_TABLE_SCHEMA, TG_TABLE_NAME);
+			RETURN NULL;
+		ELSEIF TG_OP = 'UPDATE' THEN
+			EXECUTE format('DELETE FROM %s."%s_lod" l USING new_table n WHERE l.i = n.i AND n.geo IS NULL', TG_TABLE_SCHEMA, TG_TABLE_NAME);
+		END IF;
+
+		FOR k IN 0 .. TG_NARGS / 2 - 1 LOOP
+			EXECUTE format('INSERT INTO %s."%s_lod" (i, lod, geo)'
+				|| ' SELECT i, %L, %s FROM new_table n WHERE geo IS NOT NULL'
+				-- only simplify the geometries, which were changed by an update
+				|| CASE WHEN TG_OP = 'UPDATE' THEN ' AND NOT EXISTS (SELECT 1 FROM old_table o WHERE o.i = n.i AND ST_OrderingEquals(o.geo, n.geo))' ELSE '' END
+				|| ' ON CONFLICT (i, lod) DO UPDATE SET geo = excluded.geo',
+				TG_TABLE_SCHEMA, TG_TABLE_NAME, TG_ARGV[2 * k], TG_ARGV[2 * k + 1]);
+		END LOOP;
+		RETURN NULL;
+	END;
+$BODY$
+language plpgsql;
+------------------------------------------------
+------------------------------------------------
 CREATE OR REPLACE FUNCTION xyz_count_estimation(query text)
     RETURNS integer AS
 $BODY$
@@ -564,6 +867,7 @@ $BODY$
 
 	DECLARE xyz_idx_proposal record;
 	DECLARE idx_false_list TEXT[];
+	DECLARE xyz_special_idx record;
 
 	BEGIN
 		/** Check if table is present */
@@ -595,8 +899,8 @@ $BODY$
 				(SELECT * from xyz_index_property_available(schema, space, property)) as idx_available
 					from (
 				SELECT
-					(jsonb_each(idx_manual)).key as property,
-					(jsonb_each(idx_manual)).value::text::boolean as idx_required
+					(jsonb_each(COALESCE(idx_workload, '{}'::jsonb) || COALESCE(idx_manual, '{}'::jsonb))).key as property,
+					(jsonb_each(COALESCE(idx_workload, '{}'::jsonb) || COALESCE(idx_manual, '{}'::jsonb))).value::text::boolean as idx_required
 						FROM xyz_config.xyz_idxs_status
 					WHERE idx_creation_finished = false
 						--AND count >= 10
@@ -631,8 +935,8 @@ $BODY$
 				SELECT idx_property,idx_name,
 				(
 					SELECT property=idx_property as idx_manual_prop FROM (
-						SELECT  (jsonb_each(idx_manual)).key as property,
-							(jsonb_each(idx_manual)).value::text::boolean as idx_required
+						SELECT  (jsonb_each(COALESCE(idx_workload, '{}'::jsonb) || COALESCE(idx_manual, '{}'::jsonb))).key as property,
+							(jsonb_each(COALESCE(idx_workload, '{}'::jsonb) || COALESCE(idx_manual, '{}'::jsonb))).value::text::boolean as idx_required
 						FROM xyz_config.xyz_idxs_status
 							where spaceid = space
 					)A WHERE property=idx_property
@@ -645,6 +949,29 @@ $BODY$
 			EXECUTE FORMAT ('DROP INDEX IF EXISTS %s."%s" ', schema, xyz_needless_manual_idx.idx_name);
 		END LOOP;
 
+		/** Create or drop the special indices, which are requested by the connector ( e.g. the sampling indices ) */
+		FOR xyz_special_idx IN
+			SELECT key as idx_name, value as idx_def
+				FROM xyz_config.xyz_idxs_status, jsonb_each(COALESCE(idx_special, '{}'::jsonb))
+			WHERE spaceid = space
+		LOOP
+			BEGIN
+				IF jsonb_typeof(xyz_special_idx.idx_def) = 'string' THEN
+					RAISE NOTICE '-- SPACE: % |> CREATE SPECIAL IDX: %!', space, xyz_special_idx.idx_name;
+					EXECUTE FORMAT ('CREATE INDEX IF NOT EXISTS "%s" ON %s."%s" %s', xyz_special_idx.idx_name, schema, space, xyz_special_idx.idx_def #>> '{}');
+				ELSE
+					RAISE NOTICE '-- SPACE: % |> DELETE SPECIAL IDX: %!', space, xyz_special_idx.idx_name;
+					EXECUTE FORMAT ('DROP INDEX IF EXISTS %s."%s" ', schema, xyz_special_idx.idx_name);
+					UPDATE xyz_config.xyz_idxs_status
+						SET idx_special = idx_special - xyz_special_idx.idx_name
+							WHERE spaceid = space AND idx_special -> xyz_special_idx.idx_name = 'false'::jsonb;
+				END IF;
+
+				EXCEPTION WHEN OTHERS THEN
+					RAISE NOTICE '-- SPACE: % |> SPECIAL IDX % FAILED: % -> SKIP!', space, xyz_special_idx.idx_name, SQLERRM;
+			END;
+		END LOOP;
+
 		/** Analyze IDX-Proposals aka AUTOMATIC MODE */
 		SELECT * FROM xyz_config.xyz_idxs_status
 			INTO xyz_space_stat
@@ -919,7 +1246,7 @@ $BODY$
 					|| '			GROUP BY propkey ORDER by propkey,count DESC '
 					|| ') C';
 		ELSE
-			SELECT reltuples into estimate_cnt FROM pg_class WHERE oid = concat('"',$1, '"."', $2, '"')::regclass;
+			SELECT xyz_reltuples(concat('"',$1, '"."', $2, '"')::regclass) into estimate_cnt;
 
 			RETURN QUERY EXECUTE
 				'SELECT DISTINCT ON(propkey) * FROM (  '
@@ -987,17 +1314,19 @@ $BODY$
 	BEGIN
 
 	FOR xyz_spaces IN
-		SELECT relname as spaceid, E.spaceid as stat_spaceid, reltuples as current_cnt, E.count as old_cnt,
-			(E.count-reltuples) as diff
+		SELECT relname as spaceid, E.spaceid as stat_spaceid, T.tuples as current_cnt, E.count as old_cnt,
+			(E.count-T.tuples) as diff
 		FROM pg_class C
 			LEFT JOIN pg_tables D ON (D.tablename = C.relname)
 			LEFT JOIN pg_namespace N ON (N.oid = C.relnamespace)
 			LEFT JOIN xyz_config.xyz_idxs_status E ON (E.spaceid = C.relname)
-		WHERE relkind='r' AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
+			/** The row count of a partitioned space is the sum of its partitions */
+			CROSS JOIN LATERAL (SELECT xyz_reltuples(C.oid) as tuples) T
+		WHERE relkind IN ('r','p') AND NOT relispartition AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
 			/** More than 3000 objecs has changed OR space is new and has more than min_table_count entries */
-			AND ((ABS(COALESCE(E.count,0) - COALESCE(reltuples,0)) > 3000 AND reltuples > min_table_count )  OR ( E.count IS null AND reltuples > min_table_count ))
+			AND ((ABS(COALESCE(E.count,0) - COALESCE(T.tuples,0)) > 3000 AND T.tuples > min_table_count )  OR ( E.count IS null AND T.tuples > min_table_count ))
 			AND relname != 'spatial_ref_sys'
-			ORDER BY reltuples
+			ORDER BY T.tuples
 	LOOP
 		BEGIN
 			spaceid := xyz_spaces.spaceid;
@@ -1103,6 +1432,9 @@ $BODY$
 			  count bigint,
 			  prop_stat jsonb,
 			  idx_manual jsonb,
+			  search_stat jsonb,
+			  idx_workload jsonb,
+			  idx_special jsonb,
 			  CONSTRAINT xyz_idxs_status_pkey PRIMARY KEY (spaceid)
 			);
 			INSERT INTO xyz_config.xyz_idxs_status (spaceid,count) VALUES ('idx_in_progress','0');
@@ -1121,6 +1453,8 @@ $BODY$
 				    OR (
 						(COALESCE(reltuples,0) < min_table_count OR C.count IS NULL)
 						AND (idx_manual IS NULL OR idx_manual = '{}')
+						AND (idx_workload IS NULL OR idx_workload = '{}')
+						AND (idx_special IS NULL OR idx_special = '{}')
 						AND C.spaceid != 'idx_in_progress'
 				    )
 		LOOP
@@ -1194,12 +1528,12 @@ $BODY$
 	BEGIN
 
 	FOR xyz_spaces IN
-		SELECT relname as spaceid,reltuples as cnt
+		SELECT relname as spaceid, xyz_reltuples(C.oid) as cnt
 			FROM pg_class C
 				LEFT JOIN pg_tables D ON (D.tablename = C.relname)
 				LEFT JOIN pg_namespace N ON (N.oid = C.relnamespace)
-			WHERE relkind='r' AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
-				ORDER BY reltuples DESC
+			WHERE relkind IN ('r','p') AND NOT relispartition AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
+				ORDER BY cnt DESC
 	LOOP
 		spaceid := xyz_spaces.spaceid;
 
@@ -1334,7 +1668,7 @@ $BODY$
 		auto_tablescan integer := null;
 		semantic_hit boolean;
 	BEGIN
-		SELECT reltuples into cnt FROM pg_class WHERE oid = concat('"',$1, '"."', $2, '"')::regclass;
+		SELECT xyz_reltuples(concat('"',$1, '"."', $2, '"')::regclass) into cnt;
 		if cnt is null OR cnt <= 50000 THEN
 			EXECUTE format('SELECT count(*) from %s."%s"', schema,_spaceid)
 				INTO cnt;
@@ -1669,7 +2003,7 @@ $BODY$
 			SELECT  COALESCE((idx_available ? 'createdAt'), false) AS has_createdAt,
 				COALESCE((idx_available ? 'updatedAt'), false) AS has_updatedAt,
 				s_id::text, table_cnt from (
-				SELECT relname as s_id,reltuples::bigint as table_cnt ,
+				SELECT relname as s_id, xyz_reltuples(C.oid)::bigint as table_cnt ,
 					(SELECT jsonb_agg(FORMAT('"%s"',idx_property)::jsonb) from (
 						SELECT * from xyz_index_list_all_available(''||schema||'',relname)
 							WHERE idx_property IN ('createdAt','updatedAt') and src = 's'
@@ -1679,8 +2013,8 @@ $BODY$
 				FROM pg_class C
 					LEFT JOIN pg_tables D ON (D.tablename = C.relname)
 					LEFT JOIN pg_namespace N ON (N.oid = C.relnamespace)
-				WHERE relkind='r' AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
-					ORDER BY reltuples ASC, spaceid
+				WHERE relkind IN ('r','p') AND NOT relispartition AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
+					ORDER BY table_cnt ASC, spaceid
 			) B WHERE idx_available IS NULL OR jsonb_array_length(idx_available) < 2;
 	END;
 $BODY$
@@ -1816,7 +2150,7 @@ $BODY$
 				|| ' 	) a '
 				|| 'WHERE key!=''@ns:com:here:xyz'' GROUP BY key ORDER by count DESC, key';
 		ELSE
-			SELECT reltuples into estimate_cnt FROM pg_class WHERE oid = concat('"',$1, '"."', $2, '"')::regclass;
+			SELECT xyz_reltuples(concat('"',$1, '"."', $2, '"')::regclass) into estimate_cnt;
 
 			RETURN QUERY EXECUTE
 				'SELECT  key, '
@@ -1870,7 +2204,7 @@ $BODY$
 				|| ' 	) a '
 				|| 'GROUP BY tag ORDER by count DESC, tag';
 		ELSE
-			SELECT reltuples into estimate_cnt FROM pg_class WHERE oid = concat('"',$1, '"."', $2, '"')::regclass;
+			SELECT xyz_reltuples(concat('"',$1, '"."', $2, '"')::regclass) into estimate_cnt;
 
 			RETURN QUERY EXECUTE
 				'SELECT  tag, '
@@ -1964,7 +2298,7 @@ $BODY$
 			||'	format(''{"value": %s, "estimated" : true}'', count)::jsonb as count,  '
 			||'	format(''{"value": "%s", "estimated" : true}'', bbox)::jsonb as bbox,  '
 			||'	prop->>''searchable'' as searchable  FROM ('
-			||'	SELECT pg_total_relation_size('''||schema||'."'||spaceid||'"'') AS tablesize, '
+			||'	SELECT xyz_total_relation_size('''||schema||'."'||spaceid||'"'') AS tablesize, '
 			||'	(SELECT jsonb_agg(type) as geometryTypes from ('
 			||'		SELECT distinct xyz_geotype(geo) as type '
 			||'			FROM "'||schema||'"."'||spaceid||'" TABLESAMPLE SYSTEM_ROWS('||tablesamplecnt||') '
@@ -1994,7 +2328,7 @@ $BODY$
 			||'			select * FROM xyz_tag_statistic('''||schema||''','''||spaceid||''', '||tablesamplecnt||') '
 			||'		) as tag_stat '
 			||'	),'
-			||'	reltuples AS count, '
+			||'	xyz_reltuples(oid) AS count, '
 			||' (SELECT xyz_space_bbox('''||schema||''','''||spaceid||''', '||tablesamplecnt||')) AS bbox '
 			||'		FROM pg_class '
 			||'	WHERE oid='''||schema||'."'||spaceid||'"''::regclass) A';
@@ -2037,7 +2371,7 @@ $BODY$
 	DECLARE estimate_cnt bigint;
 
 	BEGIN
-		SELECT reltuples into estimate_cnt FROM pg_class WHERE oid = concat('"',$1, '"."', $2, '"')::regclass;
+		SELECT xyz_reltuples(concat('"',$1, '"."', $2, '"')::regclass) into estimate_cnt;
 
 		IF estimate_cnt > big_space_threshold THEN
 			RETURN QUERY EXECUTE 'select * from xyz_statistic_xl_space('''||schema||''', '''||spaceid||''' , '||tablesamplecnt||')';
@@ -2084,7 +2418,7 @@ $BODY$
 			||'	format(''{"value": %s, "estimated" : false}'', count)::jsonb as count,  '
 			||'	format(''{"value": "%s", "estimated" : false}'', bbox)::jsonb as bbox,  '
 			||'	''ALL''::text AS searchable  FROM ('
-			||'		SELECT pg_total_relation_size('''||schema||'."'||spaceid||'"'') AS tablesize, '
+			||'		SELECT xyz_total_relation_size('''||schema||'."'||spaceid||'"'') AS tablesize, '
 			||'		(SELECT jsonb_agg(type) as geometryTypes from ( '
 			||'			SELECT distinct xyz_geotype(geo) as type '
 			||'				FROM "'||schema||'"."'||spaceid||'" '
@@ -2466,6 +2800,95 @@ END;
 $$ LANGUAGE plpgsql IMMUTABLE;
 ------------------------------------------------
 ------------------------------------------------
+-- The point, which is used to assign a feature to a quadkey. It is clamped to the bounds of the web mercator projection.
+CREATE OR REPLACE FUNCTION xyz_qk_refpt( geo geometry )
+	RETURNS geometry(Point,4326) AS
+$BODY$
+	select ST_SetSRID( ST_MakePoint( least( greatest( ST_X(r.pt), -180.0 ), 179.9999999 ), least( greatest( ST_Y(r.pt), -85.0511287 ), 85.0511287 ) ), 4326 )
+	from ( select case ST_GeometryType( geo ) when 'ST_Point' then geo else ST_ClosestPoint( geo, geo ) end as pt ) r
+$BODY$
+LANGUAGE sql IMMUTABLE;
+------------------------------------------------
+------------------------------------------------
+-- The sort key of the spatial layout of a space ( storage parameter spatialLayout ). Interleaves the column and row of the level 24
+-- tile, which contains the reference point of the geometry, to the morton code ( z-order ) of the tile, which sorts like its quadkey.
+-- The column and row are computed like xyz_qk_point2lrc() does, the bits are spread by inserting a zero bit in front of each bit.
+CREATE OR REPLACE FUNCTION xyz_sort_key( geo geometry )
+	RETURNS bigint AS
+$BODY$
+	select regexp_replace( t.colX::bit(24)::text, '(.)', '0\1', 'g' )::bit(48)::bigint
+		| ( regexp_replace( t.rowY::bit(24)::text, '(.)', '0\1', 'g' )::bit(48)::bigint << 1 )
+	from ( select floor( ( ( ST_X( p.pt )::numeric + 180.0 ) / 360.0 ) * 16777216 )::integer as colX,
+			floor( ( 0.5 - ln( ( 1 + p.s ) / ( 1 - p.s ) ) / ( 4 * pi() ) ) * 16777216 )::integer as rowY
+		from ( select r.pt, sin( ST_Y( r.pt )::numeric * pi() / 180.0 )::numeric as s
+			from ( select xyz_qk_refpt( geo ) as pt where geo IS NOT NULL AND NOT ST_IsEmpty( geo ) ) r ) p ) t
+$BODY$
+LANGUAGE sql IMMUTABLE;
+------------------------------------------------
+------------------------------------------------
+-- Rewrites the next batch of features of a space with a spatial layout in the order of their sort key, so that the table is
+-- physically sorted by xyz_sort_key() after one pass over all features. The features are deleted and inserted again in the order of
+-- their sort key. The inserted rows fill the free space, which is known to the free space map, first. As the space of the deleted rows
+-- is only reused after the next vacuum, the rest of the pass is appended to the end of the table in sort key order.
+-- A batch is only written, if no write to the space is in progress. It locks the table against writes ( SHARE ROW EXCLUSIVE ) without
+-- waiting for a lock. Writes, which start during the batch, wait for it and see the rewritten features afterwards. The triggers of the
+-- space ignore the rewritten features ( setting xyz.reorganize ). The position of the pass is kept in the comment of the sort key index
+-- ( idx_<space>_sortkey ). A new pass is only started, if the correlation of the physical order with the sort key fell below
+-- min_correlation.
+-- Returns the amount of rewritten features, 0 if the pass is finished, no pass is needed or the space is being written.
+CREATE OR REPLACE FUNCTION xyz_reorganize_space( schema text, space text, batch integer, min_correlation double precision )
+	RETURNS integer AS
+$BODY$
+	DECLARE idx regclass := to_regclass( format( '%I.%I', schema, 'idx_' || space || '_sortkey' ) );
+	DECLARE pos text[];
+	DECLARE corr double precision;
+	DECLARE moved integer;
+	DECLARE last_sk bigint;
+	DECLARE last_i bigint;
+	BEGIN
+		IF idx IS NULL OR NOT pg_try_advisory_xact_lock( idx::oid::bigint ) THEN
+			RETURN 0;
+		END IF;
+
+		pos := string_to_array( obj_description( idx, 'pg_class' ), ',' );
+		IF pos IS NULL THEN
+			SELECT s.correlation INTO corr FROM pg_stats s
+				WHERE s.schemaname = schema AND s.tablename = 'idx_' || space || '_sortkey' AND s.correlation IS NOT NULL LIMIT 1;
+			IF corr IS NULL OR corr >= min_correlation THEN
+				RETURN 0;
+			END IF;
+			pos := ARRAY[ '-1', '-1' ];
+		END IF;
+
+		BEGIN
+			EXECUTE format( 'LOCK TABLE %I.%I IN SHARE ROW EXCLUSIVE MODE NOWAIT', schema, space );
+		EXCEPTION WHEN lock_not_available THEN
+			-- The space is being written, the pass is continued by the next run
+			RETURN 0;
+		END;
+
+		PERFORM set_config( 'xyz.reorganize', 'true', true );
+		EXECUTE format( 'WITH b AS ( SELECT i FROM %1$I.%2$I WHERE ( xyz_sort_key(geo), i ) > ( $1, $2 )'
+			|| '		ORDER BY xyz_sort_key(geo), i LIMIT $3 ),'
+			|| ' d AS ( DELETE FROM %1$I.%2$I t USING b WHERE t.i = b.i RETURNING t.* ),'
+			|| ' m AS ( INSERT INTO %1$I.%2$I SELECT * FROM d ORDER BY xyz_sort_key(d.geo), d.i RETURNING xyz_sort_key(geo) AS sk, i )'
+			|| ' SELECT count(*)::integer, max(sk), ( SELECT i FROM m ORDER BY sk DESC, i DESC LIMIT 1 ) FROM m', schema, space )
+			INTO moved, last_sk, last_i USING pos[1]::bigint, pos[2]::bigint, batch;
+		PERFORM set_config( 'xyz.reorganize', 'false', true );
+
+		IF moved = 0 THEN
+			-- The pass is finished, refresh the correlation
+			EXECUTE format( 'COMMENT ON INDEX %s IS NULL', idx );
+			EXECUTE format( 'ANALYZE %I.%I', schema, space );
+		ELSE
+			EXECUTE format( 'COMMENT ON INDEX %s IS %L', idx, last_sk || ',' || last_i );
+		END IF;
+		RETURN moved;
+	END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
 CREATE OR REPLACE FUNCTION xyz_qk_bbox2zooml( geometry )
   RETURNS integer AS
 $body$ -- select round( ( ln( 360 ) - ln( st_xmax(i.env) - st_xmin(i.env) )  )/ ln(2) )::integer as zm
@@ -149,6 +149,17 @@ public class PSQLXyzConnectorIT {
     features.serialize(true);
   }
 
+  @Test
+  public void testHealthCheckStatistics() throws Exception {
+    invokeLambdaFromFile("/events/IterateMySpace.json");
+    final String response = invokeLambdaFromFile("/events/HealthCheckEvent.json");
+    assertEquals("OK", JsonPath.read(response, "$.status"));
+    assertNotNull(JsonPath.read(response, "$.statistics.metadataCaches"));
+    assertTrue(((Number) JsonPath.read(response, "$.statistics.fetchedFeatures.all.queries")).longValue() >= 1);
+    assertTrue(((Number) JsonPath.read(response, "$.statistics.fetchedFeatures.all.bytes")).longValue() >= 2);
+    assertNotNull(JsonPath.read(response, "$.statistics.fetchedFeatures.cursor.rows"));
+  }
+
   /**
    * Test getFeaturesByGeometryEvent
    */
@@ -359,17 +370,24 @@ public class PSQLXyzConnectorIT {
 
     try (final Connection connection = lambda.dataSource.getConnection()) {
       Statement stmt = connection.createStatement();
-      String sql = "SELECT pg_get_triggerdef(oid)," +
-              "(SELECT (to_regclass('public.\"foo\"') IS NOT NULL) as hst_table_exists) " +
-              "FROM pg_trigger " +
-              "WHERE tgname = 'tr_foo_history_writer';";
+      String sql = "SELECT (SELECT relkind FROM pg_class WHERE oid = to_regclass('public.\"foo_hst\"')) as hst_relkind, " +
+              "(SELECT count(*) FROM pg_trigger WHERE tgname IN ('tr_foo_history_update', 'tr_foo_history_delete')) as triggers, " +
+              "(SELECT array_agg(c.relname::text ORDER BY c.relname) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+              "  WHERE i.inhparent = to_regclass('public.\"foo_hst\"')) as partitions, " +
+              "'foo_hst_' || to_char(now(), 'YYYYMM') as current_month, " +
+              "'foo_hst_' || to_char(now() + interval '1 month', 'YYYYMM') as next_month";
 
       ResultSet resultSet = stmt.executeQuery(sql);
-      if(!resultSet.next()) {
+      if(!resultSet.next() || resultSet.getString("hst_relkind") == null) {
         throw new Exception("History Trigger/Table is missing!");
-      }else{
-        assertTrue(resultSet.getBoolean("hst_table_exists"));
       }
+      // New history tables are partitioned by month and written once per statement
+      assertEquals("p", resultSet.getString("hst_relkind"));
+      assertEquals(2, resultSet.getInt("triggers"));
+      final List<String> partitions = Arrays.asList((String[]) resultSet.getArray("partitions").getArray());
+      assertTrue(partitions.contains(resultSet.getString("current_month")));
+      assertTrue(partitions.contains(resultSet.getString("next_month")));
+      assertTrue(partitions.contains("foo_hst_default"));
     }
   }
 
@@ -420,9 +438,24 @@ public class PSQLXyzConnectorIT {
 
     try (final Connection connection = lambda.dataSource.getConnection()) {
       Statement stmt = connection.createStatement();
-      String sql = "SELECT * from foo_hst ORDER BY jsondata->'properties'->'@ns:com:here:xyz'->'updatedAt' DESC;";
 
-      ResultSet resultSet = stmt.executeQuery(sql);
+      // The history is pruned asynchronously, all versions are written
+      ResultSet resultSet = stmt.executeQuery("SELECT count(*) from foo_hst");
+      resultSet.next();
+      assertEquals(10, resultSet.getInt(1));
+
+      // The versions of the current month are pruned as well, only the partitions of past months are dropped
+      resultSet = stmt.executeQuery("SELECT xyz_maintain_history('public', 'foo', 1000), 'foo_hst_' || to_char(now(), 'YYYYMM')");
+      resultSet.next();
+      assertEquals(5, resultSet.getInt(1));
+      final String currentPartition = resultSet.getString(2);
+
+      resultSet = stmt.executeQuery("SELECT (SELECT count(*) FROM foo_hst_default), (SELECT count(*) FROM \"" + currentPartition + "\")");
+      resultSet.next();
+      assertEquals(0, resultSet.getInt(1));
+      assertEquals(5, resultSet.getInt(2));
+
+      resultSet = stmt.executeQuery("SELECT * from foo_hst ORDER BY ts");
       int cnt = 5;
 
       // Check if 5 last versions are available in history table
@@ -504,15 +537,18 @@ public class PSQLXyzConnectorIT {
 
     try (final Connection connection = lambda.dataSource.getConnection()) {
       Statement stmt = connection.createStatement();
-      String sql = "SELECT pg_get_triggerdef(oid) as trigger_def " +
+      String sql = "SELECT pg_get_triggerdef(oid) as trigger_def, " +
+              "obj_description(to_regclass('public.\"foo_hst\"'), 'pg_class') as max_version_count " +
               "FROM pg_trigger " +
-              "WHERE tgname = 'tr_foo_history_writer';";
+              "WHERE tgname = 'tr_foo_history_update';";
 
       ResultSet resultSet = stmt.executeQuery(sql);
       if(!resultSet.next()) {
         throw new Exception("History Trigger/Table is missing!");
       }else{
-        assertTrue(resultSet.getString("trigger_def").contains("xyz_trigger_historywriter('"+maxVersionCount+"')"));
+        // The maxVersionCount is used by the asynchronous pruning, it is kept in the comment of the history table
+        assertTrue(resultSet.getString("trigger_def").contains("xyz_trigger_historywriter_partitioned()"));
+        assertEquals(String.valueOf(maxVersionCount), resultSet.getString("max_version_count"));
       }
     }
   }
@@ -1621,7 +1657,11 @@ public class PSQLXyzConnectorIT {
     countResponse = invokeLambdaFromFile("/events/CountFeaturesEvent.json");
     Integer count = JsonPath.read(countResponse, "$.count");
     assertTrue(originalCount > count);
+    // The batches were finished within the invocation, the count contains the features deleted by all batches
+    assertNull(JsonPath.compile("$.partial").read(deleteByTagResponse, jsonPathConf));
+    assertEquals(originalCount - count, ((Number) JsonPath.read(deleteByTagResponse, "$.count")).intValue());
     logger.info("Delete tagged features tested successfully");
+    final int remaining = count;
 
     // =========== DELETE ALL FEATURES ==========
     deleteByTagEventDoc.put("$", "tags", null);
@@ -1632,6 +1672,13 @@ public class PSQLXyzConnectorIT {
     if (features != null) {
       assertEquals("unexpected features in DeleteByTagResponse", 0, features.size());
     }
+    // Without old states the table is truncated, the amount of deleted features is unknown then
+    assertNull(JsonPath.compile("$.partial").read(deleteAllResponse, jsonPathConf));
+    if (includeOldStates) {
+      assertEquals(remaining, ((Number) JsonPath.read(deleteAllResponse, "$.count")).intValue());
+    } else {
+      assertNull(JsonPath.compile("$.count").read(deleteAllResponse, jsonPathConf));
+    }
 
     // TODO use deleted.length() when it's available
 //    if (includeOldStates) {